@@ -0,0 +1,148 @@
+package spotifybackup.storage;
+
+import org.openjdk.jmh.annotations.*;
+import se.michaelthelin.spotify.model_objects.specification.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the persist and query paths used during a backup, against a file backed H2 database filled from the
+ * spotify_api_get test fixtures. Every object is already stored after the first invocation, so the persist benchmarks
+ * measure the path of a repeated backup where most objects are found instead of created.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpotifyObjectRepositoryBenchmark {
+    static final String testDataDir = "src/test/java/spotifybackup/storage/spotify_api_get/";
+    static final String trackDir = testDataDir + "track/";
+    static final String libraryDir = testDataDir + "library/";
+    static final String playlistDir = testDataDir + "playlist/";
+    static final String userDir = testDataDir + "user/";
+    private SpotifyObjectRepository repo;
+    private Track[] apiTracks;
+    private SavedTrack[] apiSavedTracks;
+    private SpotifyUser user;
+    private String[] trackIds;
+    private int nextTrackId = 0;
+
+    static String read(String path) throws IOException {
+        return new String(Files.readAllBytes(Path.of(path)));
+    }
+
+    /** @return new file in build/jmh that the repository creates its database in. */
+    static File newDbFile() throws IOException {
+        final var dir = Files.createDirectories(Path.of("build", "jmh"));
+        final var dbFile = Files.createTempFile(dir, "benchmark", ".mv.db");
+        Files.delete(dbFile);
+        dbFile.toFile().deleteOnExit();
+        return dbFile.toFile();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        repo = SpotifyObjectRepository.factory(newDbFile());
+        final List<Track> tracks = new ArrayList<>();
+        try (var files = Files.list(Path.of(trackDir))) {
+            for (var file : files.sorted().toList()) {
+                tracks.add(new Track.JsonUtil().createModelObject(read(file.toString())));
+            }
+        }
+        apiTracks = tracks.toArray(Track[]::new);
+        apiSavedTracks = new SavedTrack.JsonUtil().createModelObjectArray(
+                read(libraryDir + "testaccount_saved_tracks.json"), "items");
+        user = repo.persist(new User.JsonUtil().createModelObject(read(userDir + "user.json")));
+        repo.persist(apiSavedTracks, user);
+        trackIds = Arrays.stream(apiSavedTracks).map(t -> t.getTrack().getId()).toArray(String[]::new);
+    }
+
+    @Benchmark
+    public List<SpotifyTrack> persistTracks() {
+        return repo.persist(apiTracks);
+    }
+
+    @Benchmark
+    public List<SpotifySavedTrack> persistSavedTracks() {
+        return repo.persist(apiSavedTracks, user);
+    }
+
+    @Benchmark
+    public Set<String> getSavedTrackIds() {
+        return repo.getSavedTrackIds(user);
+    }
+
+    @Benchmark
+    public Optional<? extends SpotifyObject> findBySpotifyId() {
+        nextTrackId = (nextTrackId + 1) % trackIds.length;
+        return repo.find(trackIds[nextTrackId]);
+    }
+
+    /**
+     * Playlist items are not deduplicated, so the items persisted by the previous invocation are deleted before every
+     * invocation.
+     */
+    @State(Scope.Benchmark)
+    public static class PlaylistState {
+        private SpotifyObjectRepository repo;
+        private SpotifyPlaylist playlist;
+        private List<PlaylistTrack> apiPlaylistTracks;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            repo = SpotifyObjectRepository.factory(newDbFile());
+            final var apiPlaylist = new Playlist.JsonUtil().createModelObject(
+                    read(playlistDir + "Spotify_Web_API_Testing_playlist.json"));
+            playlist = repo.persist(apiPlaylist);
+            apiPlaylistTracks = List.of(apiPlaylist.getTracks().getItems());
+        }
+
+        @Setup(Level.Invocation)
+        public void deleteItems() {
+            repo.deletePlaylistItems(playlist);
+        }
+    }
+
+    @Benchmark
+    public List<SpotifyPlaylistItem> persistPlaylistItems(PlaylistState state) {
+        return state.repo.persist(state.apiPlaylistTracks, state.playlist);
+    }
+
+    /** Playlist of which every item but the first is stored, so a sync inserts one item in front of the others. */
+    @State(Scope.Benchmark)
+    public static class ChangedPlaylistState {
+        private SpotifyObjectRepository repo;
+        private SpotifyPlaylist playlist;
+        private List<PlaylistTrack> apiPlaylistTracks;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            repo = SpotifyObjectRepository.factory(newDbFile());
+            final var apiPlaylist = new Playlist.JsonUtil().createModelObject(
+                    read(playlistDir + "Spotify_Web_API_Testing_playlist.json"));
+            playlist = repo.persist(apiPlaylist);
+            apiPlaylistTracks = List.of(apiPlaylist.getTracks().getItems());
+        }
+
+        @Setup(Level.Invocation)
+        public void removeFirstItem() {
+            repo.syncPlaylistItems(apiPlaylistTracks.subList(1, apiPlaylistTracks.size()), playlist);
+        }
+    }
+
+    @Benchmark
+    public PlaylistItemChanges syncChangedPlaylistItems(ChangedPlaylistState state) {
+        return state.repo.syncPlaylistItems(state.apiPlaylistTracks, state.playlist);
+    }
+}
@@ -0,0 +1,60 @@
+package spotifybackup.storage;
+
+import org.openjdk.jmh.annotations.*;
+import se.michaelthelin.spotify.model_objects.specification.SavedTrack;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of a repeated backup of Liked Songs against a file backed H2 database already holding a generated library
+ * of likedSongs songs, to show how the persist and query paths scale with the size of the library.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyntheticLibraryBenchmark {
+    private static final int PAGE_LIMIT = 50;
+    @Param({"1000", "30000"})
+    private int likedSongs;
+    private SpotifyObjectRepository repo;
+    private LibraryGenerator generator;
+    private SpotifyUser user;
+    private int nextOffset = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        repo = SpotifyObjectRepository.factory(SpotifyObjectRepositoryBenchmark.newDbFile());
+        generator = new LibraryGenerator(2024, new LibraryGenerator.Scale(likedSongs, 0, 0, 0, 0));
+        user = repo.persist(generator.user());
+        for (int offset = 0; offset < likedSongs; offset += PAGE_LIMIT) {
+            repo.persist(generator.likedSongs(PAGE_LIMIT, offset).getItems(), user);
+        }
+    }
+
+    private SavedTrack[] nextPage() {
+        nextOffset = (nextOffset + PAGE_LIMIT) % likedSongs;
+        return generator.likedSongs(PAGE_LIMIT, nextOffset).getItems();
+    }
+
+    @Benchmark
+    public List<SpotifySavedTrack> persistStoredSavedTracksPage() {
+        return repo.persist(nextPage(), user);
+    }
+
+    @Benchmark
+    public Set<String> getSavedTrackIds() {
+        return repo.getSavedTrackIds(user);
+    }
+
+    @Benchmark
+    public Optional<? extends SpotifyObject> findBySpotifyId() {
+        return repo.find(nextPage()[0].getTrack().getId());
+    }
+}
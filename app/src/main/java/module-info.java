@@ -11,6 +11,7 @@ module SpotifyBackup.app.main {
     requires org.apache.httpcomponents.core5.httpcore5;
     requires java.desktop;
     requires jdk.httpserver;
+    requires java.net.http;
     requires nv.i18n;
     requires io.hypersistence.utils.hibernate.type;
     requires com.google.gson;
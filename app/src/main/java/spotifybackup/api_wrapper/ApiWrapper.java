@@ -7,7 +7,9 @@ import lombok.NonNull;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.hc.core5.http.ParseException;
+import se.michaelthelin.spotify.IHttpManager;
 import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.SpotifyHttpManager;
 import se.michaelthelin.spotify.enums.AuthorizationScope;
 import se.michaelthelin.spotify.enums.ModelObjectType;
 import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
@@ -20,6 +22,7 @@ import spotifybackup.app.Config;
 import spotifybackup.storage.SpotifyID;
 
 import java.awt.*;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
@@ -27,9 +30,14 @@ import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
@@ -42,8 +50,18 @@ public class ApiWrapper {
             AuthorizationScope.PLAYLIST_READ_PRIVATE,
             AuthorizationScope.PLAYLIST_READ_COLLABORATIVE
     };
+    /** Cached access tokens expiring sooner are refreshed on startup instead of used. */
+    private static final Duration MIN_CACHED_TOKEN_LIFETIME = Duration.ofMinutes(1);
+    private static final Duration TOKEN_REFRESH_RETRY_DELAY = Duration.ofSeconds(30);
+    /** Timeouts of every request, shared by the HTTP managers so cached and uncached requests behave the same. */
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofMinutes(1);
     private final SpotifyApi spotifyApi;
-    private final Semaphore waitingForAPI = new Semaphore(1);
+    private final RequestScheduler scheduler;
+    private final RetryPolicy retryPolicy;
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    /** Null if responses aren't cached. */
+    private final ConditionalRequestHttpManager conditionalRequests;
     private final String state = UUID.randomUUID().toString();
     private final CallbackHandler callbackHandler = new CallbackHandler();
     private final ScheduledExecutorService tokenRefresh = Executors.newScheduledThreadPool(1);
@@ -51,6 +69,7 @@ public class ApiWrapper {
     private final Supplier<AbstractRequest<AuthorizationCodeCredentials>> authorizationRefreshRequest;
     private final AbstractRequest<URI> authorizationCodeUriRequest;
     private final Function<String, AbstractRequest<AuthorizationCodeCredentials>> authorizationCodeRequest;
+    private final Browser browser;
     private final Config.UserInfo account;
 
     /**
@@ -59,12 +78,63 @@ public class ApiWrapper {
      *                              issue (HTTP 3xx status code).
      */
     public ApiWrapper(final Config.UserInfo account, final Config config) throws InterruptedException, IOException {
+        this(account, config, RequestScheduler.DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * @param concurrency Maximum amount of API requests in flight at the same time for this account.
+     * @throws InterruptedException when there is an error with acquiring the API handling semaphore.
+     * @throws IOException          when an issue occurs with creating the redirect catch server or there is a network
+     *                              issue (HTTP 3xx status code).
+     */
+    public ApiWrapper(final Config.UserInfo account, final Config config, final int concurrency)
+            throws InterruptedException, IOException {
+        this(account, config, concurrency, null);
+    }
+
+    /**
+     * @param concurrency    Maximum amount of API requests in flight at the same time for this account.
+     * @param responseCache  Directory to store responses in per account, to send requests conditionally on the stored
+     *                       ETag and reuse the stored response when it is unchanged. Can be null to disable caching,
+     *                       accounts without a Spotify ID in the config are never cached.
+     * @throws InterruptedException when there is an error with acquiring the API handling semaphore.
+     * @throws IOException          when an issue occurs with creating the redirect catch server or the response cache
+     *                              or there is a network issue (HTTP 3xx status code).
+     */
+    public ApiWrapper(final Config.UserInfo account, final Config config, final int concurrency,
+                      final File responseCache) throws InterruptedException, IOException {
+        this(account, config, concurrency, responseCache, uri -> Desktop.getDesktop().browse(uri));
+    }
+
+    /**
+     * @param browser Opens the Spotify login page when the account has no valid refresh token.
+     * @see #ApiWrapper(Config.UserInfo, Config, int, File)
+     */
+    ApiWrapper(final Config.UserInfo account, final Config config, final int concurrency, final File responseCache,
+               @NonNull Browser browser) throws InterruptedException, IOException {
         this.account = account;
+        this.browser = browser;
+        scheduler = new RequestScheduler(concurrency, RequestScheduler.DEFAULT_REQUESTS_PER_SECOND);
+        retryPolicy = new RetryPolicy(scheduler);
         var apiBuilder = SpotifyApi.builder();
         apiBuilder.setClientId(config.getClientId());
         apiBuilder.setRedirectUri(config.getRedirectURI());
         config.getClientSecret().ifPresent(apiBuilder::setClientSecret);
         account.getRefreshToken().ifPresent(apiBuilder::setRefreshToken);
+        IHttpManager httpManager = new SpotifyHttpManager.Builder()
+                .setConnectTimeout((int) CONNECT_TIMEOUT.toMillis())
+                .setSocketTimeout((int) RESPONSE_TIMEOUT.toMillis())
+                .build();
+        if (responseCache != null && account.getSpotifyId().filter(id -> !id.isBlank()).isPresent()) {
+            conditionalRequests = new ConditionalRequestHttpManager(new File(responseCache,
+                    account.getSpotifyId().get()), httpManager, CONNECT_TIMEOUT, RESPONSE_TIMEOUT);
+            httpManager = conditionalRequests;
+        } else {
+            conditionalRequests = null;
+        }
+        if (config.getApiBaseURI().isPresent())
+            httpManager = new BaseUriHttpManager(config.getApiBaseURI().get(), httpManager);
+        apiBuilder.setHttpManager(httpManager);
         spotifyApi = apiBuilder.build();
         try {
             if (config.getClientSecret().isEmpty()) {
@@ -82,14 +152,29 @@ public class ApiWrapper {
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalArgumentException("Select correct algorithm spelling: " + e);
         }
-        waitingForAPI.acquire(); // ensure that the first networking operation performed is performTokenRequest()
+        scheduler.closeTokenGate(); // ensure that the first networking operation performed is performTokenRequest()
         if (account.getRefreshToken().isEmpty() || account.getRefreshToken().orElseThrow().isBlank()) {
             performTokenRequest();
-        } else {
+        } else if (!useCachedAccessToken()) {
             performTokenRefresh();
         }
     }
 
+    /**
+     * Use the access token stored in the config by an earlier run if it stays valid for long enough, saving the token
+     * refresh and config write on startup.
+     * @return true if the cached access token is used.
+     */
+    private boolean useCachedAccessToken() {
+        if (account.getAccessToken().isEmpty() || account.getAccessTokenExpiresAt().isEmpty()) return false;
+        final long expiresIn = Duration.between(Instant.now(), account.getAccessTokenExpiresAt().get()).toSeconds();
+        if (expiresIn < MIN_CACHED_TOKEN_LIFETIME.toSeconds()) return false;
+        spotifyApi.setAccessToken(account.getAccessToken().get());
+        scheduleTokenRefresh(expiresIn);
+        scheduler.openTokenGate();
+        return true;
+    }
+
     /**
      * host webserver to catch callback code from redirect url
      * @throws IOException when an issue occurs with creating the redirect catch server.
@@ -113,7 +198,7 @@ public class ApiWrapper {
         try {
             final URI uri = authorizationCodeUriRequest.execute();
             var server = startCallbackServer();
-            Desktop.getDesktop().browse(uri); // execute above URL by opening browser window with it
+            browser.browse(uri); // execute above URL by opening browser window with it
             CompletableFuture.runAsync(() -> {
                 var code = callbackHandler.getCodeSync();
                 server.stop(0);
@@ -135,34 +220,59 @@ public class ApiWrapper {
     private void scheduleTokenRefresh(long tokenExpiresIn) {
         // tokens should be valid for an hour so 5 seconds earlier seems reasonable
         long refreshRate = tokenExpiresIn > 5 ? tokenExpiresIn - 5 : 5;
-        tokenRefresh.schedule(this::performTokenRefresh, refreshRate, TimeUnit.SECONDS);
+        tokenRefresh.schedule(this::performScheduledTokenRefresh, refreshRate, TimeUnit.SECONDS);
     }
 
     private void performTokenRefresh() {
         performTokenGet(null);
     }
 
+    /** Swap the access token while no requests are in flight. */
+    private void performScheduledTokenRefresh() {
+        try {
+            scheduler.closeTokenGate();
+        } catch (InterruptedException e) {
+            // refresh executor is shutting down
+            return;
+        }
+        retryTokenRefresh();
+    }
+
     /**
-     * Get access tokens (or refresh current ones) for Spotify API, what action is performed is decided by the value of
-     * spotifyApi.getAccessToken()
-     * @param requestCode code required to generate a new token set, can be null for token refresh.
+     * Refresh the access token while the token gate is closed, a failed refresh is retried after a delay. Requests
+     * keep waiting at the gate until a refresh succeeds instead of failing with an expired access token.
+     */
+    private void retryTokenRefresh() {
+        try {
+            performTokenRefresh();
+        } catch (RuntimeException e) {
+            tokenRefresh.schedule(this::retryTokenRefresh, TOKEN_REFRESH_RETRY_DELAY.toSeconds(), TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Get access tokens (or refresh current ones) for Spotify API. The token gate of the scheduler is only opened once
+     * an access token is set, so it stays closed when this fails and while the user logs in through the browser after
+     * an invalid refresh token, the login opens it.
+     * @param requestCode code required to generate a new token set, null for token refresh.
      */
     private void performTokenGet(String requestCode) {
         try {
             AuthorizationCodeCredentials authorizationCodeCredentials;
-            if (spotifyApi.getAccessToken() == null && spotifyApi.getRefreshToken() != null) {
+            if (requestCode == null) {
                 authorizationCodeCredentials = authorizationRefreshRequest.get().execute();
-            } else if (spotifyApi.getAccessToken() == null || spotifyApi.getAccessToken().isBlank()) {
-                authorizationCodeCredentials = authorizationCodeRequest.apply(requestCode).execute();
             } else {
-                waitingForAPI.acquire();
-                authorizationCodeCredentials = authorizationRefreshRequest.get().execute();
+                authorizationCodeCredentials = authorizationCodeRequest.apply(requestCode).execute();
             }
+            final var expiresAt = Instant.now().plusSeconds(authorizationCodeCredentials.getExpiresIn());
             spotifyApi.setAccessToken(authorizationCodeCredentials.getAccessToken());
-            spotifyApi.setRefreshToken(authorizationCodeCredentials.getRefreshToken());
+            // Spotify may omit the refresh token from a refresh response, the current one then stays valid
+            if (authorizationCodeCredentials.getRefreshToken() != null)
+                spotifyApi.setRefreshToken(authorizationCodeCredentials.getRefreshToken());
             scheduleTokenRefresh(authorizationCodeCredentials.getExpiresIn());
-            waitingForAPI.release();
-            saveAccountDetails(authorizationCodeCredentials.getRefreshToken());
+            scheduler.openTokenGate();
+            saveAccountDetails(requestCode != null, spotifyApi.getRefreshToken(),
+                    authorizationCodeCredentials.getAccessToken(), expiresAt);
         } catch (BadRequestException e) {
             if (e.getMessage().equals("Invalid refresh token")) {
                 // delete current refresh token and try again with an auth code request
@@ -184,27 +294,34 @@ public class ApiWrapper {
         } catch (IOException e) {
             // caused by network issues (HTTP 3xx status code)
             throw new RuntimeException(e);
-        } catch (InterruptedException e) {
-            // caused by semaphore interruptions
-            throw new RuntimeException(e);
         }
     }
 
-    private void saveAccountDetails(String refreshToken) {
+    /**
+     * Store the tokens with a single config write. The current user is only requested when the account is new or was
+     * just logged in to through the browser, a refreshed token always belongs to the account it was stored with.
+     * @param loggedIn true if the tokens were obtained with an authorization code rather than by a refresh.
+     */
+    private void saveAccountDetails(boolean loggedIn, String refreshToken, String accessToken, Instant expiresAt) {
+        final boolean knownAccount = account.getSpotifyId().isPresent() && !account.getSpotifyId().get().isBlank();
+        if (knownAccount && !loggedIn) {
+            account.update(() -> {
+                account.setRefreshToken(refreshToken);
+                account.setAccessToken(accessToken, expiresAt);
+            });
+            return;
+        }
         var user = getCurrentUser().orElseThrow();
-        if (account.getSpotifyId().isEmpty() || account.getSpotifyId().get().isBlank()) {
+        if (knownAccount && !account.getSpotifyId().get().equals(user.getId())) {
+            throw new RuntimeException("RefreshToken doesn't match expected account according to expected Spotify" +
+                    " User ID. Expected: " + account.getSpotifyId().orElseThrow() + " got: " + user.getId());
+        }
+        account.update(() -> {
             account.setRefreshToken(refreshToken);
+            account.setAccessToken(accessToken, expiresAt);
             account.setDisplayName(user.getDisplayName());
-            account.setSpotifyId(user.getId());
-        } else {
-            if (account.getSpotifyId().get().equals(user.getId())) {
-                account.setRefreshToken(refreshToken);
-                account.setDisplayName(user.getDisplayName());
-            } else {
-                throw new RuntimeException("RefreshToken doesn't match expected account according to expected Spotify" +
-                        " User ID. Expected: " + account.getSpotifyId().orElseThrow() + " got: " + user.getId());
-            }
-        }
+            if (!knownAccount) account.setSpotifyId(user.getId());
+        });
     }
 
     /**
@@ -224,71 +341,38 @@ public class ApiWrapper {
         return getSpotifyObject(() -> spotifyApi.getCurrentUsersProfile().build());
     }
 
-    public Paging<SavedTrack> getLikedSongs(int limit, int offset) {
+    public Response<Paging<SavedTrack>> getLikedSongs(int limit, int offset) {
         return getPage(() -> spotifyApi.getUsersSavedTracks().limit(limit).offset(offset).build());
     }
 
-    public Paging<PlaylistSimplified> getCurrentUserPlaylists(int limit, int offset) {
+    public Response<Paging<PlaylistSimplified>> getCurrentUserPlaylists(int limit, int offset) {
         return getPage(() -> spotifyApi.getListOfCurrentUsersPlaylists().limit(limit).offset(offset).build());
     }
 
-    public PagingCursorbased<Artist> getCurrentUserFollowedArtists(int limit, String after) {
+    public Response<PagingCursorbased<Artist>> getCurrentUserFollowedArtists(int limit, String after) {
         if (after == null) return getPagingCursor(() -> spotifyApi.getUsersFollowedArtists(ModelObjectType.ARTIST)
                 .limit(limit).build());
         else return getPagingCursor(() -> spotifyApi.getUsersFollowedArtists(ModelObjectType.ARTIST)
                 .limit(limit).after(after).build());
     }
 
-    public Paging<SavedAlbum> getCurrentUserSavedAlbums(int limit, int offset) {
+    public Response<Paging<SavedAlbum>> getCurrentUserSavedAlbums(int limit, int offset) {
         return getPage(() -> spotifyApi.getCurrentUsersSavedAlbums().limit(limit).offset(offset).build());
     }
 
     public Album[] getSeveralAlbums(String ids) {
-        try {
-            waitingForAPI.acquire();
-            final var object = spotifyApi.getSeveralAlbums(ids).build().execute();
-            waitingForAPI.release();
-            return object;
-        } catch (SpotifyWebApiException | ParseException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        return execute(() -> spotifyApi.getSeveralAlbums(ids).build()).value();
     }
 
     public Artist[] getSeveralArtists(String ids) {
-        try {
-            waitingForAPI.acquire();
-            final var object = spotifyApi.getSeveralArtists(ids).build().execute();
-            waitingForAPI.release();
-            return object;
-        } catch (SpotifyWebApiException | ParseException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        return execute(() -> spotifyApi.getSeveralArtists(ids).build()).value();
     }
 
     public Track[] getSeveralTracks(String ids) {
-        try {
-            waitingForAPI.acquire();
-            final var object = spotifyApi.getSeveralTracks(ids).build().execute();
-            waitingForAPI.release();
-            return object;
-        } catch (SpotifyWebApiException | ParseException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        return execute(() -> spotifyApi.getSeveralTracks(ids).build()).value();
     }
 
-    public Paging<PlaylistTrack> getPlaylistTracks(int limit, int offset, SpotifyID id) {
+    public Response<Paging<PlaylistTrack>> getPlaylistTracks(int limit, int offset, SpotifyID id) {
         return getPage(() -> spotifyApi.getPlaylistsItems(id.getId()).limit(limit).offset(offset)
                 .additionalTypes(ModelObjectType.TRACK.type).build());
     }
@@ -299,43 +383,65 @@ public class ApiWrapper {
         ).build());
     }
 
-    private <T extends AbstractModelObject> PagingCursorbased<T>
+    private <T extends AbstractModelObject> Response<PagingCursorbased<T>>
     getPagingCursor(Supplier<AbstractRequest<PagingCursorbased<T>>> f) {
-        try {
-            waitingForAPI.acquire();
-            final var object = f.get().execute();
-            waitingForAPI.release();
-            return object;
-        } catch (SpotifyWebApiException | ParseException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        return execute(f);
     }
 
-    private <T extends AbstractModelObject> Paging<T> getPage(Supplier<AbstractRequest<Paging<T>>> f) {
-        try {
-            waitingForAPI.acquire();
-            final var object = f.get().execute();
-            waitingForAPI.release();
-            return object;
-        } catch (SpotifyWebApiException | ParseException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+    private <T extends AbstractModelObject> Response<Paging<T>> getPage(Supplier<AbstractRequest<Paging<T>>> f) {
+        return execute(f);
     }
 
     private <T extends AbstractModelObject> Optional<T> getSpotifyObject(Supplier<AbstractRequest<T>> f) {
+        return Optional.of(execute(f).value());
+    }
+
+    /**
+     * @return amount of requests that were retried after a transient failure, keyed by the request class name of the
+     * endpoint.
+     */
+    public Map<String, Long> getRetryCounts() {
+        return retryPolicy.getRetryCounts();
+    }
+
+    /**
+     * @return latencies of every attempt of a request, including failed attempts, keyed by the request class name of
+     * the endpoint.
+     */
+    public Map<String, LatencyHistogram.Snapshot> getLatencies() {
+        final Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        latencies.forEach((endpoint, histogram) -> snapshots.put(endpoint, histogram.snapshot()));
+        return snapshots;
+    }
+
+    /**
+     * Should be called once everything requested has been stored, only committed responses are used to detect
+     * unchanged responses. Does nothing if responses aren't cached.
+     * @throws IOException when the response cache can't be written.
+     */
+    public void commitResponses() throws IOException {
+        if (conditionalRequests != null) conditionalRequests.commit();
+    }
+
+    /**
+     * Perform request through the request scheduler of this account, transient failures are retried. Every attempt
+     * builds the request once it has passed the token gate, so that it carries the current access token.
+     */
+    private <T> Response<T> execute(Supplier<AbstractRequest<T>> f) {
         try {
-            waitingForAPI.acquire();
-            final T object = f.get().execute();
-            waitingForAPI.release();
-            return Optional.of(object);
+            final var endpoint = new AtomicReference<String>();
+            return retryPolicy.execute(endpoint::get, () -> {
+                final var request = f.get();
+                endpoint.set(request.getClass().getSimpleName());
+                final var histogram = latencies.computeIfAbsent(endpoint.get(), k -> new LatencyHistogram());
+                final long start = System.nanoTime();
+                try {
+                    final T result = request.execute();
+                    return new Response<>(result, conditionalRequests != null && conditionalRequests.takeNotModified());
+                } finally {
+                    histogram.record(System.nanoTime() - start);
+                }
+            });
         } catch (SpotifyWebApiException | ParseException e) {
             throw new RuntimeException(e);
         } catch (IOException e) {
@@ -345,6 +451,24 @@ public class ApiWrapper {
         }
     }
 
+    /**
+     * Result of a request, unchanged if Spotify answered it with 304 Not Modified. The value is then the same as during
+     * the last backup whose responses were committed with {@link #commitResponses()}, responses are never unchanged if
+     * they aren't cached.
+     */
+    public record Response<T>(T value, boolean unchanged) {
+        /** @return response holding the mapped value, unchanged if this response is. */
+        public <R> Response<R> map(@NonNull Function<T, R> mapper) {
+            return new Response<>(mapper.apply(value), unchanged);
+        }
+    }
+
+    /** Opens a URI for the user, by default in the web browser of the desktop. */
+    @FunctionalInterface
+    interface Browser {
+        void browse(URI uri) throws IOException;
+    }
+
     private class CallbackHandler implements HttpHandler {
         private static final Pattern statePattern = Pattern.compile("state=(?<state>[^&]*)&?");
         private static final Pattern errorPattern = Pattern.compile("error=(?<error>[^&]*)&?");
@@ -0,0 +1,66 @@
+package spotifybackup.api_wrapper;
+
+import lombok.NonNull;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.ParseException;
+import se.michaelthelin.spotify.IHttpManager;
+import se.michaelthelin.spotify.SpotifyHttpManager;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Sends every request to a different scheme, host and port than the request was built for, keeping the path and query.
+ * The authorization requests of spotify-web-api always target accounts.spotify.com, so overriding the host of the
+ * SpotifyApi is not enough to redirect the token requests, this does redirect them.
+ */
+class BaseUriHttpManager implements IHttpManager {
+    private final URI baseUri;
+    private final IHttpManager httpManager;
+
+    /** @param baseUri URI whose scheme, host and port replace those of every request URI. */
+    BaseUriHttpManager(@NonNull URI baseUri) {
+        this(baseUri, new SpotifyHttpManager.Builder().build());
+    }
+
+    BaseUriHttpManager(@NonNull URI baseUri, @NonNull IHttpManager httpManager) {
+        if (baseUri.getScheme() == null || baseUri.getHost() == null)
+            throw new IllegalArgumentException("Base URI should contain a scheme and host: " + baseUri);
+        this.baseUri = baseUri;
+        this.httpManager = httpManager;
+    }
+
+    /** @return uri with the scheme, host and port of the base URI, the raw path and query are kept as they are. */
+    URI rewrite(URI uri) {
+        final var rewritten = new StringBuilder()
+                .append(baseUri.getScheme()).append("://").append(baseUri.getRawAuthority())
+                .append(uri.getRawPath());
+        if (uri.getRawQuery() != null) rewritten.append('?').append(uri.getRawQuery());
+        return URI.create(rewritten.toString());
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException, ParseException {
+        return httpManager.get(rewrite(uri), headers);
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body)
+            throws IOException, SpotifyWebApiException, ParseException {
+        return httpManager.post(rewrite(uri), headers, body);
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body)
+            throws IOException, SpotifyWebApiException, ParseException {
+        return httpManager.put(rewrite(uri), headers, body);
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body)
+            throws IOException, SpotifyWebApiException, ParseException {
+        return httpManager.delete(rewrite(uri), headers, body);
+    }
+}
@@ -0,0 +1,243 @@
+package spotifybackup.api_wrapper;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import lombok.NonNull;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.ParseException;
+import se.michaelthelin.spotify.IHttpManager;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends GET requests with the ETag of the response stored for the same URI in If-None-Match, when Spotify answers with
+ * 304 Not Modified the stored body is returned instead. Other requests are handed to the wrapped IHttpManager.
+ * <p>
+ * Responses received since the last {@link #commit()} are stored as pending and only sent along once committed, so an
+ * unchanged response always means unchanged since the last commit. Committing also removes the stored responses of URIs
+ * that weren't requested since the previous commit, the cache never holds more than a single backup worth of responses.
+ */
+class ConditionalRequestHttpManager implements IHttpManager {
+    private static final String PENDING_SUFFIX = ".pending";
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host",
+            "upgrade");
+    private final Path directory;
+    private final IHttpManager httpManager;
+    private final HttpClient httpClient;
+    private final Duration responseTimeout;
+    /** Names of the entries requested since the last commit, pending or not. */
+    private final Set<String> requested = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<Boolean> notModified = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * @param directory   Directory the responses are stored in, created if it doesn't exist. Pending responses left
+     *                    behind by an earlier run are discarded.
+     * @param httpManager     Performs every request other than GET.
+     * @param connectTimeout  Should be the connect timeout httpManager is configured with.
+     * @param responseTimeout Should be the socket timeout httpManager is configured with.
+     * @throws IOException when directory can't be created or read.
+     */
+    ConditionalRequestHttpManager(@NonNull File directory, @NonNull IHttpManager httpManager,
+                                  @NonNull Duration connectTimeout, @NonNull Duration responseTimeout)
+            throws IOException {
+        this.directory = Files.createDirectories(directory.toPath());
+        this.httpManager = httpManager;
+        // no proxy and redirects followed, like the SpotifyHttpManager default
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.responseTimeout = responseTimeout;
+        try (var pending = Files.newDirectoryStream(this.directory, "*" + PENDING_SUFFIX)) {
+            for (var file : pending) Files.deleteIfExists(file);
+        }
+    }
+
+    private static String entryName(URI uri) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256").digest(uri.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest) + ".json";
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Mirrors the error handling of SpotifyHttpManager, so callers see the same exceptions for the same responses.
+     * Error statuses SpotifyHttpManager has no exception for are thrown as a plain SpotifyWebApiException.
+     */
+    private static void throwOnError(HttpResponse<String> response) throws SpotifyWebApiException {
+        final int status = response.statusCode();
+        if (status < 400) return;
+        String message = null;
+        try {
+            final var json = JsonParser.parseString(response.body());
+            if (json.isJsonObject()) {
+                final var object = json.getAsJsonObject();
+                if (object.has("error_description")) message = object.get("error_description").getAsString();
+                else if (object.has("error") && object.get("error").isJsonObject() &&
+                        object.getAsJsonObject("error").has("message"))
+                    message = object.getAsJsonObject("error").get("message").getAsString();
+            }
+        } catch (JsonParseException | IllegalStateException e) {
+            // body isn't the usual error object, the exception is thrown without message
+        }
+        switch (status) {
+            case 400 -> throw new BadRequestException(message);
+            case 401 -> throw new UnauthorizedException(message);
+            case 403 -> throw new ForbiddenException(message);
+            case 404 -> throw new NotFoundException(message);
+            case 429 -> {
+                final var retryAfter = response.headers().firstValue("Retry-After");
+                if (retryAfter.isPresent()) throw new TooManyRequestsException(message, Integer.parseInt(retryAfter.get()));
+                else throw new TooManyRequestsException(message);
+            }
+            case 500 -> throw new InternalServerErrorException(message);
+            case 502 -> throw new BadGatewayException(message);
+            case 503 -> throw new ServiceUnavailableException(message);
+            default -> throw new SpotifyWebApiException(message == null ? "HTTP status " + status : message);
+        }
+    }
+
+    /**
+     * @return true if the last GET performed by the calling thread was answered with 304 Not Modified, the flag is
+     * cleared by this call.
+     */
+    boolean takeNotModified() {
+        final boolean value = notModified.get();
+        notModified.set(false);
+        return value;
+    }
+
+    /**
+     * Make the responses received since the last commit the ones sent along with future requests and remove the
+     * responses of URIs that weren't requested since then.
+     * @throws IOException when a stored response can't be moved or removed.
+     */
+    void commit() throws IOException {
+        final var names = Set.copyOf(requested);
+        final List<Path> stored;
+        try (var files = Files.list(directory)) {
+            stored = files.toList();
+        }
+        for (var file : stored) {
+            final var name = file.getFileName().toString();
+            if (name.endsWith(PENDING_SUFFIX)) {
+                final var target = directory.resolve(name.substring(0, name.length() - PENDING_SUFFIX.length()));
+                try {
+                    Files.move(file, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } else if (!names.contains(name)) {
+                Files.deleteIfExists(file);
+            }
+        }
+        requested.removeAll(names);
+    }
+
+    private Optional<Entry> read(String name) {
+        try {
+            final var file = directory.resolve(name);
+            if (!Files.isRegularFile(file)) return Optional.empty();
+            final var json = JsonParser.parseString(Files.readString(file, StandardCharsets.UTF_8)).getAsJsonObject();
+            return Optional.of(new Entry(json.get("etag").getAsString(), json.get("body").getAsString()));
+        } catch (IOException | JsonParseException | IllegalStateException | NullPointerException e) {
+            // a damaged entry is the same as a missing one, it is overwritten by the next response
+            return Optional.empty();
+        }
+    }
+
+    private void write(String name, Entry entry) throws IOException {
+        final var temporary = Files.createTempFile(directory, name, ".tmp");
+        try {
+            final var json = new JsonObject();
+            json.addProperty("etag", entry.etag());
+            json.addProperty("body", entry.body());
+            Files.writeString(temporary, json.toString(), StandardCharsets.UTF_8);
+            Files.move(temporary, directory.resolve(name + PENDING_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException, ParseException {
+        notModified.set(false);
+        final var name = entryName(uri);
+        requested.add(name);
+        final var stored = read(name);
+        final var request = HttpRequest.newBuilder(uri).GET().timeout(responseTimeout);
+        if (headers != null) {
+            for (var header : headers) {
+                if (!RESTRICTED_HEADERS.contains(header.getName().toLowerCase()))
+                    request.header(header.getName(), header.getValue());
+            }
+        }
+        var response = send(stored.map(entry -> request.copy().header("If-None-Match", entry.etag())).orElse(request));
+        if (response.statusCode() == 304) {
+            if (stored.isPresent()) {
+                notModified.set(true);
+                return stored.get().body();
+            }
+            // Not Modified without a stored response to reuse, e.g. answered by a cache in between, ask again
+            // unconditionally
+            response = send(request.header("Cache-Control", "no-cache"));
+            if (response.statusCode() == 304)
+                throw new SpotifyWebApiException("Not Modified without a stored response for " + uri);
+        }
+        throwOnError(response);
+        final var etag = response.headers().firstValue("ETag");
+        if (response.statusCode() == 200 && etag.isPresent()) write(name, new Entry(etag.get(), response.body()));
+        return response.body().isEmpty() ? null : response.body();
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException {
+        final var built = request.build();
+        try {
+            return httpClient.send(built, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for response to " + built.uri(), e);
+        }
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body)
+            throws IOException, SpotifyWebApiException, ParseException {
+        return httpManager.post(uri, headers, body);
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body)
+            throws IOException, SpotifyWebApiException, ParseException {
+        return httpManager.put(uri, headers, body);
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body)
+            throws IOException, SpotifyWebApiException, ParseException {
+        return httpManager.delete(uri, headers, body);
+    }
+
+    private record Entry(String etag, String body) {}
+}
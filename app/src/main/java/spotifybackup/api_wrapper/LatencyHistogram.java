@@ -0,0 +1,74 @@
+package spotifybackup.api_wrapper;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of request latencies with fixed, roughly logarithmic, bucket bounds. Recording never blocks,
+ * snapshots can be subtracted from each other to get the latencies recorded in between.
+ */
+public class LatencyHistogram {
+    /** Inclusive upper bounds of the buckets in milliseconds, the last bucket has no upper bound. */
+    public static final long[] BUCKET_BOUNDS_MS = {5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000};
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+    }
+
+    private static int bucketOf(final long nanos) {
+        final long ms = Math.ceilDiv(nanos, 1_000_000L);
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) if (ms <= BUCKET_BOUNDS_MS[i]) return i;
+        return BUCKET_BOUNDS_MS.length;
+    }
+
+    public void record(final long nanos) {
+        buckets[bucketOf(nanos)].increment();
+        sumNanos.add(nanos);
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(Arrays.stream(buckets).mapToLong(LongAdder::sum).toArray(), sumNanos.sum());
+    }
+
+    /**
+     * Latencies recorded up to a point in time.
+     * @param counts   Amount of latencies per bucket, not cumulative.
+     * @param sumNanos Sum of all latencies.
+     */
+    public record Snapshot(long[] counts, long sumNanos) {
+        public static final Snapshot EMPTY = new Snapshot(new long[BUCKET_BOUNDS_MS.length + 1], 0);
+
+        public long count() {
+            return Arrays.stream(counts).sum();
+        }
+
+        public Duration sum() {
+            return Duration.ofNanos(sumNanos);
+        }
+
+        /** @return latencies recorded after earlier was taken. */
+        public Snapshot minus(Snapshot earlier) {
+            final var difference = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) difference[i] = counts[i] - earlier.counts[i];
+            return new Snapshot(difference, sumNanos - earlier.sumNanos);
+        }
+
+        /**
+         * @param quantile Between 0 and 1.
+         * @return upper bound in milliseconds of the bucket containing quantile, or -1 if the quantile falls in the
+         * unbounded bucket or nothing was recorded.
+         */
+        public long quantileUpperBoundMs(final double quantile) {
+            final long rank = (long) Math.ceil(quantile * count());
+            long seen = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) return BUCKET_BOUNDS_MS[i];
+            }
+            return -1;
+        }
+    }
+}
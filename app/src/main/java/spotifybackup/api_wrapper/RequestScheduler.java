@@ -0,0 +1,130 @@
+package spotifybackup.api_wrapper;
+
+import org.apache.hc.core5.http.ParseException;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Schedules requests to the Spotify API for a single account. Limits the amount of requests in flight, spaces requests
+ * out using a token-bucket whose rate is halved every time the API responds with HTTP 429 and slowly restored on
+ * successful responses, and blocks new requests while the access token is being swapped.
+ */
+class RequestScheduler {
+    static final int DEFAULT_CONCURRENCY = 4;
+    static final double DEFAULT_REQUESTS_PER_SECOND = 10.0;
+    private static final double MINIMUM_REQUESTS_PER_SECOND = 0.5;
+    private final Semaphore slots;
+    private final StampedLock tokenGate = new StampedLock();
+    /** Stamp of the write lock held while the gate is closed, 0 while it is open. */
+    private final AtomicLong tokenGateStamp = new AtomicLong();
+    private final double maxRate;
+    private double rate;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private long pausedUntil = lastRefill;
+
+    /**
+     * @param concurrency    Maximum amount of requests in flight at the same time.
+     * @param requestsPerSec Maximum sustained request rate, also the size of a burst.
+     */
+    RequestScheduler(final int concurrency, final double requestsPerSec) {
+        if (concurrency < 1) throw new IllegalArgumentException("Concurrency should be at least 1.");
+        if (requestsPerSec < MINIMUM_REQUESTS_PER_SECOND) {
+            throw new IllegalArgumentException("Request rate should be at least " + MINIMUM_REQUESTS_PER_SECOND);
+        }
+        slots = new Semaphore(concurrency, true);
+        maxRate = requestsPerSec;
+        rate = requestsPerSec;
+        tokens = requestsPerSec;
+    }
+
+    /**
+     * Perform request once a concurrency slot and a rate permit are available and the access token is not being
+     * swapped.
+     * @throws InterruptedException when interrupted while waiting for a slot or permit.
+     */
+    <T> T execute(Request<T> request) throws IOException, SpotifyWebApiException, ParseException,
+            InterruptedException {
+        slots.acquire();
+        try {
+            acquirePermit();
+            final long stamp = tokenGate.readLockInterruptibly();
+            try {
+                final T result = request.execute();
+                onSuccess();
+                return result;
+            } catch (TooManyRequestsException e) {
+                onTooManyRequests(e.getRetryAfter());
+                throw e;
+            } finally {
+                tokenGate.unlockRead(stamp);
+            }
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * Block new requests until {@link #openTokenGate()} is called, waits for requests already in flight. May be opened
+     * from a different thread than the one that closed it.
+     */
+    void closeTokenGate() throws InterruptedException {
+        tokenGateStamp.set(tokenGate.writeLockInterruptibly());
+    }
+
+    /** Let requests through again, does nothing if the gate is already open. */
+    void openTokenGate() {
+        final long stamp = tokenGateStamp.getAndSet(0);
+        if (stamp != 0) tokenGate.unlockWrite(stamp);
+    }
+
+    /** @return current request rate limit in requests per second. */
+    synchronized double getRate() {
+        return rate;
+    }
+
+    /** Halve the request rate and stop handing out permits until the period requested by the API has passed. */
+    synchronized void onTooManyRequests(final int retryAfterSeconds) {
+        rate = Math.max(MINIMUM_REQUESTS_PER_SECOND, rate / 2);
+        tokens = Math.min(tokens, 0);
+        final long pause = TimeUnit.SECONDS.toNanos(Math.max(retryAfterSeconds, 1));
+        pausedUntil = Math.max(pausedUntil, System.nanoTime() + pause);
+    }
+
+    private synchronized void onSuccess() {
+        rate = Math.min(maxRate, rate + maxRate / 100);
+    }
+
+    private void acquirePermit() throws InterruptedException {
+        while (true) {
+            final long waitNanos;
+            synchronized (this) {
+                final long now = System.nanoTime();
+                if (now < pausedUntil) {
+                    waitNanos = pausedUntil - now;
+                } else {
+                    // bucket holds at least one token so that a rate below one request per second can progress
+                    tokens = Math.min(Math.max(rate, 1), tokens + (now - lastRefill) / 1e9 * rate);
+                    lastRefill = now;
+                    if (tokens >= 1) {
+                        tokens -= 1;
+                        return;
+                    }
+                    waitNanos = (long) ((1 - tokens) / rate * 1e9);
+                }
+            }
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    @FunctionalInterface
+    interface Request<T> {
+        T execute() throws IOException, SpotifyWebApiException, ParseException;
+    }
+}
@@ -0,0 +1,87 @@
+package spotifybackup.api_wrapper;
+
+import lombok.NonNull;
+import org.apache.hc.core5.http.ParseException;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.BadGatewayException;
+import se.michaelthelin.spotify.exceptions.detailed.InternalServerErrorException;
+import se.michaelthelin.spotify.exceptions.detailed.ServiceUnavailableException;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Retries requests that failed for transient reasons. HTTP 429 responses are retried once the RequestScheduler has
+ * waited out the Retry-After period, HTTP 5xx responses and network errors are retried after a jittered exponential
+ * backoff. Other errors are not retried. Retries are counted per endpoint.
+ */
+class RetryPolicy {
+    static final int DEFAULT_MAX_ATTEMPTS = 6;
+    static final long DEFAULT_BASE_DELAY_MS = 500;
+    static final long DEFAULT_MAX_DELAY_MS = 30_000;
+    private final RequestScheduler scheduler;
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final Map<String, LongAdder> retries = new ConcurrentHashMap<>();
+
+    RetryPolicy(@NonNull RequestScheduler scheduler) {
+        this(scheduler, DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS);
+    }
+
+    /**
+     * @param maxAttempts Amount of times a request is attempted before its last error is thrown.
+     * @param baseDelayMs Upper bound of the backoff before the first retry, doubles with every following retry.
+     * @param maxDelayMs  Upper bound of any backoff.
+     */
+    RetryPolicy(@NonNull RequestScheduler scheduler, final int maxAttempts, final long baseDelayMs,
+                final long maxDelayMs) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts should be at least 1.");
+        this.scheduler = scheduler;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    /**
+     * Perform request through the scheduler, retrying transient failures.
+     * @param endpoint Name of the endpoint that retries are counted under, only requested after a failed attempt.
+     */
+    <T> T execute(@NonNull Supplier<String> endpoint, RequestScheduler.Request<T> request) throws IOException,
+            SpotifyWebApiException, ParseException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return scheduler.execute(request);
+            } catch (TooManyRequestsException e) {
+                // scheduler has already paused for the Retry-After period, waiting here as well is not needed
+                if (attempt >= maxAttempts) throw e;
+            } catch (InternalServerErrorException | BadGatewayException | ServiceUnavailableException e) {
+                if (attempt >= maxAttempts) throw e;
+                backoff(attempt);
+            } catch (IOException e) {
+                if (attempt >= maxAttempts) throw e;
+                backoff(attempt);
+            }
+            retries.computeIfAbsent(endpoint.get(), k -> new LongAdder()).increment();
+        }
+    }
+
+    /** @return amount of retries performed per endpoint, endpoints without retries are absent. */
+    Map<String, Long> getRetryCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        retries.forEach((endpoint, count) -> counts.put(endpoint, count.sum()));
+        return counts;
+    }
+
+    private void backoff(final int attempt) throws InterruptedException {
+        final long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 30));
+        TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+}
@@ -6,6 +6,7 @@ import org.jline.terminal.TerminalBuilder;
 import spotifybackup.cmd.CmdParser;
 import spotifybackup.cmd.argument.FlagArgument;
 import spotifybackup.cmd.argument.enumeration.DefaultEnumArgument;
+import spotifybackup.cmd.argument.enumeration.OptionalEnumArgument;
 import spotifybackup.cmd.argument.file.DefaultFilePathArgument;
 import spotifybackup.cmd.argument.file.OptionalFilePathArgument;
 import spotifybackup.cmd.argument.integer.DefaultBoundedIntArgument;
@@ -74,6 +75,12 @@ public class App {
             .name("show-duration-new-liked")
             .description("Print out total duration of all new Liked songs, only done during backup.")
             .build();
+    static final FlagArgument fullSync = new FlagArgument.Builder()
+            .name("full-sync")
+            .description("Request every Liked song during backup and detect removed songs. By default requesting " +
+                    "stops at the newest stored Liked song and a full sync is only done when the amount of Liked songs " +
+                    "reported by Spotify differs from the amount stored.")
+            .build();
     static final DefaultEnumArgument<CLI.PlaylistFilter> playlistSaveRestriction = new DefaultEnumArgument.Builder<CLI.PlaylistFilter>()
             .enumClass(CLI.PlaylistFilter.class)
             .name("restrict-playlists")
@@ -84,6 +91,62 @@ public class App {
             .defaultValue(CLI.PlaylistFilter.ALL_BUT_SPOTIFY)
             .makeValueMandatory()
             .build();
+    static final DefaultBoundedIntArgument apiConcurrency = new DefaultBoundedIntArgument.Builder()
+            .name("api-concurrency")
+            .defaultValue(4)
+            .minimum(1)
+            .maximum(16)
+            .description("Maximum number of concurrent requests to the Spotify API per account.")
+            .makeValueMandatory()
+            .build();
+    static final DefaultBoundedIntArgument parallelAccounts = new DefaultBoundedIntArgument.Builder()
+            .name("parallel-accounts")
+            .defaultValue(1)
+            .minimum(1)
+            .maximum(16)
+            .description("Maximum number of accounts backed up at the same time.")
+            .makeValueMandatory()
+            .build();
+    static final OptionalFilePathArgument metricsOutputFileArg = new OptionalFilePathArgument.Builder()
+            .name("metrics-output")
+            .isFile()
+            .description("Path to write per-phase backup metrics to: wall time, API request latencies and retries " +
+                    "and database statistics. Written in the Prometheus text format if the file name ends with " +
+                    ".prom and as JSON otherwise.")
+            .build();
+    static final FlagArgument printMetrics = new FlagArgument.Builder()
+            .name("print-metrics")
+            .description("Print per-phase backup metrics after all backups are done.")
+            .build();
+    static final FlagArgument daemon = new FlagArgument.Builder()
+            .name("daemon")
+            .description("Keep running, backing up all accounts every backup-interval minutes and on request of " +
+                    "daemon-command, without reloading the database and API connections between backups.")
+            .build();
+    static final DefaultBoundedIntArgument backupInterval = new DefaultBoundedIntArgument.Builder()
+            .name("backup-interval")
+            .defaultValue(60)
+            .minimum(1)
+            .description("Minutes between the end of a backup and the start of the next one in daemon mode.")
+            .makeValueMandatory()
+            .build();
+    static final DefaultBoundedIntArgument daemonPort = new DefaultBoundedIntArgument.Builder()
+            .name("daemon-port")
+            .defaultValue(47_503)
+            .minimum(1)
+            .maximum(65_535)
+            .description("Port on the loopback address the daemon accepts commands on. Commands are only " +
+                    "accepted with the daemon token stored in the config file, so other local users need read " +
+                    "access to the config file to control the daemon.")
+            .makeValueMandatory()
+            .build();
+    static final OptionalEnumArgument<Daemon.Command> daemonCommand = new OptionalEnumArgument
+            .Builder<Daemon.Command>()
+            .name("daemon-command")
+            .description("Send a command to the running daemon and print its reply: BACKUP performs a backup now, " +
+                    "STATUS shows the result of the last backup and STOP stops the daemon.")
+            .enumClass(Daemon.Command.class)
+            .build();
     static final CmdParser argParser;
     static final Terminal term;
     @Getter
@@ -92,7 +155,9 @@ public class App {
     static {
         argParser = new CmdParser.Builder()
                 .arguments(configFileArg, dbFileArg, sqlOutputFileArg, doBackup, imageSaveRestriction, addAccounts,
-                        verboseArg, showTotalLibraryDuration, showDurationOfNew, playlistSaveRestriction)
+                        verboseArg, showTotalLibraryDuration, showDurationOfNew, playlistSaveRestriction,
+                        apiConcurrency, parallelAccounts, fullSync, metricsOutputFileArg, printMetrics, daemon,
+                        backupInterval, daemonPort, daemonCommand)
                 .description("Program to create offline backup of users Spotify account.")
                 .programName("SpotifyBackup.jar")
                 .addHelp()
@@ -148,6 +213,9 @@ public class App {
             argParser.parseArguments(args);
             if (argParser.isPresent("help")) {
                 println(argParser.getHelp(term.getType().equals("dumb") ? 120 : term.getWidth()));
+            } else if (daemonCommand.isPresent()) {
+                final var token = Config.loadFromFile(configFileArg.getValue()).getOrCreateDaemonToken();
+                println(Daemon.send(daemonCommand.getValue(), daemonPort.getValue(), token));
             } else {
                 new CLI();
             }
@@ -0,0 +1,236 @@
+package spotifybackup.app;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import lombok.NonNull;
+import spotifybackup.api_wrapper.ApiWrapper;
+import spotifybackup.api_wrapper.LatencyHistogram;
+import spotifybackup.storage.DatabaseStatistics;
+import spotifybackup.storage.SpotifyObjectRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * Metrics of every phase of the backup of a single account: wall time, latencies and retries of API requests per
+ * endpoint and the database work done. API metrics come from the ApiWrapper of the account, database metrics from the
+ * repository shared by all accounts, when accounts are backed up in parallel those include work of other accounts.
+ */
+class BackupMetrics {
+    private static final Map<String, ToLongFunction<DatabaseStatistics>> DATABASE_COUNTERS = new LinkedHashMap<>();
+
+    static {
+        DATABASE_COUNTERS.put("statements", DatabaseStatistics::statements);
+        DATABASE_COUNTERS.put("queries", DatabaseStatistics::queries);
+        DATABASE_COUNTERS.put("flushes", DatabaseStatistics::flushes);
+        DATABASE_COUNTERS.put("transactions", DatabaseStatistics::transactions);
+        DATABASE_COUNTERS.put("entity_loads", DatabaseStatistics::entityLoads);
+        DATABASE_COUNTERS.put("entity_inserts", DatabaseStatistics::entityInserts);
+        DATABASE_COUNTERS.put("entity_updates", DatabaseStatistics::entityUpdates);
+        DATABASE_COUNTERS.put("entity_deletes", DatabaseStatistics::entityDeletes);
+    }
+
+    private final String account;
+    private final ApiWrapper api;
+    private final SpotifyObjectRepository repo;
+    private final List<Phase> phases = new ArrayList<>();
+
+    /** @param account Name the metrics of this backup are reported under. */
+    BackupMetrics(@NonNull String account, @NonNull ApiWrapper api, @NonNull SpotifyObjectRepository repo) {
+        this.account = account;
+        this.api = api;
+        this.repo = repo;
+    }
+
+    /**
+     * Write metrics to file, in the Prometheus text format if the name of file ends with .prom and as JSON otherwise.
+     * @throws IOException when file can't be written.
+     */
+    static void write(@NonNull List<BackupMetrics> metrics, @NonNull File file) throws IOException {
+        final String report = file.getName().endsWith(".prom") ? toPrometheus(metrics) :
+                new GsonBuilder().setPrettyPrinting().create().toJson(toJson(metrics));
+        Files.writeString(file.toPath(), report, StandardCharsets.UTF_8);
+    }
+
+    static void print(@NonNull List<BackupMetrics> metrics) {
+        for (var backup : metrics) {
+            App.println("Backup metrics of account " + backup.account + ":");
+            for (var phase : backup.phases) {
+                final var requests = phase.requests().values().stream()
+                        .reduce(LatencyHistogram.Snapshot.EMPTY, BackupMetrics::plus);
+                App.println(2, phase.name() + ": " + phase.wallTime().toMillis() + " ms, " + describe(requests) +
+                        ", " + phase.retries().values().stream().mapToLong(Long::longValue).sum() + " retried, " +
+                        phase.database().queries() + " queries, " + phase.database().statements() + " statements");
+                phase.requests().forEach((endpoint, latencies) -> App.println(4, endpoint + ": " +
+                        describe(latencies) + ", " + phase.retries().getOrDefault(endpoint, 0L) + " retried"));
+            }
+        }
+    }
+
+    private static String describe(LatencyHistogram.Snapshot latencies) {
+        final long count = latencies.count();
+        if (count == 0) return "0 requests";
+        return count + " request(s), mean " + latencies.sum().dividedBy(count).toMillis() + " ms, p50 " +
+                describeBound(latencies.quantileUpperBoundMs(0.5)) + ", p95 " +
+                describeBound(latencies.quantileUpperBoundMs(0.95));
+    }
+
+    private static String describeBound(final long boundMs) {
+        return boundMs == -1 ? "> " + LatencyHistogram.BUCKET_BOUNDS_MS[LatencyHistogram.BUCKET_BOUNDS_MS.length - 1] +
+                " ms" : "<= " + boundMs + " ms";
+    }
+
+    private static LatencyHistogram.Snapshot plus(LatencyHistogram.Snapshot a, LatencyHistogram.Snapshot b) {
+        final var counts = new long[a.counts().length];
+        for (int i = 0; i < counts.length; i++) counts[i] = a.counts()[i] + b.counts()[i];
+        return new LatencyHistogram.Snapshot(counts, a.sumNanos() + b.sumNanos());
+    }
+
+    static JsonObject toJson(@NonNull List<BackupMetrics> metrics) {
+        final var accounts = new JsonArray();
+        for (var backup : metrics) {
+            final var phases = new JsonArray();
+            for (var phase : backup.phases) {
+                final var requests = new JsonObject();
+                phase.requests().forEach((endpoint, latencies) -> {
+                    final var buckets = new JsonObject();
+                    for (int i = 0; i < latencies.counts().length; i++) {
+                        buckets.addProperty(i < LatencyHistogram.BUCKET_BOUNDS_MS.length ?
+                                Long.toString(LatencyHistogram.BUCKET_BOUNDS_MS[i]) : "+Inf", latencies.counts()[i]);
+                    }
+                    final var endpointJson = new JsonObject();
+                    endpointJson.addProperty("count", latencies.count());
+                    endpointJson.addProperty("sumMs", latencies.sum().toMillis());
+                    endpointJson.addProperty("retries", phase.retries().getOrDefault(endpoint, 0L));
+                    endpointJson.add("bucketsMs", buckets);
+                    requests.add(endpoint, endpointJson);
+                });
+                final var database = new JsonObject();
+                DATABASE_COUNTERS.forEach((name, counter) ->
+                        database.addProperty(name, counter.applyAsLong(phase.database())));
+                final var phaseJson = new JsonObject();
+                phaseJson.addProperty("phase", phase.name());
+                phaseJson.addProperty("wallTimeMs", phase.wallTime().toMillis());
+                phaseJson.add("requests", requests);
+                phaseJson.add("database", database);
+                phases.add(phaseJson);
+            }
+            final var accountJson = new JsonObject();
+            accountJson.addProperty("account", backup.account);
+            accountJson.add("phases", phases);
+            accounts.add(accountJson);
+        }
+        final var json = new JsonObject();
+        json.add("backups", accounts);
+        return json;
+    }
+
+    static String toPrometheus(@NonNull List<BackupMetrics> metrics) {
+        final var out = new StringBuilder();
+        out.append("# HELP spotifybackup_phase_duration_seconds Wall time of a backup phase.\n")
+                .append("# TYPE spotifybackup_phase_duration_seconds gauge\n");
+        for (var backup : metrics) {
+            for (var phase : backup.phases) {
+                out.append("spotifybackup_phase_duration_seconds").append(backup.labels(phase)).append(' ')
+                        .append(seconds(phase.wallTime())).append('\n');
+            }
+        }
+        out.append("# HELP spotifybackup_api_request_duration_seconds Latency of every attempt of an API request.\n")
+                .append("# TYPE spotifybackup_api_request_duration_seconds histogram\n");
+        for (var backup : metrics) {
+            for (var phase : backup.phases) {
+                phase.requests().forEach((endpoint, latencies) -> {
+                    final var labels = backup.labels(phase, "endpoint", endpoint);
+                    final var prefix = labels.substring(0, labels.length() - 1) + ",le=\"";
+                    long cumulative = 0;
+                    for (int i = 0; i < latencies.counts().length; i++) {
+                        cumulative += latencies.counts()[i];
+                        out.append("spotifybackup_api_request_duration_seconds_bucket").append(prefix)
+                                .append(i < LatencyHistogram.BUCKET_BOUNDS_MS.length ?
+                                        seconds(Duration.ofMillis(LatencyHistogram.BUCKET_BOUNDS_MS[i])) : "+Inf")
+                                .append("\"} ").append(cumulative).append('\n');
+                    }
+                    out.append("spotifybackup_api_request_duration_seconds_sum").append(labels).append(' ')
+                            .append(seconds(latencies.sum())).append('\n');
+                    out.append("spotifybackup_api_request_duration_seconds_count").append(labels).append(' ')
+                            .append(latencies.count()).append('\n');
+                });
+            }
+        }
+        out.append("# HELP spotifybackup_api_retries_total API requests retried after a transient failure.\n")
+                .append("# TYPE spotifybackup_api_retries_total counter\n");
+        for (var backup : metrics) {
+            for (var phase : backup.phases) {
+                phase.retries().forEach((endpoint, count) -> out.append("spotifybackup_api_retries_total")
+                        .append(backup.labels(phase, "endpoint", endpoint)).append(' ').append(count).append('\n'));
+            }
+        }
+        DATABASE_COUNTERS.forEach((name, counter) -> {
+            final var metric = "spotifybackup_db_" + name + "_total";
+            out.append("# HELP ").append(metric).append(" Hibernate statistics counter of the database.\n")
+                    .append("# TYPE ").append(metric).append(" counter\n");
+            for (var backup : metrics) {
+                for (var phase : backup.phases) {
+                    out.append(metric).append(backup.labels(phase)).append(' ')
+                            .append(counter.applyAsLong(phase.database())).append('\n');
+                }
+            }
+        });
+        return out.toString();
+    }
+
+    private static String seconds(Duration duration) {
+        return Double.toString(duration.toNanos() / 1e9);
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private String labels(Phase phase, String... extra) {
+        final var labels = new StringBuilder("{account=\"").append(escapeLabel(account))
+                .append("\",phase=\"").append(escapeLabel(phase.name())).append('"');
+        for (int i = 0; i + 1 < extra.length; i += 2) {
+            labels.append(',').append(extra[i]).append("=\"").append(escapeLabel(extra[i + 1])).append('"');
+        }
+        return labels.append('}').toString();
+    }
+
+    /** Perform action and record its metrics under the name of phase, also when action fails. */
+    void measure(@NonNull String phase, @NonNull Runnable action) {
+        final var latencies = api.getLatencies();
+        final var retries = api.getRetryCounts();
+        final var database = repo.getStatistics();
+        final long start = System.nanoTime();
+        try {
+            action.run();
+        } finally {
+            final long wallTime = System.nanoTime() - start;
+            final Map<String, LatencyHistogram.Snapshot> phaseLatencies = new TreeMap<>();
+            api.getLatencies().forEach((endpoint, latency) -> {
+                final var difference = latency.minus(latencies.getOrDefault(endpoint, LatencyHistogram.Snapshot.EMPTY));
+                if (difference.count() > 0) phaseLatencies.put(endpoint, difference);
+            });
+            final Map<String, Long> phaseRetries = new TreeMap<>();
+            api.getRetryCounts().forEach((endpoint, count) -> {
+                final long difference = count - retries.getOrDefault(endpoint, 0L);
+                if (difference > 0) phaseRetries.put(endpoint, difference);
+            });
+            phases.add(new Phase(phase, Duration.ofNanos(wallTime), phaseLatencies, phaseRetries,
+                    repo.getStatistics().minus(database)));
+        }
+    }
+
+    /**
+     * @param requests Latencies of the requests of the phase per endpoint, endpoints without requests are absent.
+     * @param retries  Retries of the phase per endpoint, endpoints without retries are absent.
+     */
+    record Phase(String name, Duration wallTime, Map<String, LatencyHistogram.Snapshot> requests,
+                 Map<String, Long> retries, DatabaseStatistics database) {}
+}
@@ -4,41 +4,139 @@ import org.apache.commons.lang3.time.DurationFormatUtils;
 import se.michaelthelin.spotify.model_objects.AbstractModelObject;
 import se.michaelthelin.spotify.model_objects.specification.*;
 import spotifybackup.api_wrapper.ApiWrapper;
+import spotifybackup.api_wrapper.ApiWrapper.Response;
 import spotifybackup.storage.*;
 
+import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class CLI {
     private final SpotifyObjectRepository repo;
+    private final List<BackupMetrics> backupMetrics = Collections.synchronizedList(new ArrayList<>());
+    /** ApiWrapper per account, only kept in daemon mode. */
+    private final Map<Config.UserInfo, ApiWrapper> apis = new IdentityHashMap<>();
 
     CLI() throws IOException, InterruptedException {
         App.dbFileArg.ifNotPresent(path -> App.verbosePrintln("Database file: " + path));
         App.configFileArg.ifNotPresent(path -> App.verbosePrintln("Config file: " + path));
         App.sqlOutputFileArg.ifPresent(path -> App.verbosePrintln("SQL scripts file: " + path));
         repo = SpotifyObjectRepository.factory(App.dbFileArg.getValue());
+        repo.setStatisticsEnabled(App.metricsOutputFileArg.isPresent() || App.printMetrics.isPresent());
         App.config = Config.loadFromFile(App.configFileArg.getValue());
         performActions();
     }
 
     private void performActions() throws IOException, InterruptedException {
         if (App.addAccounts.isPresent()) addAccounts();
-        if (App.doBackup.isPresent()) {
-            if (App.config.getUsers().length > 0) for (var user : App.config.getUsers()) new Backup(user);
-            else new Backup(App.config.addEmptyUser());
+        if (App.daemon.isPresent()) {
+            runDaemon();
+            return;
         }
+        if (App.doBackup.isPresent()) backup();
         App.showTotalLibraryDuration.ifPresent(this::printTotalLibraryDurations);
         App.sqlOutputFileArg.ifPresent(repo::outputDatabaseToSQLScript);
     }
 
+    /** Back up all accounts and report the metrics of this backup only. */
+    private void backup() throws IOException, InterruptedException {
+        backupMetrics.clear();
+        if (App.config.getUsers().length > 0) backupAccounts(App.config.getUsers());
+        else new Backup(App.config.addEmptyUser());
+        App.printMetrics.ifPresent(() -> BackupMetrics.print(backupMetrics));
+        if (App.metricsOutputFileArg.isPresent()) {
+            BackupMetrics.write(backupMetrics, App.metricsOutputFileArg.getValue());
+        }
+    }
+
+    /**
+     * Run until stopped, every backup reuses the repository and the ApiWrapper of every account, so only the first
+     * backup pays for opening the database and logging in. The SQL script is written after every backup.
+     */
+    private void runDaemon() throws IOException, InterruptedException {
+        new Daemon(() -> {
+            try {
+                backup();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            App.sqlOutputFileArg.ifPresent(repo::outputDatabaseToSQLScript);
+        }, Duration.ofMinutes(App.backupInterval.getValue()), App.daemonPort.getValue(),
+                App.config.getOrCreateDaemonToken()).run();
+    }
+
+    /**
+     * @return ApiWrapper logged in to account, in daemon mode the wrapper is kept and its access token refreshed in
+     * the background so that later backups don't need to log in again.
+     */
+    private ApiWrapper apiFor(final Config.UserInfo account) throws IOException, InterruptedException {
+        if (!App.daemon.isPresent()) {
+            return new ApiWrapper(account, App.getConfig(), App.apiConcurrency.getValue(), responseCacheDirectory());
+        }
+        synchronized (apis) {
+            final var api = apis.get(account);
+            if (api != null) return api;
+        }
+        // created without holding the lock, logging in can take long and shouldn't hold up the other accounts
+        final var api = new ApiWrapper(account, App.getConfig(), App.apiConcurrency.getValue(),
+                responseCacheDirectory());
+        synchronized (apis) {
+            final var existing = apis.putIfAbsent(account, api);
+            return existing == null ? api : existing;
+        }
+    }
+
+    /**
+     * Back up accounts, up to the amount of accounts given by the parallel-accounts argument are backed up at the same
+     * time. When backups are run in parallel every account is attempted, the first failure is rethrown afterwards.
+     */
+    private void backupAccounts(final Config.UserInfo[] accounts) throws IOException, InterruptedException {
+        final int parallelism = Math.min(App.parallelAccounts.getValue(), accounts.length);
+        if (parallelism == 1) {
+            for (var account : accounts) new Backup(account);
+            return;
+        }
+        final var executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            final List<Future<Backup>> backups = new ArrayList<>();
+            for (var account : accounts) backups.add(executor.submit(() -> new Backup(account)));
+            Exception firstFailure = null;
+            for (int i = 0; i < backups.size(); i++) {
+                try {
+                    backups.get(i).get();
+                } catch (ExecutionException e) {
+                    final var account = accounts[i];
+                    App.println("Backup failed for account " + account.getDisplayName().orElseGet(() ->
+                            account.getSpotifyId().orElse("")) + ": " + e.getCause().getMessage());
+                    if (firstFailure == null && e.getCause() instanceof Exception cause) firstFailure = cause;
+                }
+            }
+            if (firstFailure instanceof IOException e) throw e;
+            else if (firstFailure instanceof RuntimeException e) throw e;
+            else if (firstFailure != null) throw new RuntimeException(firstFailure);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     private void addAccounts() throws IOException, InterruptedException {
         App.verbosePrintln("Adding " + App.addAccounts.getValue() + " new account(s)");
         for (int i = 0; i < App.addAccounts.getValue(); i++) {
@@ -51,12 +149,27 @@ public class CLI {
         }
     }
 
+    /**
+     * @return directory next to the database that API responses are cached in, a cached response tells what that
+     * database already holds.
+     */
+    private static File responseCacheDirectory() {
+        final var db = App.dbFileArg.getValue().getAbsoluteFile();
+        return new File(db.getParentFile(), db.getName().replaceFirst("(\\.mv)?\\.db$", "") + "-responses");
+    }
+
+    /**
+     * Print the total duration of the Liked Songs of every account, from the summary cached by the last backup unless
+     * that backup didn't complete.
+     */
     private void printTotalLibraryDurations() {
         for (var account : repo.getAccountHolders()) {
-            var tracks = repo.getSavedTracks(account);
-            long durationMs = tracks.stream().map(s -> s.getTrack().getDurationMs().longValue()).reduce(0L, Long::sum);
+            final var summary = repo.getBackupCheckpoint(account).isPresent() ? Optional.<LibrarySummary>empty() :
+                    repo.getLibrarySummary(account);
+            final var duration = summary.map(LibrarySummary::getLibraryDuration)
+                    .orElseGet(() -> repo.getLibraryDuration(account));
             App.println("Account [" + account.getDisplayName().orElseGet(account::getSpotifyUserID) +
-                    "] has a total library duration: " + msToPrettyString(durationMs)
+                    "] has a total library duration: " + msToPrettyString(duration.durationMs())
             );
         }
     }
@@ -78,182 +191,334 @@ public class CLI {
 
     private class Backup {
         static final String spotifyUserId = "spotify";
+        static final int PAGE_LIMIT = 50;
+        /** Checkpoints older than this are ignored, the library has likely changed too much to resume. */
+        static final Duration CHECKPOINT_MAX_AGE = Duration.ofHours(24);
+        /** Detailed objects of a kind persisted in a single transaction while hydrating simplified objects. */
+        static final int HYDRATION_FLUSH_SIZE = 1000;
         final ApiWrapper api;
         final SpotifyUser user;
+        final Optional<BackupCheckpoint> resumePoint;
+        final BackupMetrics metrics;
+        /** Playlists listed by Spotify during this backup by Spotify ID, their snapshot IDs tell what changed. */
+        final Map<String, PlaylistSimplified> listedPlaylists = new ConcurrentHashMap<>();
 
         private Backup(final Config.UserInfo account) throws InterruptedException, IOException {
-            api = new ApiWrapper(account, App.getConfig());
-            final var currentUser = api.getCurrentUser().orElseThrow();
+            api = apiFor(account);
+            user = findStoredAccountHolder(account).orElseGet(() -> repo.persist(api.getCurrentUser().orElseThrow()));
             if (App.verboseArg.isPresent() || App.showDurationOfNew.isPresent())
-                App.println("Logged in as: " + currentUser.getDisplayName());
-            user = repo.persist(currentUser);
-            performBackup();
+                App.println("Logged in as: " + user.getDisplayName().orElseGet(user::getSpotifyUserID));
+            resumePoint = repo.getBackupCheckpoint(user).filter(c -> c.getDateUpdated()
+                    .isAfter(ZonedDateTime.now(ZoneOffset.UTC).minus(CHECKPOINT_MAX_AGE)));
+            resumePoint.ifPresent(c -> App.verbosePrintln(2, "Resuming interrupted backup at " + c.getPhase()));
+            metrics = new BackupMetrics(user.getSpotifyUserID(), api, repo);
+            backupMetrics.add(metrics);
+            try {
+                performBackup();
+            } finally {
+                repo.clearCache();
+            }
+            api.commitResponses();
+            api.getRetryCounts().forEach((endpoint, count) ->
+                    App.verbosePrintln(2, "Retried " + count + " request(s) to " + endpoint));
+        }
+
+        /**
+         * @return account holder stored by an earlier backup of account, which saves requesting the profile. Empty for
+         * new accounts, on a full sync and when the display name in the config was changed by a browser login since.
+         */
+        private Optional<SpotifyUser> findStoredAccountHolder(final Config.UserInfo account) {
+            if (App.fullSync.isPresent()) return Optional.empty();
+            return account.getSpotifyId().filter(id -> !id.isBlank()).flatMap(repo::find)
+                    .filter(SpotifyUser.class::isInstance).map(SpotifyUser.class::cast)
+                    .filter(user -> user.getCountryCode().isPresent() && user.getProductType().isPresent())
+                    .filter(user -> user.getDisplayName().equals(account.getDisplayName()));
         }
 
-        /** Perform various backup actions. */
+        /** Perform various backup actions, the progress is journaled so that an interrupted backup can resume. */
         private void performBackup() {
-            saveLikedSongs();
-            saveFollowedPlaylists();
-            saveFollowedArtists();
-            saveLikedAlbums();
-            saveDetailedInfo();
+            performPhase(BackupPhase.LIKED_SONGS, this::saveLikedSongs);
+            performPhase(BackupPhase.FOLLOWED_PLAYLISTS, this::saveFollowedPlaylists);
+            performPhase(BackupPhase.FOLLOWED_ARTISTS, this::saveFollowedArtists);
+            performPhase(BackupPhase.LIKED_ALBUMS, this::saveLikedAlbums);
+            performPhase(BackupPhase.DETAILED_INFO, this::saveDetailedInfo);
+            repo.refreshLibrarySummary(user);
+            repo.clearBackupCheckpoint(user);
+        }
+
+        private void performPhase(final BackupPhase phase, final Runnable action) {
+            if (resumePoint.isPresent() && phase.isBefore(resumePoint.get().getPhase())) return;
+            if (!isResumed(phase)) repo.saveBackupCheckpoint(user, phase, 0, null);
+            metrics.measure(phase.name(), action);
         }
 
+        /**
+         * @return true if phase was interrupted during the previous backup and is continued from its checkpoint, the
+         * items requested before the interruption are then not available for removal detection.
+         */
+        private boolean isResumed(final BackupPhase phase) {
+            return resumePoint.map(c -> c.getPhase() == phase).orElse(false);
+        }
+
+        /**
+         * Saves Liked Songs, Spotify returns them newest first. Unless a full sync is requested, requesting stops after
+         * the first page reaching the newest stored Liked Song. Removed songs are only detected by a full sync, which
+         * is also done when the amount of Liked Songs reported by Spotify differs from the amount stored afterward.
+         */
         private void saveLikedSongs() {
             var oldTrackIds = repo.getSavedTrackIds(user);
             List<SpotifySavedTrack> newTracks = new ArrayList<>();
-            final ZonedDateTime newestSavedTrackAddedAt = repo.getNewestSavedTrack(user).isPresent() ?
-                    repo.getNewestSavedTrack(user).orElseThrow().getDateAdded() :
+            final var newestSavedTrack = repo.getNewestSavedTrack(user);
+            final ZonedDateTime newestSavedTrackAddedAt = newestSavedTrack.isPresent() ?
+                    newestSavedTrack.orElseThrow().getDateAdded() :
                     ZonedDateTime.ofInstant(Instant.EPOCH, ZoneOffset.UTC);
-            var pageItems = getFromApiPaged(2, "Saving all Liked Songs", api::getLikedSongs);
-            for (var items : pageItems) newTracks.addAll(repo.persist(items, user));
+            final var reportedTotal = new AtomicInteger(-1);
+            final BiFunction<Integer, Integer, Response<Paging<SavedTrack>>> getPage = (limit, offset) -> {
+                final var page = api.getLikedSongs(limit, offset);
+                reportedTotal.set(page.value().getTotal());
+                return page;
+            };
+            boolean fullSync = App.fullSync.isPresent() || newestSavedTrack.isEmpty() ||
+                    isResumed(BackupPhase.LIKED_SONGS);
+            if (fullSync) {
+                getFromApiPaged(2, "Saving all Liked Songs", BackupPhase.LIKED_SONGS, getPage,
+                        items -> newTracks.addAll(repo.persist(items, user)));
+            } else {
+                final Instant highWaterMark = newestSavedTrackAddedAt.toInstant();
+                getFromApiPaged(2, "Saving new Liked Songs", BackupPhase.LIKED_SONGS, getPage,
+                        items -> items.length == 0 ||
+                                !items[items.length - 1].getAddedAt().toInstant().isAfter(highWaterMark),
+                        page -> newTracks.addAll(repo.persist(page.value(), user)));
+                if (repo.countSavedTracks(user) != reportedTotal.get()) {
+                    App.verbosePrintln(4, "Amount of Liked Songs differs from Spotify, performing full sync");
+                    fullSync = true;
+                    newTracks.clear();
+                    repo.saveBackupCheckpoint(user, BackupPhase.LIKED_SONGS, 0, null);
+                    getFromApiPaged(2, "Saving all Liked Songs", BackupPhase.LIKED_SONGS, getPage,
+                            items -> newTracks.addAll(repo.persist(items, user)));
+                }
+            }
             var newTrackIds = newTracks.stream().map(t -> t.getTrack().getSpotifyID().getId()).collect(Collectors.toList());
             newTrackIds.removeAll(oldTrackIds);
             if (!newTrackIds.isEmpty()) {
                 App.showDurationOfNew.ifPresentOrElse(() -> {
-                    var onlyNewTracks = repo.getSavedTracksAfter(user, newestSavedTrackAddedAt);
-                    var durationMs = onlyNewTracks.stream().map(s -> s.getTrack().getDurationMs().longValue())
-                            .reduce(0L, Long::sum);
+                    final long durationMs = repo.getLibraryDurationAddedAfter(user, newestSavedTrackAddedAt)
+                            .durationMs();
                     App.println(4, "Added " + newTrackIds.size() + " track(s) to Liked songs, duration: "
                             + msToPrettyString(durationMs));
                 }, () -> App.verbosePrintln(4, "Added " + newTrackIds.size() + " track(s) to Liked songs"));
             }
-            markRemovedTracks(newTracks);
+            if (fullSync && !isResumed(BackupPhase.LIKED_SONGS)) markRemovedTracks(newTracks);
         }
 
         private void saveFollowedPlaylists() {
             var oldPlaylistIds = repo.getFollowedPlaylistIds(user);
             List<SpotifyPlaylist> newPlaylists = new ArrayList<>();
-            var pageItems = getFromApiPaged(2, "Saving " + App.playlistSaveRestriction.getValue().message
-                    + " playlists", api::getCurrentUserPlaylists);
-            for (var items : pageItems) {
-                newPlaylists.addAll(repo.persist(switch (App.playlistSaveRestriction.getValue()) {
-                    case ALL -> items;
-                    case ALL_BUT_SPOTIFY -> Arrays.stream(items)
-                            .filter(p -> !p.getOwner().getId().equals(spotifyUserId))
-                            .toArray(PlaylistSimplified[]::new);
-                    case ONLY_USER -> Arrays.stream(items)
-                            .filter(p -> p.getOwner().getId().equals(user.getSpotifyUserID()))
-                            .toArray(PlaylistSimplified[]::new);
-                }));
-            }
+            getFromApiPaged(2, "Saving " + App.playlistSaveRestriction.getValue().message + " playlists",
+                    BackupPhase.FOLLOWED_PLAYLISTS, api::getCurrentUserPlaylists, items -> {
+                        final var saved = switch (App.playlistSaveRestriction.getValue()) {
+                            case ALL -> items;
+                            case ALL_BUT_SPOTIFY -> Arrays.stream(items)
+                                    .filter(p -> !p.getOwner().getId().equals(spotifyUserId))
+                                    .toArray(PlaylistSimplified[]::new);
+                            case ONLY_USER -> Arrays.stream(items)
+                                    .filter(p -> p.getOwner().getId().equals(user.getSpotifyUserID()))
+                                    .toArray(PlaylistSimplified[]::new);
+                        };
+                        for (var playlist : saved) listedPlaylists.put(playlist.getId(), playlist);
+                        newPlaylists.addAll(repo.persist(saved));
+                    });
             var newPlaylistIds = newPlaylists.stream().map(p -> p.getSpotifyID().getId()).collect(Collectors.toList());
             newPlaylistIds.removeAll(oldPlaylistIds);
             if (!newPlaylistIds.isEmpty())
                 App.verbosePrintln(4, "Following " + newPlaylistIds.size() + " new playlist(s)");
-            repo.followPlaylists(newPlaylists, user);
-            markUnfollowedPlaylists(newPlaylists);
+            if (isResumed(BackupPhase.FOLLOWED_PLAYLISTS)) repo.followPlaylists(newPlaylists, user);
+            else markUnfollowedPlaylists(newPlaylists);
         }
 
         private void saveFollowedArtists() {
             var oldArtistIds = repo.getFollowedArtistIds(user);
-            List<SpotifyArtist> newArtists = new ArrayList<>();
-            var pageItems = getFromApiPagedCursor(2, "Saving followed artists", api::getCurrentUserFollowedArtists);
-            for (var items : pageItems) newArtists.addAll(repo.persist(items, App.imageSaveRestriction.getValue()));
+            final var pages = new UnchangedPages<Artist, SpotifyArtist>(
+                    items -> repo.persist(items, App.imageSaveRestriction.getValue()));
+            getFromApiPagedCursor(2, "Saving followed artists", BackupPhase.FOLLOWED_ARTISTS,
+                    api::getCurrentUserFollowedArtists, Artist::getId, pages);
+            if (pages.isUnchanged()) {
+                App.verbosePrintln(4, "Followed artists unchanged since last backup");
+                return;
+            }
+            List<SpotifyArtist> newArtists = pages.persistSkipped();
             var newArtistIds = newArtists.stream().map(a -> a.getSpotifyID().getId()).collect(Collectors.toList());
             newArtistIds.removeAll(oldArtistIds);
             if (!newArtistIds.isEmpty())
                 App.verbosePrintln(4, "Following " + newArtistIds.size() + " new artist(s)");
-            repo.followArtists(newArtists, user);
-            markUnfollowedArtists(newArtists);
+            if (isResumed(BackupPhase.FOLLOWED_ARTISTS)) repo.followArtists(newArtists, user);
+            else markUnfollowedArtists(newArtists);
         }
 
         private void saveLikedAlbums() {
             var oldAlbumIds = repo.getSavedAlbumIds(user);
-            List<SpotifySavedAlbum> newAlbums = new ArrayList<>();
-            var pageItems = getFromApiPaged(2, "Saving all liked albums", api::getCurrentUserSavedAlbums);
-            for (var items : pageItems)
-                newAlbums.addAll(repo.persist(items, user, App.imageSaveRestriction.getValue()));
+            final var pages = new UnchangedPages<SavedAlbum, SpotifySavedAlbum>(
+                    items -> repo.persist(items, user, App.imageSaveRestriction.getValue()));
+            getFromApiPaged(2, "Saving all liked albums", BackupPhase.LIKED_ALBUMS, api::getCurrentUserSavedAlbums,
+                    items -> false, pages);
+            if (pages.isUnchanged()) {
+                App.verbosePrintln(4, "Liked albums unchanged since last backup");
+                return;
+            }
+            List<SpotifySavedAlbum> newAlbums = pages.persistSkipped();
             var newAlbumIds = newAlbums.stream().map(a -> a.getAlbum().getSpotifyID().getId()).collect(Collectors.toList());
             newAlbumIds.removeAll(oldAlbumIds);
             if (!newAlbumIds.isEmpty())
                 App.verbosePrintln(4, "Added " + newAlbumIds.size() + " album(s) to liked");
-            markUnlikedAlbums(newAlbums);
+            if (!isResumed(BackupPhase.LIKED_ALBUMS)) markUnlikedAlbums(newAlbums);
+        }
+
+        /**
+         * Request every page of an offset paged endpoint and hand the pages to persist in order, persisting a page
+         * overlaps with requesting the next pages.
+         */
+        private <A extends AbstractModelObject> void
+        getFromApiPaged(int spaces, String message, BiFunction<Integer, Integer, Response<Paging<A>>> getPage,
+                        Consumer<A[]> persist) {
+            getFromApiPaged(spaces, message, null, getPage, persist);
         }
 
-        private <A extends AbstractModelObject> List<A[]>
-        getFromApiPaged(int spaces, String message, BiFunction<Integer, Integer, Paging<A>> getPage) {
+        /**
+         * Request every page of an offset paged endpoint and hand the pages to persist in order, persisting a page
+         * overlaps with requesting the next pages.
+         * @param phase If not null the offset of every persisted page is journaled as phase, requesting starts at the
+         *              journaled offset when phase is resumed.
+         */
+        private <A extends AbstractModelObject> void
+        getFromApiPaged(int spaces, String message, BackupPhase phase,
+                        BiFunction<Integer, Integer, Response<Paging<A>>> getPage, Consumer<A[]> persist) {
+            getFromApiPaged(spaces, message, phase, getPage, items -> false, page -> persist.accept(page.value()));
+        }
+
+        /**
+         * Request pages of an offset paged endpoint and hand the pages to persist in order, persisting a page overlaps
+         * with requesting the next pages.
+         * @param phase      If not null the offset of every persisted page is journaled as phase, requesting starts at
+         *                   the journaled offset when phase is resumed.
+         * @param isLastPage No further pages are requested once it returns true for a requested page.
+         * @param persist    Receives the items of every page, unchanged if Spotify answered the page with 304.
+         */
+        private <A extends AbstractModelObject> void
+        getFromApiPaged(int spaces, String message, BackupPhase phase,
+                        BiFunction<Integer, Integer, Response<Paging<A>>> getPage, Predicate<A[]> isLastPage,
+                        Consumer<Response<A[]>> persist) {
             App.verbosePrint(spaces, message);
-            final int limit = 50;
-            int offset = 0;
-            Paging<A> apiPage;
-            List<A[]> apiItems = new ArrayList<>();
             App.verbosePrint(", requesting data");
-            do {
-                App.verbosePrint(".");
-                apiPage = getPage.apply(limit, offset);
-                apiItems.add(apiPage.getItems());
-                offset += limit;
-            } while (apiPage.getNext() != null);
+            final int startOffset = phase != null && isResumed(phase) ? resumePoint.orElseThrow().getPageOffset() : 0;
+            final var nextOffset = new AtomicInteger(startOffset);
+            PagePipeline.<Response<A[]>>run(PagePipeline.DEFAULT_CAPACITY, sink -> OffsetPageFetcher.fetch(getPage,
+                            PAGE_LIMIT, startOffset, App.apiConcurrency.getValue(), isLastPage, sink),
+                    page -> {
+                        App.verbosePrint(".");
+                        persist.accept(page);
+                        nextOffset.addAndGet(PAGE_LIMIT);
+                        if (phase != null) repo.saveBackupCheckpoint(user, phase, nextOffset.get(), null);
+                    });
             App.verbosePrintln("");
-            return apiItems;
         }
 
-        private <A extends AbstractModelObject> List<A[]>
-        getFromApiPagedCursor(int spaces, String message, BiFunction<Integer, String, PagingCursorbased<A>> getPage) {
+        /**
+         * Request every page of a cursor paged endpoint and hand the pages to persist in order, persisting a page
+         * overlaps with requesting the next page. The cursor of every persisted page is journaled as phase, requesting
+         * starts at the journaled cursor when phase is resumed.
+         * @param getId   Spotify ID of an item, the ID of the last item of a page is the cursor of the next page.
+         * @param persist Receives the items of every page, unchanged if Spotify answered the page with 304.
+         */
+        private <A extends AbstractModelObject> void
+        getFromApiPagedCursor(int spaces, String message, BackupPhase phase,
+                              BiFunction<Integer, String, Response<PagingCursorbased<A>>> getPage,
+                              Function<A, String> getId, Consumer<Response<A[]>> persist) {
             App.verbosePrint(spaces, message);
-            final int limit = 50;
-            String after = null;
-            PagingCursorbased<A> apiPage;
-            List<A[]> apiItems = new ArrayList<>();
             App.verbosePrint(", requesting data");
-            do {
+            final String startCursor = isResumed(phase) ? resumePoint.orElseThrow().getPageCursor().orElse(null) : null;
+            PagePipeline.<Response<A[]>>run(PagePipeline.DEFAULT_CAPACITY, sink -> {
+                String after = startCursor;
+                Response<PagingCursorbased<A>> apiPage;
+                do {
+                    apiPage = getPage.apply(PAGE_LIMIT, after);
+                    sink.accept(apiPage.map(PagingCursorbased::getItems));
+                    after = apiPage.value().getCursors()[0].getAfter();
+                } while (apiPage.value().getNext() != null);
+            }, page -> {
                 App.verbosePrint(".");
-                apiPage = getPage.apply(limit, after);
-                apiItems.add(apiPage.getItems());
-                after = apiPage.getCursors()[0].getAfter();
-            } while (apiPage.getNext() != null);
+                persist.accept(page);
+                final A[] items = page.value();
+                if (items.length > 0) repo.saveBackupCheckpoint(user, phase, 0, getId.apply(items[items.length - 1]));
+            });
             App.verbosePrintln("");
-            return apiItems;
         }
 
         private void markRemovedTracks(final List<SpotifySavedTrack> newSavedTracks) {
-            var newSavedTrackIds = newSavedTracks.stream().map(SpotifySavedTrack::getId).collect(Collectors.toSet());
-            var allSavedTracks = repo.getSavedTracks(user);
-            // filter using record ids instead of object compare (removeAll calling equalsTo) because SpotifySavedTrack has
-            // no equalsTo method that works on internal fields
-            var removed = allSavedTracks.stream().filter(t -> !newSavedTrackIds.contains(t.getId())).toList();
-            if (!removed.isEmpty()) {
-                for (var track : removed) repo.removeSavedTrack(track.getTrack(), user);
-                App.verbosePrintln(4, "Removed " + removed.size() + " track(s) from Liked Songs");
-            }
+            final int removed = repo.removeSavedTracksExcept(newSavedTracks, user);
+            if (removed > 0) App.verbosePrintln(4, "Removed " + removed + " track(s) from Liked Songs");
         }
 
+        /** Follow newPlaylists and unfollow every other playlist. */
         private void markUnfollowedPlaylists(final List<SpotifyPlaylist> newPlaylists) {
-            var newPlaylistIds = newPlaylists.stream().map(SpotifyPlaylist::getId).collect(Collectors.toSet());
-            var allPlaylists = repo.getFollowedPlaylists(user);
-            var removed = allPlaylists.stream().filter(p -> !newPlaylistIds.contains(p.getId())).toList();
-            if (!removed.isEmpty()) {
-                repo.unfollowPlaylists(removed, user);
-                App.verbosePrintln(4, "Unfollowed " + removed.size() + " playlist(s)");
-            }
+            var removed = repo.syncFollowedPlaylists(newPlaylists, user);
+            if (!removed.isEmpty()) App.verbosePrintln(4, "Unfollowed " + removed.size() + " playlist(s)");
         }
 
+        /** Follow newFollowedArtists and unfollow every other artist. */
         private void markUnfollowedArtists(final List<SpotifyArtist> newFollowedArtists) {
-            var newArtisIds = newFollowedArtists.stream().map(SpotifyArtist::getId).collect(Collectors.toSet());
-            var allArtists = repo.getFollowedArtists(user);
-            var removed = allArtists.stream().filter(a -> !newArtisIds.contains(a.getId())).toList();
-            if (!removed.isEmpty()) {
-                repo.unfollowArtists(removed, user);
-                App.verbosePrintln(4, "Unfollowed " + removed.size() + " artists(s)");
-            }
+            var removed = repo.syncFollowedArtists(newFollowedArtists, user);
+            if (!removed.isEmpty()) App.verbosePrintln(4, "Unfollowed " + removed.size() + " artists(s)");
         }
 
         private void markUnlikedAlbums(final List<SpotifySavedAlbum> newLikedAlbums) {
-            var newSavedAlbumIds = newLikedAlbums.stream().map(SpotifySavedAlbum::getId).collect(Collectors.toSet());
-            var allSavedAlbums = repo.getSavedAlbums(user);
-            var removed = allSavedAlbums.stream().filter(p -> !newSavedAlbumIds.contains(p.getId())).toList();
-            if (!removed.isEmpty()) {
-                for (var album : removed) repo.removeSavedAlbum(album.getAlbum(), user);
-                App.verbosePrintln(4, "Removed " + removed.size() + " album(s) from Saved Albums");
+            final int removed = repo.removeSavedAlbumsExcept(newLikedAlbums, user);
+            if (removed > 0) App.verbosePrintln(4, "Removed " + removed + " album(s) from Saved Albums");
+        }
+
+        /**
+         * Persists pages of a listing, pages answered with 304 Not Modified are held back while every page so far was
+         * unchanged. If the whole listing turns out unchanged, the database already holds it and nothing needs to be
+         * persisted, otherwise the held back pages are persisted as well, as detecting removals needs every item. A
+         * full sync persists every page.
+         * @param <A> Type of the items of a page.
+         * @param <P> Type of the persisted items.
+         */
+        private class UnchangedPages<A, P> implements Consumer<Response<A[]>> {
+            private final Function<A[], List<P>> persist;
+            private final List<A[]> skipped = new ArrayList<>();
+            private final List<P> persisted = new ArrayList<>();
+            private boolean changed = App.fullSync.isPresent();
+
+            UnchangedPages(Function<A[], List<P>> persist) {
+                this.persist = persist;
+            }
+
+            @Override
+            public void accept(Response<A[]> page) {
+                if (!changed && page.unchanged()) {
+                    skipped.add(page.value());
+                } else {
+                    changed = true;
+                    persisted.addAll(persist.apply(page.value()));
+                }
+            }
+
+            boolean isUnchanged() {
+                return !changed && !skipped.isEmpty();
+            }
+
+            /** @return every persisted item, after persisting the pages held back. */
+            List<P> persistSkipped() {
+                for (var items : skipped) persisted.addAll(persist.apply(items));
+                skipped.clear();
+                return persisted;
             }
         }
 
         private List<String> combineIds(final List<String> separateIds, final int limit) {
             List<String> combined = new ArrayList<>();
-            for (int i = 0; i <= separateIds.size() / limit; i++) {
-                combined.add(String.join(",",
-                        separateIds.subList(i * limit, Math.min(i * limit + limit, separateIds.size()))));
+            for (int i = 0; i < separateIds.size(); i += limit) {
+                combined.add(String.join(",", separateIds.subList(i, Math.min(i + limit, separateIds.size()))));
             }
             return combined;
         }
@@ -261,51 +526,102 @@ public class CLI {
         private void saveDetailedInfo() {
             App.verbosePrintln(2, "Requesting detailed information for simplified objects");
             saveDetailedPlaylistInfo();
-            saveDetailedAlbumInfo();
-            saveDetailedArtistInfo();
-            saveDetailedTrackInfo();
+            hydrateSimplifiedObjects();
         }
 
+        /**
+         * Request details and items of the followed playlists that are new or whose snapshot ID changed. The snapshot
+         * IDs of the playlist listing are used, so unchanged playlists aren't requested at all. Only followed playlists
+         * missing from the listing, because it was resumed, are requested to learn their snapshot ID.
+         */
         private void saveDetailedPlaylistInfo() {
-            final var playlists = repo.findAllPlaylists();
+            final var playlists = repo.getFollowedPlaylists(user).stream()
+                    .filter(playlist -> playlist.getIsSimplified() || !isListedUnchanged(playlist)).toList();
             if (playlists.isEmpty()) return;
             if (playlists.stream().anyMatch(SpotifyPlaylist::getIsSimplified)) {
                 App.verbosePrintln(4, playlists.stream().filter(SpotifyPlaylist::getIsSimplified).count() +
                         " new playlist(s)");
             }
-            for (var playlist : playlists) {
-                Optional<Playlist> apiPlaylist = api.getPlaylistWithoutTracks(playlist.getSpotifyID());
-                if (apiPlaylist.isEmpty())
-                    App.println(6, "Couldn't request detailed information for playlist " +
-                            playlist.getName());
-                else if (playlist.getIsSimplified()) {
-                    savePlaylistTracks(playlist, apiPlaylist.get());
-                } else if (!apiPlaylist.get().getSnapshotId().equals(playlist.getSnapshotId())) {
-                    switch (App.playlistSaveRestriction.getValue()) {
-                        case ALL -> savePlaylistTracks(playlist, apiPlaylist.get());
-                        case ALL_BUT_SPOTIFY -> {
-                            if (!apiPlaylist.get().getOwner().getId().equals(spotifyUserId))
-                                savePlaylistTracks(playlist, apiPlaylist.get());
-                        }
-                        case ONLY_USER -> {
-                            if (apiPlaylist.get().getOwner().getId().equals(user.getSpotifyUserID()))
-                                savePlaylistTracks(playlist, apiPlaylist.get());
-                        }
+            App.verbosePrintln(4, "Requesting " + playlists.size() + " new or changed playlist(s)");
+            fetchConcurrently(playlists, this::fetchPlaylist, this::savePlaylist);
+        }
+
+        /** @return true if playlist was listed during this backup with the snapshot ID that is stored. */
+        private boolean isListedUnchanged(SpotifyPlaylist playlist) {
+            final var listed = listedPlaylists.get(playlist.getSpotifyID().getId());
+            return listed != null && listed.getSnapshotId() != null &&
+                    listed.getSnapshotId().equals(playlist.getSnapshotId());
+        }
+
+        /**
+         * Apply fetch to every input concurrently on virtual threads in a sliding window as wide as the API
+         * concurrency, store receives the results in input order on the calling thread.
+         */
+        private <T, R> void fetchConcurrently(List<T> inputs, Function<T, R> fetch, Consumer<R> store) {
+            final var executor = Executors.newVirtualThreadPerTaskExecutor();
+            try {
+                final Deque<Future<R>> window = new ArrayDeque<>();
+                int next = 0;
+                while (next < inputs.size() || !window.isEmpty()) {
+                    while (next < inputs.size() && window.size() < App.apiConcurrency.getValue()) {
+                        final var input = inputs.get(next++);
+                        window.add(executor.submit(() -> fetch.apply(input)));
                     }
+                    store.accept(window.removeFirst().get());
                 }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException r) throw r;
+                throw new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } finally {
+                // interrupts fetches still in flight when one failed, no-op when every input was fetched
+                executor.shutdownNow();
             }
         }
 
-        private void savePlaylistTracks(SpotifyPlaylist playlist, Playlist apiPlaylist) {
-            List<PlaylistTrack> apiTracks = new ArrayList<>();
-            getFromApiPaged(6, "Requesting tracks for " + playlist.getName(),
-                    (l, o) -> api.getPlaylistTracks(l, o, playlist.getSpotifyID()))
-                    .forEach(a -> apiTracks.addAll(Arrays.asList(a)));
+        /**
+         * Details and items of a playlist as requested from the API.
+         * @param apiPlaylist Empty if the details couldn't be requested.
+         * @param items       All items of the playlist, null if they don't have to be stored.
+         */
+        private record FetchedPlaylist(SpotifyPlaylist playlist, Optional<Playlist> apiPlaylist,
+                                       List<PlaylistTrack> items) {}
+
+        private FetchedPlaylist fetchPlaylist(SpotifyPlaylist playlist) {
+            final var apiPlaylist = api.getPlaylistWithoutTracks(playlist.getSpotifyID());
+            if (apiPlaylist.isEmpty() || !(playlist.getIsSimplified() || isSavedChange(playlist, apiPlaylist.get())))
+                return new FetchedPlaylist(playlist, apiPlaylist, null);
+            // all items are needed before the stored ones can be synced, a partial list must never be persisted
+            final List<PlaylistTrack> items = new ArrayList<>();
+            OffsetPageFetcher.fetch((l, o) -> api.getPlaylistTracks(l, o, playlist.getSpotifyID()), PAGE_LIMIT, 0,
+                    App.apiConcurrency.getValue(), i -> false, page -> items.addAll(Arrays.asList(page.value())));
+            return new FetchedPlaylist(playlist, apiPlaylist, items);
+        }
+
+        /** @return true if apiPlaylist changed since playlist was stored and the save restriction includes it. */
+        private boolean isSavedChange(SpotifyPlaylist playlist, Playlist apiPlaylist) {
+            if (apiPlaylist.getSnapshotId().equals(playlist.getSnapshotId())) return false;
+            return switch (App.playlistSaveRestriction.getValue()) {
+                case ALL -> true;
+                case ALL_BUT_SPOTIFY -> !apiPlaylist.getOwner().getId().equals(spotifyUserId);
+                case ONLY_USER -> apiPlaylist.getOwner().getId().equals(user.getSpotifyUserID());
+            };
+        }
+
+        private void savePlaylist(FetchedPlaylist fetched) {
+            final var playlist = fetched.playlist();
+            if (fetched.apiPlaylist().isEmpty())
+                App.println(6, "Couldn't request detailed information for playlist " + playlist.getName());
+            else if (fetched.items() != null) savePlaylistTracks(playlist, fetched.apiPlaylist().get(), fetched.items());
+        }
+
+        private void savePlaylistTracks(SpotifyPlaylist playlist, Playlist apiPlaylist, List<PlaylistTrack> apiTracks) {
             if (apiTracks.size() == apiPlaylist.getTracks().getTotal()) {
-                App.verbosePrintln(8, "Saving " + apiTracks.size() + " track(s) for " +
-                        playlist.getName());
-                repo.deletePlaylistItems(playlist);
-                repo.persist(apiTracks, playlist);
+                final var changes = repo.syncPlaylistItems(apiTracks, playlist);
+                App.verbosePrintln(6, "Saved " + apiTracks.size() + " track(s) for " + playlist.getName() + ": " +
+                        changes.inserted() + " added, " + changes.removed() + " removed, " + changes.moved() + " moved");
                 if (playlist.getIsSimplified()) repo.persist(apiPlaylist);
                 else repo.update(apiPlaylist);
             } else {
@@ -314,37 +630,97 @@ public class CLI {
             }
         }
 
-        private void saveDetailedAlbumInfo() {
-            final var simpleAlbumIds = repo.getSimplifiedAlbumsSpotifyIDs();
-            if (simpleAlbumIds.isEmpty()) return;
-            App.verbosePrint(4, "Requesting data for " + simpleAlbumIds.size() + " album(s)");
-            for (var ids : combineIds(simpleAlbumIds, 20)) {
-                App.verbosePrint(".");
-                repo.persistWithoutTracks(api.getSeveralAlbums(ids), App.imageSaveRestriction.getValue());
+        /**
+         * Request the detailed version of every simplified album, artist and track. Batches of all kinds are requested
+         * concurrently and persisted on this thread, in a transaction per HYDRATION_FLUSH_SIZE objects of a kind.
+         * Detailed objects can reference simplified objects that weren't stored before, those are requested in the
+         * next round.
+         */
+        private void hydrateSimplifiedObjects() {
+            final var images = App.imageSaveRestriction.getValue();
+            final List<Hydration<?>> hydrations = List.of(
+                    new Hydration<>("album", 20, repo::getSimplifiedAlbumsSpotifyIDs, api::getSeveralAlbums,
+                            albums -> repo.persistWithoutTracks(albums.toArray(Album[]::new), images)),
+                    new Hydration<>("artist", 50, repo::getSimplifiedArtistsSpotifyIDs, api::getSeveralArtists,
+                            artists -> repo.persist(artists.toArray(Artist[]::new), images)),
+                    new Hydration<>("track", 50, repo::getSimplifiedTracksSpotifyIDs, api::getSeveralTracks,
+                            tracks -> repo.persist(tracks.toArray(Track[]::new))));
+            while (true) {
+                final var batches = hydrations.stream().flatMap(hydration -> hydration.nextBatches().stream()).toList();
+                if (batches.isEmpty()) return;
+                App.verbosePrint(4, "Requesting data for " + hydrations.stream()
+                        .filter(hydration -> hydration.roundSize > 0)
+                        .map(hydration -> hydration.roundSize + " " + hydration.name + "(s)")
+                        .collect(Collectors.joining(", ")));
+                fetchConcurrently(batches, Supplier::get, buffer -> {
+                    App.verbosePrint(".");
+                    buffer.run();
+                });
+                hydrations.forEach(Hydration::flush);
+                App.verbosePrintln("");
+                hydrations.forEach(Hydration::reportSkipped);
             }
-            App.verbosePrintln("");
         }
 
-        private void saveDetailedArtistInfo() {
-            final var simpleArtistIds = repo.getSimplifiedArtistsSpotifyIDs();
-            if (simpleArtistIds.isEmpty()) return;
-            App.verbosePrint(4, "Requesting data for " + simpleArtistIds.size() + " artist(s)");
-            for (var ids : combineIds(simpleArtistIds, 50)) {
-                App.verbosePrint(".");
-                repo.persist(api.getSeveralArtists(ids), App.imageSaveRestriction.getValue());
+        /**
+         * Simplified objects of one kind, hydrated by requesting their detailed version in batches of IDs. Every ID is
+         * requested at most once per backup, so objects the API doesn't return can't be requested endlessly.
+         */
+        private class Hydration<A> {
+            final String name;
+            final int batchSize;
+            final Supplier<List<String>> getSimplifiedIds;
+            final Function<String, A[]> request;
+            final Consumer<List<A>> persist;
+            final Set<String> requestedIds = new HashSet<>();
+            final List<A> buffered = new ArrayList<>();
+            /** IDs requested this round that the API returned null for, they are unknown or removed. */
+            final List<String> skippedIds = new ArrayList<>();
+            int roundSize = 0;
+
+            Hydration(String name, int batchSize, Supplier<List<String>> getSimplifiedIds, Function<String, A[]> request,
+                      Consumer<List<A>> persist) {
+                this.name = name;
+                this.batchSize = batchSize;
+                this.getSimplifiedIds = getSimplifiedIds;
+                this.request = request;
+                this.persist = persist;
             }
-            App.verbosePrintln("");
-        }
 
-        private void saveDetailedTrackInfo() {
-            final var simpleTrackIds = repo.getSimplifiedTracksSpotifyIDs();
-            if (simpleTrackIds.isEmpty()) return;
-            App.verbosePrint(4, "Requesting data for " + simpleTrackIds.size() + " track(s)");
-            for (var ids : combineIds(simpleTrackIds, 50)) {
-                App.verbosePrint(".");
-                repo.persist(api.getSeveralTracks(ids));
+            /**
+             * @return a request for every batch of stored simplified IDs that weren't requested yet, each request
+             * returns the action that buffers its objects for persisting.
+             */
+            List<Supplier<Runnable>> nextBatches() {
+                final var ids = getSimplifiedIds.get().stream().filter(requestedIds::add).toList();
+                roundSize = ids.size();
+                return combineIds(ids, batchSize).stream().<Supplier<Runnable>>map(batch -> () -> {
+                    final var objects = request.apply(batch);
+                    return () -> buffer(batch.split(","), objects);
+                }).toList();
+            }
+
+            /** @param ids IDs objects were requested with, the API returns the objects in the same order. */
+            private void buffer(String[] ids, A[] objects) {
+                for (int i = 0; i < objects.length; i++) {
+                    if (objects[i] != null) buffered.add(objects[i]);
+                    else skippedIds.add(i < ids.length ? ids[i] : "?");
+                }
+                if (buffered.size() >= HYDRATION_FLUSH_SIZE) flush();
+            }
+
+            void reportSkipped() {
+                if (skippedIds.isEmpty()) return;
+                App.verbosePrintln(4, "Skipped " + skippedIds.size() + " " + name + "(s) unknown to Spotify: " +
+                        String.join(", ", skippedIds));
+                skippedIds.clear();
+            }
+
+            void flush() {
+                if (buffered.isEmpty()) return;
+                persist.accept(buffered);
+                buffered.clear();
             }
-            App.verbosePrintln("");
         }
     }
 }
@@ -4,7 +4,6 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.annotations.Expose;
 import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NonNull;
 import spotifybackup.app.exception.BlankConfigFieldException;
@@ -16,11 +15,17 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Consumer;
 
 @Getter
 public class Config {
@@ -38,7 +43,16 @@ public class Config {
     @Expose
     private String clientSecret;
     @Expose
+    private URI apiBaseURI;
+    @Expose
+    @Getter(AccessLevel.NONE)
+    private String daemonToken;
+    @Expose
     private List<UserInfo> users;
+    @Getter(AccessLevel.NONE)
+    private int updateDepth;
+    @Getter(AccessLevel.NONE)
+    private boolean updatePending;
 
     private Config() {}
 
@@ -77,7 +91,7 @@ public class Config {
             var config = gson.fromJson(reader, Config.class);
             config.path = file;
             checkAllFields(file, config);
-            config.users.forEach(u -> u.serialize = v -> config.serialize());
+            config.users.forEach(u -> u.config = config);
             return config;
         }
     }
@@ -89,6 +103,8 @@ public class Config {
             throw new BlankConfigFieldException("redirectURI field blank or missing in: " + file);
         if (config.clientSecret != null && config.clientSecret.isBlank())
             throw new BlankConfigFieldException("clientSecret field blank (can be omitted): " + file);
+        if (config.apiBaseURI != null && config.apiBaseURI.toString().isBlank())
+            throw new BlankConfigFieldException("apiBaseURI field blank (can be omitted): " + file);
         if (config.users == null)
             throw new BlankConfigFieldException("users array field missing in: " + file);
         else config.users.forEach(user -> {
@@ -120,7 +136,7 @@ public class Config {
     }
 
     public UserInfo addEmptyUser() {
-        final UserInfo newUser = new UserInfo(v -> this.serialize());
+        final UserInfo newUser = new UserInfo(this);
         users.add(newUser);
         return newUser;
     }
@@ -148,10 +164,70 @@ public class Config {
         serialize();
     }
 
-    private void serialize() {
-        try (var writer = new FileWriter(path)) {
-            writer.write(gson.toJson(this));
-            writer.write('\n');
+    /**
+     * @return URI that requests to the Spotify API and accounts service are sent to instead of the Spotify hosts, only
+     * set to run against a stand-in server for testing.
+     */
+    public Optional<URI> getApiBaseURI() {
+        return Optional.ofNullable(apiBaseURI);
+    }
+
+    public void setApiBaseURI(@NonNull URI apiBaseURI) {
+        this.apiBaseURI = apiBaseURI;
+        serialize();
+    }
+
+    /**
+     * @return secret a daemon command has to be sent with to be accepted, generated and stored the first time it is
+     * needed. Anyone who can read the config file can control the daemon.
+     */
+    public synchronized String getOrCreateDaemonToken() {
+        if (isNullOrBlank(daemonToken)) {
+            final var bytes = new byte[32];
+            new SecureRandom().nextBytes(bytes);
+            daemonToken = HexFormat.of().formatHex(bytes);
+            serialize();
+        }
+        return daemonToken;
+    }
+
+    /**
+     * Apply changes made by multiple setters with a single write of the config file, other threads can't change the
+     * config until changes are done.
+     */
+    public synchronized void update(@NonNull Runnable changes) {
+        updateDepth++;
+        try {
+            changes.run();
+        } finally {
+            updateDepth--;
+        }
+        if (updateDepth == 0 && updatePending) serialize();
+    }
+
+    /**
+     * Write the config to a temporary file next to it and move that over the config file, so that the config file is
+     * never left half written.
+     */
+    private synchronized void serialize() {
+        if (updateDepth > 0) {
+            updatePending = true;
+            return;
+        }
+        updatePending = false;
+        final var target = path.toPath().toAbsolutePath();
+        try {
+            final var temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try {
+                Files.writeString(temporary, gson.toJson(this) + '\n', StandardCharsets.UTF_8);
+                try {
+                    Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
         } catch (IOException e) {
             throw new ConfigFileException("Couldn't write to config file at " + path.getAbsolutePath() + " " + e);
         }
@@ -161,18 +237,34 @@ public class Config {
         return gson.toJson(this);
     }
 
-    @AllArgsConstructor
     public static class UserInfo {
-        private Consumer<Void> serialize;
+        private Config config;
         @Expose
         private String spotifyId;
         @Expose
         private String displayName;
         @Expose
         private String refreshToken;
+        @Expose
+        private String accessToken;
+        /** Epoch second after which accessToken is no longer accepted by Spotify. */
+        @Expose
+        private Long accessTokenExpiresAt;
+
+        UserInfo(Config config) {
+            this.config = config;
+        }
+
+        public UserInfo(Config config, String spotifyId, String displayName, String refreshToken) {
+            this.config = config;
+            this.spotifyId = spotifyId;
+            this.displayName = displayName;
+            this.refreshToken = refreshToken;
+        }
 
-        UserInfo(Consumer<Void> serialize) {
-            this.serialize = serialize;
+        /** @see Config#update(Runnable) */
+        public void update(@NonNull Runnable changes) {
+            config.update(changes);
         }
 
         public Optional<String> getDisplayName() {
@@ -181,7 +273,7 @@ public class Config {
 
         public void setDisplayName(@NonNull String displayName) {
             this.displayName = displayName;
-            serialize.accept(null);
+            config.serialize();
         }
 
         public Optional<String> getSpotifyId() {
@@ -190,7 +282,7 @@ public class Config {
 
         public void setSpotifyId(@NonNull String spotifyId) {
             this.spotifyId = spotifyId;
-            serialize.accept(null);
+            config.serialize();
         }
 
         public Optional<String> getRefreshToken() {
@@ -199,7 +291,22 @@ public class Config {
 
         public void setRefreshToken(@NonNull String refreshToken) {
             this.refreshToken = refreshToken;
-            serialize.accept(null);
+            config.serialize();
+        }
+
+        /** @return access token cached by an earlier run, with the instant it expires. */
+        public Optional<String> getAccessToken() {
+            return Optional.ofNullable(accessToken);
+        }
+
+        public Optional<Instant> getAccessTokenExpiresAt() {
+            return Optional.ofNullable(accessTokenExpiresAt).map(Instant::ofEpochSecond);
+        }
+
+        public void setAccessToken(@NonNull String accessToken, @NonNull Instant expiresAt) {
+            this.accessToken = accessToken;
+            this.accessTokenExpiresAt = expiresAt.getEpochSecond();
+            config.serialize();
         }
 
         @Override
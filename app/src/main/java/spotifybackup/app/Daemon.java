@@ -0,0 +1,173 @@
+package spotifybackup.app;
+
+import lombok.NonNull;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.*;
+
+/**
+ * Keeps the application running between backups so the database and API connections stay warm. Backups are performed
+ * on a fixed schedule and on request of clients connecting to a socket on the loopback address, one command per
+ * connection. Every backup is run on the same thread, so scheduled and requested backups never overlap.
+ * <p>
+ * Any local user can connect to the loopback address, so a command is only accepted when it is preceded by the token
+ * the daemon was started with.
+ */
+class Daemon {
+    private final Runnable backup;
+    private final Duration interval;
+    private final ServerSocket server;
+    private final byte[] token;
+    private final ScheduledExecutorService backups = Executors.newSingleThreadScheduledExecutor();
+    private volatile ScheduledFuture<?> nextBackup;
+    private volatile String lastBackup = "no backup performed yet";
+
+    /**
+     * @param backup   Performs a backup of every account, exceptions it throws are reported but don't stop the daemon.
+     * @param interval Time between the end of a backup and the start of the next scheduled one.
+     * @param port     Port on the loopback address to accept commands on, 0 picks a free port.
+     * @param token    Secret clients have to send along with every command.
+     * @throws IOException when the port can't be bound, usually because another daemon is already running.
+     */
+    Daemon(@NonNull Runnable backup, @NonNull Duration interval, final int port, @NonNull String token)
+            throws IOException {
+        if (token.isBlank()) throw new IllegalArgumentException("Daemon token should not be blank.");
+        this.backup = backup;
+        this.interval = interval;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Send command to the daemon listening on port.
+     * @param token Token the daemon was started with.
+     * @return reply of the daemon.
+     * @throws IOException when no daemon is listening on port.
+     */
+    static String send(@NonNull Command command, final int port, @NonNull String token) throws IOException {
+        try (var socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             var out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+             var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            out.println(token + " " + command.name());
+            final var reply = new StringBuilder();
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (!reply.isEmpty()) reply.append('\n');
+                reply.append(line);
+            }
+            return reply.toString();
+        }
+    }
+
+    int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Start the backup schedule, with the first backup performed right away, and accept commands until a STOP command
+     * is received. Returns after the backup in progress, if any, has finished.
+     */
+    void run() throws InterruptedException {
+        App.println("Daemon accepting commands on port " + getPort() + ", backing up every " +
+                interval.toMinutes() + " minute(s)");
+        nextBackup = backups.scheduleWithFixedDelay(this::performBackup, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        try (var connections = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (!server.isClosed()) {
+                try {
+                    final var socket = server.accept();
+                    connections.execute(() -> handle(socket));
+                } catch (SocketException e) {
+                    // server socket closed by STOP command
+                } catch (IOException e) {
+                    App.println("Failed to accept daemon connection: " + e.getMessage());
+                }
+            }
+        } finally {
+            backups.shutdown();
+            backups.awaitTermination(1, TimeUnit.HOURS);
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket;
+             var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             var out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            final var line = in.readLine();
+            final var parts = line == null ? new String[0] : line.strip().split(" ", 2);
+            // compared in constant time, the time taken to reject a token tells nothing about the correct one
+            if (parts.length != 2 || !MessageDigest.isEqual(token, parts[0].getBytes(StandardCharsets.UTF_8))) {
+                out.println("Rejected command, token doesn't match the token of the daemon");
+                return;
+            }
+            Command command;
+            try {
+                command = Command.valueOf(parts[1].strip().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                out.println("Unknown command: " + parts[1]);
+                return;
+            }
+            out.println(perform(command));
+        } catch (IOException e) {
+            App.verbosePrintln("Failed to handle daemon connection: " + e.getMessage());
+        }
+    }
+
+    private String perform(Command command) {
+        return switch (command) {
+            case BACKUP -> {
+                try {
+                    backups.submit(this::performBackup).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException | RejectedExecutionException e) {
+                    yield "Backup not performed: " + e.getMessage();
+                }
+                yield lastBackup;
+            }
+            case STATUS -> {
+                final var next = nextBackup;
+                yield lastBackup + (next == null ? "" : "\nnext backup in " +
+                        Math.max(0, next.getDelay(TimeUnit.MINUTES)) + " minute(s)");
+            }
+            case STOP -> {
+                try {
+                    server.close();
+                } catch (IOException e) {
+                    yield "Failed to stop: " + e.getMessage();
+                }
+                yield "Stopping after backup in progress, if any";
+            }
+        };
+    }
+
+    /** Exceptions are caught, a scheduled task that throws is never run again. */
+    private void performBackup() {
+        final var start = ZonedDateTime.now();
+        try {
+            backup.run();
+            lastBackup = "last backup succeeded at " + start.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        } catch (RuntimeException e) {
+            lastBackup = "last backup failed at " + start.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME) + ": " +
+                    e.getMessage();
+            App.println("Backup failed: " + e.getMessage());
+            if (App.verboseArg.isPresent()) e.printStackTrace(App.term.writer());
+        }
+    }
+
+    enum Command {
+        /** Perform a backup now and reply once it is done. */
+        BACKUP,
+        /** Reply with the result of the last backup and the time until the next scheduled one. */
+        STATUS,
+        /** Stop accepting commands and exit after the backup in progress. */
+        STOP
+    }
+}
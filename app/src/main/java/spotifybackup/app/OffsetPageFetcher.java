@@ -0,0 +1,75 @@
+package spotifybackup.app;
+
+import lombok.NonNull;
+import se.michaelthelin.spotify.model_objects.specification.Paging;
+import spotifybackup.api_wrapper.ApiWrapper.Response;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Requests the pages of an offset paged endpoint. Once the total is known from the first page the next offsets are
+ * requested concurrently on virtual threads in a sliding window, the pages are still handed over in offset order.
+ */
+class OffsetPageFetcher {
+    private OffsetPageFetcher() {}
+
+    /**
+     * @param getPage     Requests the page at an offset, is called with the limit and the offset.
+     * @param limit       Amount of items requested per page.
+     * @param startOffset Offset of the first page to request.
+     * @param concurrency Maximum amount of pages requested at the same time.
+     * @param isLastPage  Requesting stops once it returns true for a page, pages already in flight are discarded.
+     * @param sink        Receives the items of every page in offset order, unchanged if the page was.
+     * @throws RuntimeException when requesting a page fails, requests still in flight are interrupted first.
+     */
+    static <A> void fetch(@NonNull BiFunction<Integer, Integer, Response<Paging<A>>> getPage, final int limit,
+                          final int startOffset, final int concurrency, @NonNull Predicate<A[]> isLastPage,
+                          @NonNull Consumer<Response<A[]>> sink) {
+        if (limit < 1 || concurrency < 1)
+            throw new IllegalArgumentException("Limit and concurrency should be at least 1.");
+        Response<Paging<A>> apiPage = getPage.apply(limit, startOffset);
+        sink.accept(apiPage.map(Paging::getItems));
+        if (isLastPage.test(apiPage.value().getItems())) return;
+        int offset = startOffset + limit;
+        if (apiPage.value().getNext() != null && apiPage.value().getTotal() > offset) {
+            final int total = apiPage.value().getTotal();
+            final var executor = Executors.newVirtualThreadPerTaskExecutor();
+            try {
+                final Deque<Future<Response<Paging<A>>>> window = new ArrayDeque<>();
+                while (offset < total || !window.isEmpty()) {
+                    while (offset < total && window.size() < concurrency) {
+                        final int pageOffset = offset;
+                        window.add(executor.submit(() -> getPage.apply(limit, pageOffset)));
+                        offset += limit;
+                    }
+                    apiPage = window.removeFirst().get();
+                    sink.accept(apiPage.map(Paging::getItems));
+                    if (isLastPage.test(apiPage.value().getItems())) return;
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException r) throw r;
+                throw new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } finally {
+                // interrupts requests still in flight when a page failed, no-op when every page was fetched
+                executor.shutdownNow();
+            }
+        }
+        // library may have grown while requesting, continue sequentially until the API reports no next page
+        while (apiPage.value().getNext() != null) {
+            apiPage = getPage.apply(limit, offset);
+            sink.accept(apiPage.map(Paging::getItems));
+            if (isLastPage.test(apiPage.value().getItems())) return;
+            offset += limit;
+        }
+    }
+}
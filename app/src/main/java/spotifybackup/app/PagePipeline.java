@@ -0,0 +1,94 @@
+package spotifybackup.app;
+
+import lombok.NonNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Producer/consumer pipeline that hands pages of API objects from a fetching thread to the calling thread through a
+ * bounded queue. Persisting a page overlaps with fetching the next ones while at most capacity pages are held in
+ * memory, however many pages are fetched in total.
+ * @param <P> Type of a page.
+ */
+class PagePipeline<P> {
+    static final int DEFAULT_CAPACITY = 4;
+    private final BlockingQueue<Slot<P>> queue;
+    private volatile boolean closed = false;
+
+    private PagePipeline(final int capacity) {
+        queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Run producer on a separate thread and consume every page it produces on the calling thread, in order.
+     * @param capacity Maximum amount of pages waiting to be consumed before the producer blocks.
+     * @param producer Fetches pages and hands each one to the supplied sink, the sink blocks while the queue is full.
+     *                 Pages can't be null.
+     * @param consumer Processes a single page.
+     * @return amount of pages consumed.
+     * @throws RuntimeException when either the producer or the consumer fails, the other side is stopped first. An
+     *                          Error thrown by the producer is rethrown as is.
+     */
+    static <P> long run(final int capacity, @NonNull Consumer<Consumer<P>> producer,
+                        @NonNull Consumer<P> consumer) {
+        if (capacity < 1) throw new IllegalArgumentException("Pipeline capacity should be at least 1.");
+        return new PagePipeline<P>(capacity).run(producer, consumer);
+    }
+
+    private long run(Consumer<Consumer<P>> producer, Consumer<P> consumer) {
+        final var producerThread = Thread.ofVirtual().start(() -> {
+            Slot<P> last;
+            try {
+                producer.accept(this::put);
+                last = new Slot<>(null, null);
+            } catch (PipelineClosedException e) {
+                return;
+            } catch (Throwable e) {
+                // errors are handed over as well, the consumer would otherwise wait for a slot forever
+                last = new Slot<>(null, e);
+            }
+            try {
+                if (!closed) queue.put(last);
+            } catch (InterruptedException ignored) {
+                // consumer has stopped, nobody is waiting for the last slot
+            }
+        });
+        long consumed = 0;
+        try {
+            while (true) {
+                final var slot = queue.take();
+                if (slot.failure instanceof RuntimeException e) throw e;
+                else if (slot.failure instanceof Error e) throw e;
+                else if (slot.failure != null) throw new RuntimeException(slot.failure);
+                if (slot.page == null) return consumed;
+                consumer.accept(slot.page);
+                consumed++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            // only has an effect when consumption stopped early, unblocks a producer waiting on a full queue
+            closed = true;
+            queue.clear();
+            producerThread.interrupt();
+        }
+    }
+
+    private void put(@NonNull P page) {
+        if (closed) throw new PipelineClosedException();
+        try {
+            queue.put(new Slot<>(page, null));
+        } catch (InterruptedException e) {
+            throw new PipelineClosedException();
+        }
+    }
+
+    /** Either a page, a producer failure or, when both are null, the end of the pipeline. */
+    private record Slot<P>(P page, Throwable failure) {}
+
+    /** Thrown inside the producer when the consumer has stopped and no more pages will be taken. */
+    private static class PipelineClosedException extends RuntimeException {}
+}
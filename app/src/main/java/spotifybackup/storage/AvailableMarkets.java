@@ -1,42 +1,128 @@
 package spotifybackup.storage;
 
 import com.neovisionaries.i18n.CountryCode;
-import lombok.Getter;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Objects;
+import java.util.EnumSet;
 import java.util.Set;
 
-@Getter
+/**
+ * Set of markets as a bitset over the ordinals of CountryCode, a market is present if the bit at its ordinal is set.
+ * Stored as bytes in which ordinal i is bit i % 8 of byte i / 8, which is the layout of the words read little-endian,
+ * so converting from and to the stored bytes copies words instead of testing every CountryCode.
+ */
 public class AvailableMarkets {
-    final HashSet<CountryCode> codes = new HashSet<>();
+    private static final CountryCode[] COUNTRY_CODES = CountryCode.values();
+    /** Length of the stored bytes. */
+    static final int BYTE_LENGTH = (COUNTRY_CODES.length / 8) + 1;
+    private static final int WORD_COUNT = (COUNTRY_CODES.length + Long.SIZE - 1) / Long.SIZE;
+    private static final VarHandle LONG_LE =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private final long[] words = new long[WORD_COUNT];
 
     public AvailableMarkets() {}
 
     public AvailableMarkets(Set<CountryCode> codes) {
-        if (codes != null) this.codes.addAll(Set.copyOf(codes));
+        if (codes != null) for (var code : codes) set(code);
     }
 
     public AvailableMarkets(CountryCode[] codes) {
-        if (codes != null) this.codes.addAll(Set.copyOf(Arrays.stream(codes).toList()));
+        addCodes(codes);
+    }
+
+    private AvailableMarkets(AvailableMarkets other) {
+        System.arraycopy(other.words, 0, words, 0, WORD_COUNT);
+    }
+
+    /**
+     * @param bytes Stored bytes, may be shorter than BYTE_LENGTH, bits of ordinals without a CountryCode are ignored.
+     */
+    static AvailableMarkets fromBytes(byte[] bytes) {
+        final var markets = new AvailableMarkets();
+        final int fullWords = Math.min(bytes.length / Long.BYTES, WORD_COUNT);
+        for (int w = 0; w < fullWords; w++) markets.words[w] = (long) LONG_LE.get(bytes, w * Long.BYTES);
+        for (int b = fullWords * Long.BYTES; b < Math.min(bytes.length, WORD_COUNT * Long.BYTES); b++) {
+            markets.words[b / Long.BYTES] |= (bytes[b] & 0xFFL) << ((b % Long.BYTES) * 8);
+        }
+        markets.words[WORD_COUNT - 1] &= -1L >>> (WORD_COUNT * Long.SIZE - COUNTRY_CODES.length);
+        return markets;
+    }
+
+    /** @return the stored bytes, BYTE_LENGTH long. */
+    byte[] toBytes() {
+        final var bytes = new byte[BYTE_LENGTH];
+        final int fullWords = Math.min(BYTE_LENGTH / Long.BYTES, WORD_COUNT);
+        for (int w = 0; w < fullWords; w++) LONG_LE.set(bytes, w * Long.BYTES, words[w]);
+        for (int b = fullWords * Long.BYTES; b < Math.min(BYTE_LENGTH, WORD_COUNT * Long.BYTES); b++) {
+            bytes[b] = (byte) (words[b / Long.BYTES] >>> ((b % Long.BYTES) * 8));
+        }
+        return bytes;
+    }
+
+    private void set(CountryCode code) {
+        words[code.ordinal() / Long.SIZE] |= 1L << code.ordinal();
+    }
+
+    public boolean contains(CountryCode code) {
+        return (words[code.ordinal() / Long.SIZE] & (1L << code.ordinal())) != 0;
+    }
+
+    public boolean isEmpty() {
+        for (var word : words) if (word != 0) return false;
+        return true;
+    }
+
+    public int size() {
+        int size = 0;
+        for (var word : words) size += Long.bitCount(word);
+        return size;
+    }
+
+    /** @return new set of every market in this or other. */
+    public AvailableMarkets union(AvailableMarkets other) {
+        final var union = new AvailableMarkets(this);
+        for (int w = 0; w < WORD_COUNT; w++) union.words[w] |= other.words[w];
+        return union;
+    }
+
+    /** @return new set of every market in both this and other. */
+    public AvailableMarkets intersect(AvailableMarkets other) {
+        final var intersection = new AvailableMarkets(this);
+        for (int w = 0; w < WORD_COUNT; w++) intersection.words[w] &= other.words[w];
+        return intersection;
+    }
+
+    /** @return new Set of the markets, contains(), size() and isEmpty() answer without building one. */
+    public Set<CountryCode> getCodes() {
+        final var codes = EnumSet.noneOf(CountryCode.class);
+        for (int w = 0; w < WORD_COUNT; w++) {
+            for (long word = words[w]; word != 0; word &= word - 1) {
+                codes.add(COUNTRY_CODES[w * Long.SIZE + Long.numberOfTrailingZeros(word)]);
+            }
+        }
+        return codes;
+    }
+
+    AvailableMarkets copy() {
+        return new AvailableMarkets(this);
     }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
-        AvailableMarkets that = (AvailableMarkets) o;
-        if (Objects.equals(codes, that.codes)) return true;
-        return codes.size() == that.codes.size() && codes.containsAll(that.codes);
+        return Arrays.equals(words, ((AvailableMarkets) o).words);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(codes);
+        return Arrays.hashCode(words);
     }
 
     void addCodes(CountryCode[] extraMarkets) {
-        if (extraMarkets != null) this.codes.addAll(Set.copyOf(Arrays.stream(extraMarkets).toList()));
+        if (extraMarkets != null) for (var code : extraMarkets) set(code);
     }
 }
@@ -19,13 +19,16 @@ public class AvailableMarketsBitset {
     @Column(unique = true, nullable = false, length = 2)
     private String alpha2;
 
+    @Setter(AccessLevel.PACKAGE)
     @Column(unique = false, nullable = true, length = 3)
     private String alpha3;
 
+    @Setter(AccessLevel.PACKAGE)
     @Column(unique = false, nullable = true)
     private Integer numeric;
 
     @NonNull
+    @Setter(AccessLevel.PACKAGE)
     @Column(nullable = false)
     private String country;
 
@@ -0,0 +1,89 @@
+package spotifybackup.storage;
+
+import com.neovisionaries.i18n.CountryCode;
+import jakarta.persistence.EntityManager;
+import org.hibernate.query.criteria.CriteriaDefinition;
+import spotifybackup.storage.exception.ConstructorUsageException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static spotifybackup.storage.SpotifyObject.ensureTransactionActive;
+
+/**
+ * Keeps the AvailableMarketsBitset table, one row per CountryCode keyed by its ordinal, in line with the CountryCode
+ * enum. The rows are only verified when the fingerprint of the enum differs from the one stored with the rows, so
+ * opening an up-to-date database costs a single read.
+ */
+class AvailableMarketsBitsetRepository {
+    static final String FINGERPRINT_NAME = "available_markets_bitset_fingerprint";
+    /** Should be incremented when the way rows are derived from a CountryCode changes. */
+    private static final int VERSION = 1;
+
+    /** @apiNote Should not be used, exists to prevent implicit public constructor. */
+    private AvailableMarketsBitsetRepository() {
+        throw new ConstructorUsageException();
+    }
+
+    /** @return hash of every field of every CountryCode that a row is derived from. */
+    static String fingerprint() {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(("v" + VERSION + "\n").getBytes(StandardCharsets.UTF_8));
+            for (var code : CountryCode.values()) {
+                if (code.equals(CountryCode.UNDEFINED)) continue;
+                digest.update((code.ordinal() + "|" + code.getAlpha2() + "|" + code.getAlpha3() + "|" +
+                        code.getNumeric() + "|" + code.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Insert missing rows and update the descriptive columns of existing rows if the stored fingerprint is outdated.
+     * @throws RuntimeException when a stored row belongs to a different country than the CountryCode with its ordinal,
+     *                          available markets stored by ordinal would then decode to the wrong countries.
+     */
+    static void ensureUpToDate(EntityManager em) {
+        ensureTransactionActive.accept(em);
+        final var fingerprint = fingerprint();
+        final var stored = em.find(DatabaseMetadata.class, FINGERPRINT_NAME);
+        if (stored != null && stored.getValue().equals(fingerprint)) return;
+        var query = new CriteriaDefinition<>(em, AvailableMarketsBitset.class) {};
+        query.from(AvailableMarketsBitset.class);
+        final var rows = em.createQuery(query).getResultStream()
+                .collect(Collectors.toMap(AvailableMarketsBitset::getOrdinal, Function.identity()));
+        for (var code : CountryCode.values()) {
+            if (code.equals(CountryCode.UNDEFINED)) continue;
+            final var numeric = code.getNumeric() != -1 ? code.getNumeric() : null;
+            final var row = rows.remove((long) code.ordinal());
+            if (row == null) {
+                em.persist(AvailableMarketsBitset.builder()
+                        .bitset(new AvailableMarkets(new CountryCode[]{code}))
+                        .alpha2(code.getAlpha2())
+                        .alpha3(code.getAlpha3())
+                        .numeric(numeric)
+                        .country(code.getName())
+                        .ordinal(code.ordinal())
+                        .build());
+            } else if (!row.getAlpha2().equals(code.getAlpha2()) ||
+                    !row.getBitset().equals(new AvailableMarkets(new CountryCode[]{code}))) {
+                throw new RuntimeException("CountryCode does not match persisted AvailableMarketsBitset value, @id: " +
+                        code.ordinal());
+            } else {
+                row.setAlpha3(code.getAlpha3());
+                row.setNumeric(numeric);
+                row.setCountry(code.getName());
+            }
+        }
+        if (!rows.isEmpty()) throw new RuntimeException("Size mismatch between CountryCode and AvailableMarketsBitset.");
+        if (stored == null) em.persist(new DatabaseMetadata(FINGERPRINT_NAME, fingerprint));
+        else stored.setValue(fingerprint);
+    }
+}
@@ -0,0 +1,104 @@
+package spotifybackup.storage;
+
+import com.neovisionaries.i18n.CountryCode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import lombok.NonNull;
+import spotifybackup.storage.exception.ConstructorUsageException;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Native queries that evaluate market predicates with BITAND on the stored AvailableMarkets bytes, so the markets
+ * of a library are never decoded in Java. Masks are written with AvailableMarkets.toBytes(), the same layout as the
+ * column, which keeps the SQL independent of how H2 numbers bits.
+ */
+class AvailableMarketsRepository {
+    private static final byte[] NO_MARKETS = new byte[AvailableMarkets.BYTE_LENGTH];
+
+    /** @apiNote Should not be used, exists to prevent implicit public constructor. */
+    private AvailableMarketsRepository() {
+        throw new ConstructorUsageException();
+    }
+
+    /** Saved objects of a user joined with the table holding their available markets, aliased as s and o. */
+    private enum Library {
+        SAVED_TRACKS("spotify_saved_track", "spotify_track", "track_id"),
+        SAVED_ALBUMS("spotify_saved_album", "spotify_album", "album_id");
+
+        private static final String WHERE = " WHERE s.owner = :owner AND s.is_removed = FALSE";
+        private final String from;
+
+        Library(String savedTable, String objectTable, String joinColumn) {
+            from = " FROM " + savedTable + " s JOIN " + objectTable + " o ON o.id = s." + joinColumn;
+        }
+    }
+
+    /** H2 can't infer the type of a parameter inside BITAND, so the masks are cast explicitly. */
+    private static String predicate(MarketFilter filter) {
+        final var masked = "BITAND(o.available_markets, CAST(:mask AS VARBINARY))";
+        return switch (filter.match()) {
+            case ANY_OF -> " AND " + masked + " <> CAST(:none AS VARBINARY)";
+            case ALL_OF -> " AND " + masked + " = CAST(:mask AS VARBINARY)";
+            case NONE_OF -> " AND (o.available_markets IS NULL OR " + masked + " = CAST(:none AS VARBINARY))";
+        };
+    }
+
+    private static Query bind(Query query, SpotifyUser user, MarketFilter filter) {
+        query.setParameter("owner", user.getId());
+        query.setParameter("mask", filter.markets().toBytes());
+        if (filter.match() != MarketFilter.Match.ALL_OF) query.setParameter("none", NO_MARKETS);
+        return query;
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<SpotifySavedTrack> findSavedTracks(EntityManager em, @NonNull SpotifyUser user,
+                                                   @NonNull MarketFilter filter) {
+        final var sql = "SELECT s.*" + Library.SAVED_TRACKS.from + Library.WHERE + predicate(filter);
+        return bind(em.createNativeQuery(sql, SpotifySavedTrack.class), user, filter).getResultList();
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<SpotifySavedAlbum> findSavedAlbums(EntityManager em, @NonNull SpotifyUser user,
+                                                   @NonNull MarketFilter filter) {
+        final var sql = "SELECT s.*" + Library.SAVED_ALBUMS.from + Library.WHERE + predicate(filter);
+        return bind(em.createNativeQuery(sql, SpotifySavedAlbum.class), user, filter).getResultList();
+    }
+
+    static long countSavedTracks(EntityManager em, @NonNull SpotifyUser user, @NonNull MarketFilter filter) {
+        return count(em, Library.SAVED_TRACKS, user, filter);
+    }
+
+    static long countSavedAlbums(EntityManager em, @NonNull SpotifyUser user, @NonNull MarketFilter filter) {
+        return count(em, Library.SAVED_ALBUMS, user, filter);
+    }
+
+    private static long count(EntityManager em, Library library, SpotifyUser user, MarketFilter filter) {
+        final var sql = "SELECT COUNT(*)" + library.from + Library.WHERE + predicate(filter);
+        return ((Number) bind(em.createNativeQuery(sql), user, filter).getSingleResult()).longValue();
+    }
+
+    static Map<CountryCode, Long> countSavedTracksByMarket(EntityManager em, @NonNull SpotifyUser user) {
+        return countByMarket(em, Library.SAVED_TRACKS, user);
+    }
+
+    static Map<CountryCode, Long> countSavedAlbumsByMarket(EntityManager em, @NonNull SpotifyUser user) {
+        return countByMarket(em, Library.SAVED_ALBUMS, user);
+    }
+
+    /** Joins every saved object with each AvailableMarketsBitset row whose single market bit it has set. */
+    @SuppressWarnings("unchecked")
+    private static Map<CountryCode, Long> countByMarket(EntityManager em, Library library, SpotifyUser user) {
+        final var sql = "SELECT b.ordinal, COUNT(*)" + library.from +
+                " JOIN available_markets_bitset b ON BITAND(o.available_markets, b.bitset) = b.bitset" +
+                Library.WHERE + " GROUP BY b.ordinal";
+        final var codes = CountryCode.values();
+        final var counts = new EnumMap<CountryCode, Long>(CountryCode.class);
+        for (var row : (List<Object[]>) em.createNativeQuery(sql).setParameter("owner", user.getId()).getResultList()) {
+            counts.put(codes[((Number) row[0]).intValue()], ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+}
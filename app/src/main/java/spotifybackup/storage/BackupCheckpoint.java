@@ -0,0 +1,51 @@
+package spotifybackup.storage;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+
+/**
+ * Progress journal of the backup of a single account, records the phase that is being performed and the position
+ * within that phase up to which all pages have been committed.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+public class BackupCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private long id;
+
+    @NonNull
+    @OneToOne
+    @JoinColumn(name = "owner", nullable = false, unique = true)
+    private SpotifyUser user;
+
+    @NonNull
+    @Setter(AccessLevel.PACKAGE)
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private BackupPhase phase;
+
+    /** Offset of the first page that has not been committed yet, used by offset based paging. */
+    @Setter(AccessLevel.PACKAGE)
+    @Column(nullable = false)
+    private int pageOffset;
+
+    /** Cursor to request the first page that has not been committed yet, used by cursor based paging. */
+    @Setter(AccessLevel.PACKAGE)
+    private String pageCursor;
+
+    @NonNull
+    @Setter(AccessLevel.PACKAGE)
+    @Column(nullable = false)
+    private ZonedDateTime dateUpdated;
+
+    public Optional<String> getPageCursor() {
+        return Optional.ofNullable(pageCursor);
+    }
+}
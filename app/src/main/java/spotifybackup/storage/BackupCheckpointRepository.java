@@ -0,0 +1,57 @@
+package spotifybackup.storage;
+
+import jakarta.persistence.EntityManager;
+import lombok.NonNull;
+import org.hibernate.query.criteria.CriteriaDefinition;
+import spotifybackup.storage.exception.ConstructorUsageException;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+
+import static java.time.ZoneOffset.UTC;
+import static spotifybackup.storage.SpotifyObject.ensureTransactionActive;
+import static spotifybackup.storage.SpotifyObject.getSingleResultOptionally;
+
+class BackupCheckpointRepository {
+    /** @apiNote Should not be used, exists to prevent implicit public constructor. */
+    private BackupCheckpointRepository() {
+        throw new ConstructorUsageException();
+    }
+
+    static Optional<BackupCheckpoint> find(EntityManager em, @NonNull SpotifyUser user) {
+        var query = new CriteriaDefinition<>(em, BackupCheckpoint.class) {};
+        var root = query.from(BackupCheckpoint.class);
+        query.where(query.equal(root.get(BackupCheckpoint_.user), user));
+        return getSingleResultOptionally(em, query);
+    }
+
+    /** Create or update the checkpoint of user. */
+    static BackupCheckpoint save(EntityManager em, @NonNull SpotifyUser user, @NonNull BackupPhase phase,
+                                 final int pageOffset, final String pageCursor) {
+        ensureTransactionActive.accept(em);
+        var optionalCheckpoint = find(em, user);
+        if (optionalCheckpoint.isPresent()) {
+            final var checkpoint = optionalCheckpoint.get();
+            checkpoint.setPhase(phase);
+            checkpoint.setPageOffset(pageOffset);
+            checkpoint.setPageCursor(pageCursor);
+            checkpoint.setDateUpdated(ZonedDateTime.now(UTC));
+            return checkpoint;
+        } else {
+            var newCheckpoint = BackupCheckpoint.builder()
+                    .user(user)
+                    .phase(phase)
+                    .pageOffset(pageOffset)
+                    .pageCursor(pageCursor)
+                    .dateUpdated(ZonedDateTime.now(UTC))
+                    .build();
+            em.persist(newCheckpoint);
+            return newCheckpoint;
+        }
+    }
+
+    static void delete(EntityManager em, @NonNull SpotifyUser user) {
+        ensureTransactionActive.accept(em);
+        find(em, user).ifPresent(em::remove);
+    }
+}
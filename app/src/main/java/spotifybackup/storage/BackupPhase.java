@@ -0,0 +1,15 @@
+package spotifybackup.storage;
+
+/** Phases of a backup of a single account, in the order they are performed. */
+public enum BackupPhase {
+    LIKED_SONGS,
+    FOLLOWED_PLAYLISTS,
+    FOLLOWED_ARTISTS,
+    LIKED_ALBUMS,
+    DETAILED_INFO;
+
+    /** @return true if this phase is performed before other. */
+    public boolean isBefore(BackupPhase other) {
+        return ordinal() < other.ordinal();
+    }
+}
@@ -0,0 +1,23 @@
+package spotifybackup.storage;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.*;
+
+/** Named value describing the database itself rather than the Spotify objects stored in it. */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+public class DatabaseMetadata {
+    @Id
+    @NonNull
+    @Column(length = 64)
+    private String name;
+
+    @NonNull
+    @Setter(AccessLevel.PACKAGE)
+    @Column(name = "entry_value", nullable = false)
+    private String value;
+}
@@ -0,0 +1,31 @@
+package spotifybackup.storage;
+
+import org.hibernate.stat.Statistics;
+
+/**
+ * Counters of the Hibernate Statistics of a SpotifyObjectRepository up to a point in time, subtracting an earlier
+ * snapshot gives the work done in between. Counters are only incremented while statistics are enabled.
+ * @param statements   JDBC statements prepared, including those of queries and inserts.
+ * @param queries      HQL, criteria and native queries executed, bulk updates and deletes included.
+ * @param flushes      Flushes of a session.
+ * @param transactions Transactions completed.
+ */
+public record DatabaseStatistics(long statements, long queries, long flushes, long transactions, long entityLoads,
+                                 long entityInserts, long entityUpdates, long entityDeletes) {
+    public static final DatabaseStatistics EMPTY = new DatabaseStatistics(0, 0, 0, 0, 0, 0, 0, 0);
+
+    static DatabaseStatistics of(Statistics statistics) {
+        return new DatabaseStatistics(statistics.getPrepareStatementCount(), statistics.getQueryExecutionCount() +
+                statistics.getNaturalIdQueryExecutionCount(), statistics.getFlushCount(),
+                statistics.getTransactionCount(), statistics.getEntityLoadCount(), statistics.getEntityInsertCount(),
+                statistics.getEntityUpdateCount(), statistics.getEntityDeleteCount());
+    }
+
+    /** @return counters incremented after earlier was taken. */
+    public DatabaseStatistics minus(DatabaseStatistics earlier) {
+        return new DatabaseStatistics(statements - earlier.statements, queries - earlier.queries,
+                flushes - earlier.flushes, transactions - earlier.transactions, entityLoads - earlier.entityLoads,
+                entityInserts - earlier.entityInserts, entityUpdates - earlier.entityUpdates,
+                entityDeletes - earlier.entityDeletes);
+    }
+}
@@ -0,0 +1,7 @@
+package spotifybackup.storage;
+
+/**
+ * Amount of saved tracks in a library and their total duration.
+ * @param durationMs Sum of the durations of the tracks, tracks without a stored duration count as 0.
+ */
+public record LibraryDuration(long tracks, long durationMs) {}
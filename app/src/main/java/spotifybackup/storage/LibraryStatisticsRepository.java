@@ -0,0 +1,155 @@
+package spotifybackup.storage;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Root;
+import lombok.NonNull;
+import org.hibernate.query.criteria.CriteriaDefinition;
+import spotifybackup.storage.exception.ConstructorUsageException;
+
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static java.time.ZoneOffset.UTC;
+import static spotifybackup.storage.SpotifyObject.ensureTransactionActive;
+import static spotifybackup.storage.SpotifyObject.getSingleResultOptionally;
+
+/**
+ * Aggregates of the saved tracks of a user, each computed by a single projection query without loading entities.
+ * Removed saved tracks are not counted.
+ */
+class LibraryStatisticsRepository {
+    /** @apiNote Should not be used, exists to prevent implicit public constructor. */
+    private LibraryStatisticsRepository() {
+        throw new ConstructorUsageException();
+    }
+
+    private static <T> Root<SpotifySavedTrack> fromSavedTracks(CriteriaDefinition<T> query, SpotifyUser user) {
+        var root = query.from(SpotifySavedTrack.class);
+        query.where(query.equal(root.get(SpotifySavedTrack_.user), user),
+                query.isFalse(root.get(SpotifySavedTrack_.isRemoved)));
+        return root;
+    }
+
+    static LibraryDuration duration(EntityManager em, @NonNull SpotifyUser user) {
+        return duration(em, user, null);
+    }
+
+    /** @return amount and total duration of the tracks user saved after from. */
+    static LibraryDuration durationAddedAfter(EntityManager em, @NonNull SpotifyUser user,
+                                              @NonNull ZonedDateTime from) {
+        return duration(em, user, from);
+    }
+
+    private static LibraryDuration duration(EntityManager em, SpotifyUser user, ZonedDateTime from) {
+        var query = new CriteriaDefinition<>(em, LibraryDuration.class) {};
+        var root = fromSavedTracks(query, user);
+        var track = root.join(SpotifySavedTrack_.track);
+        query.select(query.construct(LibraryDuration.class, query.count(root),
+                query.coalesce(query.sumAsLong(track.get(SpotifyTrack_.durationMs)), 0L)));
+        if (from != null) {
+            query.where(query.getRestriction(), query.greaterThan(root.get(SpotifySavedTrack_.dateAdded), from));
+        }
+        return em.createQuery(query).getSingleResult();
+    }
+
+    /** @return the limit artists with the most saved tracks, most saved first. */
+    static List<NamedCount> countByArtist(EntityManager em, @NonNull SpotifyUser user, final int limit) {
+        var query = new CriteriaDefinition<>(em, NamedCount.class) {};
+        var root = fromSavedTracks(query, user);
+        var artist = root.join(SpotifySavedTrack_.track).join(SpotifyTrack_.artists);
+        return countByName(em, query, artist.get(SpotifyArtist_.id), artist.get(SpotifyArtist_.name),
+                query.count(root), limit);
+    }
+
+    /** @return the limit albums with the most saved tracks, most saved first. */
+    static List<NamedCount> countByAlbum(EntityManager em, @NonNull SpotifyUser user, final int limit) {
+        var query = new CriteriaDefinition<>(em, NamedCount.class) {};
+        var root = fromSavedTracks(query, user);
+        var album = root.join(SpotifySavedTrack_.track).join(SpotifyTrack_.album);
+        return countByName(em, query, album.get(SpotifyAlbum_.id), album.get(SpotifyAlbum_.name), query.count(root),
+                limit);
+    }
+
+    /**
+     * Genres are stored per artist, a saved track counts once for every distinct genre of its artists.
+     * @return the limit genres with the most saved tracks, most saved first.
+     */
+    static List<NamedCount> countByGenre(EntityManager em, @NonNull SpotifyUser user, final int limit) {
+        var query = new CriteriaDefinition<>(em, NamedCount.class) {};
+        var root = fromSavedTracks(query, user);
+        var genre = root.join(SpotifySavedTrack_.track).join(SpotifyTrack_.artists).join(SpotifyArtist_.genres);
+        return countByName(em, query, genre.get(SpotifyGenre_.id), genre.get(SpotifyGenre_.name),
+                query.countDistinct(root), limit);
+    }
+
+    private static List<NamedCount> countByName(EntityManager em, CriteriaDefinition<NamedCount> query,
+                                                Expression<Long> id, Expression<String> name, Expression<Long> count,
+                                                final int limit) {
+        query.select(query.construct(NamedCount.class, name, count))
+                .groupBy(id, name)
+                .orderBy(query.desc(count), query.asc(name));
+        return em.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    /** @return amount of saved tracks per release year of their album, ascending, unknown years are absent. */
+    static Map<Integer, Long> countByReleaseYear(EntityManager em, @NonNull SpotifyUser user) {
+        var query = new CriteriaDefinition<>(em, Object[].class) {};
+        var root = fromSavedTracks(query, user);
+        var album = root.join(SpotifySavedTrack_.track).join(SpotifyTrack_.album);
+        var year = query.function("year", Integer.class, album.get(SpotifyAlbum_.releaseDate));
+        query.multiselect(year, query.count(root))
+                .where(query.getRestriction(), query.isNotNull(album.get(SpotifyAlbum_.releaseDate)))
+                .groupBy(year)
+                .orderBy(query.asc(year));
+        return toMap(em.createQuery(query).getResultList(), row -> (Integer) row[0]);
+    }
+
+    /** @return amount of saved tracks per explicit flag, tracks without a stored flag are absent. */
+    static Map<Boolean, Long> countByExplicit(EntityManager em, @NonNull SpotifyUser user) {
+        var query = new CriteriaDefinition<>(em, Object[].class) {};
+        var root = fromSavedTracks(query, user);
+        var explicit = root.join(SpotifySavedTrack_.track).get(SpotifyTrack_.explicit);
+        query.multiselect(explicit, query.count(root))
+                .where(query.getRestriction(), query.isNotNull(explicit))
+                .groupBy(explicit)
+                .orderBy(query.asc(explicit));
+        return toMap(em.createQuery(query).getResultList(), row -> (Boolean) row[0]);
+    }
+
+    private static <K> Map<K, Long> toMap(List<Object[]> rows, Function<Object[], K> key) {
+        final Map<K, Long> counts = new LinkedHashMap<>();
+        for (var row : rows) counts.put(key.apply(row), (Long) row[1]);
+        return counts;
+    }
+
+    static Optional<LibrarySummary> findSummary(EntityManager em, @NonNull SpotifyUser user) {
+        var query = new CriteriaDefinition<>(em, LibrarySummary.class) {};
+        var root = query.from(LibrarySummary.class);
+        query.where(query.equal(root.get(LibrarySummary_.user), user));
+        return getSingleResultOptionally(em, query);
+    }
+
+    /** Create or update the cached summary of the library of user. */
+    static LibrarySummary refreshSummary(EntityManager em, @NonNull SpotifyUser user) {
+        ensureTransactionActive.accept(em);
+        final var duration = duration(em, user);
+        final long explicitTracks = countByExplicit(em, user).getOrDefault(true, 0L);
+        final long savedAlbums = SpotifySavedAlbumRepository.countByUser(em, user).getSingleResult();
+        var summary = findSummary(em, user).orElseGet(() -> {
+            var newSummary = LibrarySummary.builder().user(user).dateUpdated(ZonedDateTime.now(UTC)).build();
+            em.persist(newSummary);
+            return newSummary;
+        });
+        summary.setSavedTracks(duration.tracks());
+        summary.setDurationMs(duration.durationMs());
+        summary.setExplicitTracks(explicitTracks);
+        summary.setSavedAlbums(savedAlbums);
+        summary.setDateUpdated(ZonedDateTime.now(UTC));
+        return summary;
+    }
+}
@@ -0,0 +1,52 @@
+package spotifybackup.storage;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Cached totals of the library of a single account, refreshed at the end of every backup so that they can be shown
+ * without aggregating the library.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+public class LibrarySummary {
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private long id;
+
+    @NonNull
+    @OneToOne
+    @JoinColumn(name = "owner", nullable = false, unique = true)
+    private SpotifyUser user;
+
+    @Setter(AccessLevel.PACKAGE)
+    @Column(nullable = false)
+    private long savedTracks;
+
+    @Setter(AccessLevel.PACKAGE)
+    @Column(nullable = false)
+    private long durationMs;
+
+    @Setter(AccessLevel.PACKAGE)
+    @Column(nullable = false)
+    private long explicitTracks;
+
+    @Setter(AccessLevel.PACKAGE)
+    @Column(nullable = false)
+    private long savedAlbums;
+
+    @NonNull
+    @Setter(AccessLevel.PACKAGE)
+    @Column(nullable = false)
+    private ZonedDateTime dateUpdated;
+
+    /** @return amount and total duration of the saved tracks at the time this summary was refreshed. */
+    public LibraryDuration getLibraryDuration() {
+        return new LibraryDuration(savedTracks, durationMs);
+    }
+}
@@ -0,0 +1,50 @@
+package spotifybackup.storage;
+
+import com.neovisionaries.i18n.CountryCode;
+import lombok.NonNull;
+
+/**
+ * Predicate on the available markets of a track or album, evaluated by the database on the stored bitset.
+ * @param match   How markets are matched against the available markets.
+ * @param markets Markets to match, never empty.
+ */
+public record MarketFilter(@NonNull Match match, @NonNull AvailableMarkets markets) {
+    public enum Match {
+        /** Available in at least one of the markets. */
+        ANY_OF,
+        /** Available in every one of the markets. */
+        ALL_OF,
+        /** Available in none of the markets, objects without any available markets match as well. */
+        NONE_OF
+    }
+
+    public MarketFilter {
+        if (markets.isEmpty()) throw new IllegalArgumentException("MarketFilter needs at least one market.");
+    }
+
+    public static MarketFilter availableIn(@NonNull CountryCode market) {
+        return new MarketFilter(Match.ALL_OF, new AvailableMarkets(new CountryCode[]{market}));
+    }
+
+    public static MarketFilter availableInAny(@NonNull CountryCode... markets) {
+        return new MarketFilter(Match.ANY_OF, new AvailableMarkets(markets));
+    }
+
+    public static MarketFilter availableInAll(@NonNull CountryCode... markets) {
+        return new MarketFilter(Match.ALL_OF, new AvailableMarkets(markets));
+    }
+
+    public static MarketFilter unavailableIn(@NonNull CountryCode... markets) {
+        return new MarketFilter(Match.NONE_OF, new AvailableMarkets(markets));
+    }
+
+    /** @return true if availableMarkets is matched, the in-memory equivalent of the database predicate. */
+    public boolean test(@NonNull AvailableMarkets availableMarkets) {
+        final var matched = availableMarkets.intersect(markets);
+        return switch (match) {
+            case ANY_OF -> !matched.isEmpty();
+            case ALL_OF -> matched.equals(markets);
+            case NONE_OF -> matched.isEmpty();
+        };
+    }
+}
@@ -0,0 +1,6 @@
+package spotifybackup.storage;
+
+/**
+ * Amount of saved tracks belonging to a named group, such as an artist, album or genre.
+ */
+public record NamedCount(String name, long count) {}
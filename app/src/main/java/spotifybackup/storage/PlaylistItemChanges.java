@@ -0,0 +1,13 @@
+package spotifybackup.storage;
+
+/**
+ * Rows written by SpotifyObjectRepository.syncPlaylistItems().
+ * @param inserted Items that weren't stored yet.
+ * @param removed  Stored items that are no longer in the playlist.
+ * @param moved    Stored items whose position was rewritten, because they moved or to make room for inserted items.
+ */
+public record PlaylistItemChanges(int inserted, int removed, int moved) {
+    public boolean isEmpty() {
+        return inserted == 0 && removed == 0 && moved == 0;
+    }
+}
@@ -0,0 +1,88 @@
+package spotifybackup.storage;
+
+import spotifybackup.storage.exception.ConstructorUsageException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Longest common subsequence of two sequences with Myers' O((N+M)D) diff algorithm, where D is the number of inserted
+ * and removed elements. Common prefix and suffix are matched before the diff runs, so appending to or prepending to
+ * a sequence costs O(N+M).
+ */
+class SequenceDiff {
+    /**
+     * Largest D the diff searches for, the trace kept for backtracking grows with D², past this the middle of the
+     * sequences is left unmatched.
+     */
+    static final int MAX_EDIT_DISTANCE = 1000;
+
+    /** @apiNote Should not be used, exists to prevent implicit public constructor. */
+    private SequenceDiff() {
+        throw new ConstructorUsageException();
+    }
+
+    /**
+     * @return for every index of target the index of the element of source it is matched with, or -1 if it isn't
+     * matched. Matched indexes are strictly increasing.
+     */
+    static <K> int[] match(List<K> source, List<K> target) {
+        final var matches = new int[target.size()];
+        Arrays.fill(matches, -1);
+        int start = 0;
+        while (start < source.size() && start < target.size() && source.get(start).equals(target.get(start))) {
+            matches[start] = start;
+            start++;
+        }
+        int sourceEnd = source.size(), targetEnd = target.size();
+        while (sourceEnd > start && targetEnd > start && source.get(sourceEnd - 1).equals(target.get(targetEnd - 1))) {
+            matches[--targetEnd] = --sourceEnd;
+        }
+        if (sourceEnd > start && targetEnd > start) {
+            myers(source.subList(start, sourceEnd), target.subList(start, targetEnd), start, start, matches);
+        }
+        return matches;
+    }
+
+    private static <K> void myers(List<K> a, List<K> b, final int aOffset, final int bOffset, int[] matches) {
+        final int n = a.size(), m = b.size();
+        final int maxD = Math.min(n + m, MAX_EDIT_DISTANCE);
+        final int offset = maxD + 1;
+        final var v = new int[2 * maxD + 3];
+        final List<int[]> trace = new ArrayList<>();
+        for (int d = 0; d <= maxD; d++) {
+            trace.add(v.clone());
+            for (int k = -d; k <= d; k += 2) {
+                int x = (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) ?
+                        v[offset + k + 1] : v[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a.get(x).equals(b.get(y))) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    backtrack(trace, d, n, m, offset, aOffset, bOffset, matches);
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Walk back from (n, m) through the furthest reaching paths of trace, recording every diagonal as a match. */
+    private static void backtrack(List<int[]> trace, final int editDistance, int x, int y, final int offset,
+                                  final int aOffset, final int bOffset, int[] matches) {
+        for (int d = editDistance; d > 0; d--) {
+            final var v = trace.get(d);
+            final int k = x - y;
+            final int prevK = (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) ? k + 1 : k - 1;
+            final int prevX = v[offset + prevK];
+            final int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) matches[bOffset + --y] = aOffset + --x;
+            x = prevX;
+            y = prevY;
+        }
+        while (x > 0 && y > 0) matches[bOffset + --y] = aOffset + --x;
+    }
+}
@@ -55,11 +55,17 @@ class SpotifyAlbumRepository {
      * @return SpotifyAlbum if id matches the spotify_id field in the table and not blank.
      */
     static Optional<SpotifyAlbum> find(EntityManager em, @NonNull String id) {
-        if (id.isBlank() || em.find(SpotifyID.class, id) == null) return Optional.empty();
+        if (id.isBlank()) return Optional.empty();
+        final var cache = SpotifyIDCache.of(em);
+        final var cached = cache.find(em, SpotifyAlbum.class, id);
+        if (cached.isPresent()) return cached;
+        else if (em.find(SpotifyID.class, id) == null) return Optional.empty();
         var query = new CriteriaDefinition<>(em, SpotifyAlbum.class) {};
         var root = query.from(SpotifyAlbum.class);
         query.where(query.equal(root.get(SpotifyAlbum_.spotifyID).asString(), id));
-        return getSingleResultOptionally(em, query);
+        final var album = getSingleResultOptionally(em, query);
+        album.ifPresent(found -> cache.put(id, SpotifyAlbum.class, found.getId()));
+        return album;
     }
 
     /**
@@ -105,6 +111,8 @@ class SpotifyAlbumRepository {
                 newAlbum.addArtist(SpotifyArtistRepository.persist(entityManager, apiArtist));
             }
             entityManager.persist(newAlbum);
+            SpotifyIDCache.of(entityManager).put(newAlbum.getSpotifyID().getId(), SpotifyAlbum.class,
+                    newAlbum.getId());
             return newAlbum;
         }
     }
@@ -127,7 +135,7 @@ class SpotifyAlbumRepository {
                 final var simpleAlbum = optionalAlbum.get();
                 simpleAlbum.setIsSimplified(false);
                 setNotSimpleFields(entityManager, storeTracks, apiAlbum, simpleAlbum, selection);
-                if (simpleAlbum.getAvailableMarkets().getCodes().isEmpty()) {
+                if (simpleAlbum.getAvailableMarkets().isEmpty()) {
                     simpleAlbum.getAvailableMarkets().addCodes(apiAlbum.getAvailableMarkets());
                 }
                 entityManager.persist(simpleAlbum);
@@ -144,6 +152,8 @@ class SpotifyAlbumRepository {
                     .availableMarkets(convertMarkets(apiAlbum.getAvailableMarkets()))
                     .build();
             entityManager.persist(newAlbum);
+            SpotifyIDCache.of(entityManager).put(newAlbum.getSpotifyID().getId(), SpotifyAlbum.class,
+                    newAlbum.getId());
             setNotSimpleFields(entityManager, storeTracks, apiAlbum, newAlbum, selection);
             entityManager.persist(newAlbum);
             return newAlbum;
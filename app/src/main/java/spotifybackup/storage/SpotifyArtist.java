@@ -2,6 +2,7 @@ package spotifybackup.storage;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.Hibernate;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -77,13 +78,13 @@ public final class SpotifyArtist extends SpotifyObject {
         albums.add(newSpotifyAlbum);
     }
 
-    /** Non-owning side. */
+    /** Non-owning side, followers not yet loaded from the database are not loaded just to add to. */
     public void addFollower(@NonNull SpotifyUser user) {
-        followers.add(user);
+        if (Hibernate.isInitialized(followers)) followers.add(user);
     }
 
-    /** Non-owning side. */
+    /** Non-owning side, followers not yet loaded from the database are not loaded just to remove from. */
     public void removeFollower(@NonNull SpotifyUser user) {
-        followers.remove(user);
+        if (Hibernate.isInitialized(followers)) followers.remove(user);
     }
 }
@@ -8,8 +8,7 @@ import se.michaelthelin.spotify.model_objects.specification.Artist;
 import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
 import spotifybackup.storage.exception.ConstructorUsageException;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 import static spotifybackup.storage.SpotifyObject.ensureTransactionActive;
 import static spotifybackup.storage.SpotifyObject.getSingleResultOptionally;
@@ -28,6 +27,25 @@ class SpotifyArtistRepository {
         return em.createQuery(query).getResultList();
     }
 
+    /**
+     * Find all SpotifyArtists matching a collection of Spotify ID string values using a single query.
+     * @param ids Strings containing Spotify IDs.
+     * @return Map of Spotify ID string value to SpotifyArtist, ids without a matching SpotifyArtist are not in the map.
+     */
+    static Map<String, SpotifyArtist> findAll(EntityManager em, @NonNull Collection<String> ids) {
+        final Map<String, SpotifyArtist> artists = new HashMap<>();
+        if (ids.isEmpty()) return artists;
+        var query = new CriteriaDefinition<>(em, SpotifyArtist.class) {};
+        var root = query.from(SpotifyArtist.class);
+        query.where(root.get(SpotifyArtist_.spotifyID).asString().in(ids));
+        final var cache = SpotifyIDCache.of(em);
+        for (var artist : em.createQuery(query).getResultList()) {
+            artists.put(artist.getSpotifyID().getId(), artist);
+            cache.put(artist.getSpotifyID().getId(), SpotifyArtist.class, artist.getId());
+        }
+        return artists;
+    }
+
     static TypedQuery<String> findArtistIdsByFollowingUser(EntityManager em, @NonNull SpotifyUser user) {
         var query = new CriteriaDefinition<>(em, String.class) {};
         var root = query.from(SpotifyArtist.class);
@@ -70,11 +88,17 @@ class SpotifyArtistRepository {
      * @return SpotifyArtist if id matches the spotify_id field in the table and not blank.
      */
     static Optional<SpotifyArtist> find(EntityManager em, @NonNull String id) {
-        if (id.isBlank() || em.find(SpotifyID.class, id) == null) return Optional.empty();
+        if (id.isBlank()) return Optional.empty();
+        final var cache = SpotifyIDCache.of(em);
+        final var cached = cache.find(em, SpotifyArtist.class, id);
+        if (cached.isPresent()) return cached;
+        else if (em.find(SpotifyID.class, id) == null) return Optional.empty();
         var query = new CriteriaDefinition<>(em, SpotifyArtist.class) {};
         var root = query.from(SpotifyArtist.class);
         query.where(query.equal(root.get(SpotifyArtist_.spotifyID).asString(), id));
-        return getSingleResultOptionally(em, query);
+        final var artist = getSingleResultOptionally(em, query);
+        artist.ifPresent(found -> cache.put(id, SpotifyArtist.class, found.getId()));
+        return artist;
     }
 
     /**
@@ -95,6 +119,8 @@ class SpotifyArtistRepository {
                     .isSimplified(true)
                     .build();
             entityManager.persist(newArtist);
+            SpotifyIDCache.of(entityManager).put(newArtist.getSpotifyID().getId(), SpotifyArtist.class,
+                    newArtist.getId());
             return newArtist;
         }
     }
@@ -131,6 +157,8 @@ class SpotifyArtistRepository {
             newArtist.addImages(SpotifyImageRepository.imageSetFactory(entityManager, apiArtist.getImages(), selection));
             newArtist.addGenres(SpotifyGenreRepository.genreSetFactory(entityManager, apiArtist.getGenres()));
             entityManager.persist(newArtist);
+            SpotifyIDCache.of(entityManager).put(newArtist.getSpotifyID().getId(), SpotifyArtist.class,
+                    newArtist.getId());
             return newArtist;
         }
     }
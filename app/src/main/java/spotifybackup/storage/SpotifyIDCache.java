@@ -0,0 +1,84 @@
+package spotifybackup.storage;
+
+import jakarta.persistence.EntityManager;
+import lombok.NonNull;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Bounded cache that maps Spotify ID string values to the primary key of the entity they belong to. A cache is owned by
+ * a SpotifyObjectRepository and attached to every EntityManager it creates, entity managers it isn't attached to get a
+ * cache that never stores anything.
+ * @apiNote Serializable only because Hibernate requires EntityManager property values to be, it is never serialized.
+ */
+class SpotifyIDCache implements Serializable {
+    static final int DEFAULT_CAPACITY = 50_000;
+    @Serial
+    private static final long serialVersionUID = 1L;
+    private static final String PROPERTY = "spotifybackup.spotifyIdCache";
+    private static final SpotifyIDCache DISABLED = new SpotifyIDCache(0);
+    private final LinkedHashMap<String, EntityKey> keys;
+
+    SpotifyIDCache(final int capacity) {
+        keys = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EntityKey> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** @return cache attached to em, or a cache that never stores anything if none is attached. */
+    static SpotifyIDCache of(@NonNull EntityManager em) {
+        return em.getProperties().get(PROPERTY) instanceof SpotifyIDCache cache ? cache : DISABLED;
+    }
+
+    /** Make this the cache returned by {@link #of(EntityManager)} for em. */
+    void attachTo(@NonNull EntityManager em) {
+        em.setProperty(PROPERTY, this);
+    }
+
+    /**
+     * Look up an entity by Spotify ID through its cached primary key, stale keys are evicted.
+     * @return entity if spotifyId is cached as belonging to an entity of type.
+     */
+    <T extends SpotifyObject> Optional<T> find(EntityManager em, @NonNull Class<T> type, @NonNull String spotifyId) {
+        final EntityKey key;
+        synchronized (keys) {
+            key = keys.get(spotifyId);
+        }
+        if (key == null || !key.type.equals(type)) return Optional.empty();
+        final T entity = em.find(type, key.id);
+        if (entity == null) invalidate(spotifyId);
+        return Optional.ofNullable(entity);
+    }
+
+    void put(@NonNull String spotifyId, @NonNull Class<? extends SpotifyObject> type, final long id) {
+        synchronized (keys) {
+            keys.put(spotifyId, new EntityKey(type, id));
+        }
+    }
+
+    void invalidate(@NonNull String spotifyId) {
+        synchronized (keys) {
+            keys.remove(spotifyId);
+        }
+    }
+
+    /** Clears the cache, should be called when a transaction is rolled back and at the end of a backup. */
+    void invalidateAll() {
+        synchronized (keys) {
+            keys.clear();
+        }
+    }
+
+    int size() {
+        synchronized (keys) {
+            return keys.size();
+        }
+    }
+
+    private record EntityKey(Class<? extends SpotifyObject> type, long id) implements Serializable {}
+}
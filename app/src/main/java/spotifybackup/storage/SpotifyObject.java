@@ -31,13 +31,16 @@ public abstract sealed class SpotifyObject
         if (!entityManager.getTransaction().isActive()) throw new TransactionInactiveException();
     };
 
+    /** Maximum number of ids bound to a single IN clause by bulk statements. */
+    static final int BULK_CHUNK_SIZE = 1000;
+
     static {
         for (var subType : SubTypes.values()) {
             mapSubtypeByClass.put(subType.type, subType);
         }
     }
 
-    static <T extends SpotifyObject> Optional<T> getSingleResultOptionally(EntityManager em, CriteriaDefinition<T> query) {
+    static <T> Optional<T> getSingleResultOptionally(EntityManager em, CriteriaDefinition<T> query) {
         try {
             return Optional.of(em.createQuery(query).getSingleResult());
         } catch (NoResultException e) {
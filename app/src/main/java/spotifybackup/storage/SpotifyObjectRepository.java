@@ -4,31 +4,41 @@ import com.neovisionaries.i18n.CountryCode;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
+import jakarta.persistence.PersistenceException;
 import lombok.NonNull;
 import org.apache.commons.lang3.function.TriFunction;
+import org.hibernate.SessionFactory;
 import org.hibernate.service.spi.ServiceException;
+import org.hibernate.tool.schema.spi.SchemaManagementException;
 import se.michaelthelin.spotify.model_objects.AbstractModelObject;
 import se.michaelthelin.spotify.model_objects.specification.*;
 
 import java.io.File;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 
 public class SpotifyObjectRepository {
     private static final String URL_DATASOURCE_NAME = "hibernate.hikari.dataSource.url";
-    private final EntityManagerFactory emf;
+    private final Supplier<EntityManagerFactory> emfSupplier;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile EntityManagerFactory emf;
+    private boolean statisticsEnabled;
+    private final SpotifyIDCache idCache = new SpotifyIDCache(SpotifyIDCache.DEFAULT_CAPACITY);
 
-    private SpotifyObjectRepository(@NonNull String persistenceUnitName, @NonNull Properties dbAccess) {
-        LogManager.getLogManager().getLogger("").setLevel(Level.WARNING);
-        try {
-            emf = Persistence.createEntityManagerFactory(persistenceUnitName, dbAccess);
-        } catch (ServiceException e) {
-            throw new RuntimeException("Can't create db access service, is db version out of date?\n" + e.getMessage());
-        }
-        checkAvailableMarketsBitset();
+    /**
+     * The database is opened on first use rather than here, so commands that never touch the database don't pay for
+     * starting Hibernate.
+     * @param emfSupplier Opens the database, called at most once.
+     */
+    private SpotifyObjectRepository(@NonNull Supplier<EntityManagerFactory> emfSupplier) {
+        this.emfSupplier = emfSupplier;
     }
 
     /**
@@ -36,12 +46,24 @@ public class SpotifyObjectRepository {
      * @param dbPath File path of database.
      */
     public static SpotifyObjectRepository factory(@NonNull File dbPath) {
-        if (!dbPath.exists()) createNewDb(dbPath);
-        if (!dbPath.isFile())
+        if (dbPath.exists() && !dbPath.isFile())
             throw new IllegalArgumentException("Supplied filepath to database is unusable: " + dbPath);
         final Properties dbAccess = new Properties();
         dbAccess.put(URL_DATASOURCE_NAME, generateDataSourceUrl(dbPath));
-        return new SpotifyObjectRepository("SpotifyObjects", dbAccess);
+        return new SpotifyObjectRepository(() -> {
+            if (!dbPath.exists()) createNewDb(dbPath);
+            if (!dbPath.isFile())
+                throw new IllegalArgumentException("Supplied filepath to database is unusable: " + dbPath);
+            try {
+                return createEntityManagerFactory("SpotifyObjects", dbAccess);
+            } catch (PersistenceException e) {
+                // only a database that predates tables or columns of the current version is updated, a database that
+                // can't be opened at all is left untouched
+                if (!isSchemaValidationFailure(e)) throw e;
+                updateDbSchema(dbPath);
+                return createEntityManagerFactory("SpotifyObjects", dbAccess);
+            }
+        });
     }
 
     /**
@@ -52,12 +74,68 @@ public class SpotifyObjectRepository {
         final Properties dbAccess = new Properties();
         dbAccess.put("hibernate.show_sql", showSql ? "true" : "false");
         dbAccess.put(URL_DATASOURCE_NAME, generateDataSourceUrl(new File("build/spotifyObjectsTest")));
-        return new SpotifyObjectRepository("SpotifyObjectsTest", dbAccess);
+        return new SpotifyObjectRepository(() -> createEntityManagerFactory("SpotifyObjectsTest", dbAccess));
+    }
+
+    private static EntityManagerFactory createEntityManagerFactory(String persistenceUnitName, Properties dbAccess) {
+        LogManager.getLogManager().getLogger("").setLevel(Level.WARNING);
+        try {
+            return Persistence.createEntityManagerFactory(persistenceUnitName, dbAccess);
+        } catch (ServiceException e) {
+            throw new RuntimeException("Can't create db access service, is db version out of date?\n" + e.getMessage());
+        }
+    }
+
+    private static boolean isSchemaValidationFailure(Throwable e) {
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SchemaManagementException) return true;
+        }
+        return false;
+    }
+
+    /** @return the EntityManagerFactory of the database, opening the database if this is its first use. */
+    private EntityManagerFactory emf() {
+        var factory = emf;
+        if (factory == null) {
+            synchronized (this) {
+                factory = emf;
+                if (factory == null) {
+                    factory = emfSupplier.get();
+                    factory.unwrap(SessionFactory.class).getStatistics().setStatisticsEnabled(statisticsEnabled);
+                    try (var em = factory.createEntityManager()) {
+                        em.getTransaction().begin();
+                        AvailableMarketsBitsetRepository.ensureUpToDate(em);
+                        em.getTransaction().commit();
+                    }
+                    emf = factory;
+                }
+            }
+        }
+        return factory;
+    }
+
+    /** @return new EntityManager with the Spotify ID cache of this repository attached. */
+    private EntityManager createEntityManager() {
+        final var em = emf().createEntityManager();
+        idCache.attachTo(em);
+        return em;
     }
 
     private static void createNewDb(File dbPath) {
+        performSchemaAction(dbPath, "create");
+    }
+
+    /**
+     * Adds tables and columns introduced since the database was created, existing data is left untouched.
+     * @apiNote Should only be called before the database is opened with schema validation.
+     */
+    private static void updateDbSchema(File dbPath) {
+        performSchemaAction(dbPath, "update");
+    }
+
+    private static void performSchemaAction(File dbPath, String action) {
         final Properties dbAccess = new Properties();
-        dbAccess.put("hibernate.hbm2ddl.auto", "create");
+        dbAccess.put("hibernate.hbm2ddl.auto", action);
         dbAccess.put(URL_DATASOURCE_NAME, generateDataSourceUrl(dbPath));
         LogManager.getLogManager().getLogger("").setLevel(Level.WARNING);
         try (var emf = Persistence.createEntityManagerFactory("SpotifyObjects", dbAccess);
@@ -86,91 +164,89 @@ public class SpotifyObjectRepository {
             throw new IllegalArgumentException("Supplied filepath to output SQL script to can't be written to: "
                     + outputPath);
         }
-        try (var em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            em.createNativeQuery("SCRIPT TO '" + outputPath.getAbsolutePath() + "'").getResultList();
-            em.getTransaction().commit();
-        }
+        runInTransaction(em -> em.createNativeQuery("SCRIPT TO '" + outputPath.getAbsolutePath() + "'").getResultList());
     }
 
-    private void checkAvailableMarketsBitset() {
-        try (var em = emf.createEntityManager()) {
-            var cb = em.getCriteriaBuilder();
-            var query = cb.createQuery(Long.class);
-            query.select(cb.count(query.from(AvailableMarketsBitset.class)));
-            final long count = em.createQuery(query).getSingleResult();
+    /**
+     * Collecting statistics costs a little on every database operation, so it is disabled by default. Doesn't open the
+     * database, the setting is applied once it is opened.
+     * @see #getStatistics()
+     */
+    public synchronized void setStatisticsEnabled(final boolean enabled) {
+        statisticsEnabled = enabled;
+        if (emf != null) emf.unwrap(SessionFactory.class).getStatistics().setStatisticsEnabled(enabled);
+    }
+
+    /** @return counters of the work done by this repository since statistics were enabled. */
+    public DatabaseStatistics getStatistics() {
+        return DatabaseStatistics.of(emf().unwrap(SessionFactory.class).getStatistics());
+    }
+
+    /**
+     * Forget the primary keys cached for Spotify IDs, should be called at the end of every backup so that a long
+     * running process never resolves keys of rows that were changed outside this repository since.
+     */
+    public void clearCache() {
+        idCache.invalidateAll();
+    }
+
+    /**
+     * Runs work inside a single transaction, if work throws the transaction is rolled back and the Spotify ID cache is
+     * cleared as it may contain keys of entities that were never committed. Write transactions are serialised so that
+     * backups of multiple accounts running at the same time can't insert the same shared object (artist, album, track,
+     * etc.) twice.
+     */
+    private <R> R inTransaction(Function<EntityManager, R> work) {
+        writeLock.lock();
+        try (var em = createEntityManager()) {
             em.getTransaction().begin();
-            for (var code : CountryCode.values()) {
-                if (code.equals(CountryCode.UNDEFINED)) continue;
-                if (count == 0) {
-                    em.persist(AvailableMarketsBitset.builder()
-                            .bitset(new AvailableMarkets(new CountryCode[]{code}))
-                            .alpha2(code.getAlpha2())
-                            .alpha3(code.getAlpha3())
-                            .numeric(code.getNumeric() != -1 ? code.getNumeric() : null)
-                            .country(code.getName())
-                            .ordinal(code.ordinal())
-                            .build());
-                } else {
-                    final AvailableMarketsBitset bitset = em.find(AvailableMarketsBitset.class, code.ordinal());
-                    if (!(bitset.getBitset().equals(new AvailableMarkets(new CountryCode[]{code}))) &&
-                            bitset.getAlpha2().equals(code.getAlpha2()) &&
-                            (bitset.getAlpha3() == null || bitset.getAlpha3().equals(code.getAlpha3())) &&
-                            (bitset.getNumeric() == null || bitset.getNumeric() == code.getNumeric()) &&
-                            bitset.getCountry().equals(code.getName())
-                    ) {
-                        throw new RuntimeException("CountryCode does not match persisted AvailableMarketsBitset " +
-                                "value, @id: " + code.ordinal());
-                    }
-                }
-            }
-            em.getTransaction().commit();
-            if (em.createQuery(query).getSingleResult() != (CountryCode.values().length - 1)) {
-                throw new RuntimeException("Size mismatch between CountryCode and AvailableMarketsBitset.");
+            try {
+                final R result = work.apply(em);
+                em.getTransaction().commit();
+                return result;
+            } catch (RuntimeException e) {
+                if (em.getTransaction().isActive()) em.getTransaction().rollback();
+                idCache.invalidateAll();
+                throw e;
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
+    private void runInTransaction(Consumer<EntityManager> work) {
+        inTransaction(em -> {
+            work.accept(em);
+            return null;
+        });
+    }
+
     private <T extends SpotifyObject, A extends AbstractModelObject> T
     persistAbstractModel(A apiObject, BiFunction<EntityManager, A, T> persist) {
-        try (var em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            var spotifyObject = persist.apply(em, apiObject);
-            em.getTransaction().commit();
-            return spotifyObject;
-        }
+        return inTransaction(em -> persist.apply(em, apiObject));
     }
 
     private <T extends SpotifyObject, C extends Collection<T>, A extends AbstractModelObject> C
     persistAbstractModels(A[] apiObjects, C collection, BiFunction<EntityManager, A, T> persist) {
-        try (var em = emf.createEntityManager()) {
-            em.getTransaction().begin();
+        return inTransaction(em -> {
             for (var apiObject : apiObjects) collection.add(persist.apply(em, apiObject));
-            em.getTransaction().commit();
             return collection;
-        }
+        });
     }
 
     private <T extends SpotifyObject, C extends Collection<T>, I extends SpotifyObject, A extends AbstractModelObject> C
     persistAbstractModelsWithIdentifier(A[] apiObjects, C collection, I identifier,
                                         TriFunction<EntityManager, A, I, T> persist) {
-        try (var em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            for (var apiObject : apiObjects) collection.add(persist.apply(em, apiObject, identifier));
-            em.getTransaction().commit();
-            return collection;
-        }
+        return persistAbstractModelsWithIdentifier(Arrays.asList(apiObjects), collection, identifier, persist);
     }
 
     private <T extends SpotifyObject, C extends Collection<T>, I extends SpotifyObject, A extends AbstractModelObject> C
     persistAbstractModelsWithIdentifier(List<A> apiObjects, C collection, I identifier,
                                         TriFunction<EntityManager, A, I, T> persist) {
-        try (var em = emf.createEntityManager()) {
-            em.getTransaction().begin();
+        return inTransaction(em -> {
             for (var apiObject : apiObjects) collection.add(persist.apply(em, apiObject, identifier));
-            em.getTransaction().commit();
             return collection;
-        }
+        });
     }
 
     /**
@@ -179,7 +255,7 @@ public class SpotifyObjectRepository {
      * @return true if spotifyObject exists.
      */
     public boolean exists(@NonNull SpotifyObject spotifyObject) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             return switch (spotifyObject) {
                 case SpotifyGenre g -> em.find(g.getClass(), g.getId());
                 case SpotifyImage i -> em.find(i.getClass(), i.getId());
@@ -206,7 +282,7 @@ public class SpotifyObjectRepository {
      */
     public boolean exists(@NonNull String value, Class<? extends SpotifyObject> type) {
         if (value.isBlank()) throw new IllegalArgumentException("Value should not be blank.");
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             return switch (SpotifyObject.accessSubTypeByClass.apply(type)) {
                 case GENRE -> SpotifyGenreRepository.find(em, value).isPresent();
                 case IMAGE -> SpotifyImageRepository.find(em, value).isPresent();
@@ -224,7 +300,7 @@ public class SpotifyObjectRepository {
      * @return true if apiObject exists in the database.
      */
     public boolean exists(@NonNull AbstractModelObject apiObject) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             return switch (apiObject) {
                 case Track apiTrack -> SpotifyTrackRepository.find(em, apiTrack.getId()).isPresent();
                 case Album apiAlbum -> SpotifyAlbumRepository.find(em, apiAlbum.getId()).isPresent();
@@ -258,7 +334,7 @@ public class SpotifyObjectRepository {
      * and not blank.
      */
     public Optional<? extends SpotifyObject> find(@NonNull String spotifyID) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var userOptional = SpotifyUserRepository.find(em, spotifyID);
             if (userOptional.isPresent()) return userOptional;
             var playlistOptional = SpotifyPlaylistRepository.find(em, spotifyID);
@@ -277,7 +353,7 @@ public class SpotifyObjectRepository {
      * @return List of SpotifyUser accounts used to generate the database.
      */
     public List<SpotifyUser> getAccountHolders() {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             return SpotifyUserRepository.getAccountHolders(em);
         }
     }
@@ -288,7 +364,7 @@ public class SpotifyObjectRepository {
      * @return count of SpotifyObject in the database.
      */
     public long count(final SpotifyObject.SubTypes type) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var cb = em.getCriteriaBuilder();
             var query = cb.createQuery(Long.class);
             query.select(cb.count(query.from(type.type)));
@@ -307,28 +383,28 @@ public class SpotifyObjectRepository {
 
     /** @return List of SpotifyIDs' of all SpotifyAlbums marked simplified in the database. */
     public List<String> getSimplifiedAlbumsSpotifyIDs() {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             return SpotifyAlbumRepository.findAllSpotifyIdsOfSimplified(em);
         }
     }
 
     /** @return List of SpotifyIDs' of all SpotifyArtists marked simplified in the database. */
     public List<String> getSimplifiedArtistsSpotifyIDs() {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             return SpotifyArtistRepository.findAllSpotifyIdsOfSimplified(em);
         }
     }
 
     /** @return List of SpotifyIDs' of all SpotifyPlaylists marked simplified in the database. */
     public List<String> getSimplifiedPlaylistsSpotifyIDs() {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             return SpotifyPlaylistRepository.findAllSpotifyIdsOfSimplified(em);
         }
     }
 
     /** @return List of SpotifyIDs' of all SpotifyTracks marked simplified in the database. */
     public List<String> getSimplifiedTracksSpotifyIDs() {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             return SpotifyTrackRepository.findAllSpotifyIdsOfSimplified(em);
         }
     }
@@ -339,7 +415,7 @@ public class SpotifyObjectRepository {
      * @return count of SavedTracks belonging to user in the database.
      */
     public long countSavedTracks(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var query = SpotifySavedTrackRepository.countByUser(em, user);
             return query.getSingleResult();
         }
@@ -351,7 +427,7 @@ public class SpotifyObjectRepository {
      * @return count of SavedAlbums belonging to user in the database.
      */
     public long countSavedAlbums(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var query = SpotifySavedAlbumRepository.countByUser(em, user);
             return query.getSingleResult();
         }
@@ -364,7 +440,7 @@ public class SpotifyObjectRepository {
      * database.
      */
     public Optional<SpotifySavedTrack> getNewestSavedTrack(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var query = SpotifySavedTrackRepository.findNewestByUser(em, user);
             return query.getResultStream().findFirst();
         }
@@ -377,7 +453,7 @@ public class SpotifyObjectRepository {
      * database.
      */
     public Optional<SpotifySavedAlbum> getNewestSavedAlbum(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var query = SpotifySavedAlbumRepository.findNewestByUser(em, user);
             return query.getResultStream().findFirst();
         }
@@ -389,7 +465,7 @@ public class SpotifyObjectRepository {
      * @return Set of a users' SpotifySavedTrack objects, may be empty.
      */
     public Set<SpotifySavedTrack> getSavedTracks(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var query = SpotifySavedTrackRepository.findByUser(em, user);
             return new HashSet<>(query.getResultList());
         }
@@ -401,7 +477,7 @@ public class SpotifyObjectRepository {
      * @param from Non-inclusive timestamp, everything added after this moment is returned.
      */
     public List<SpotifySavedTrack> getSavedTracksAfter(@NonNull SpotifyUser user, @NonNull ZonedDateTime from) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var query = SpotifySavedTrackRepository.findByUserAndAfter(em, user, from);
             return query.getResultList();
         }
@@ -413,7 +489,7 @@ public class SpotifyObjectRepository {
      * @return Set of a users' SpotifySavedAlbum objects, may be empty.
      */
     public Set<SpotifySavedAlbum> getSavedAlbums(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var query = SpotifySavedAlbumRepository.findByUser(em, user);
             return new HashSet<>(query.getResultList());
         }
@@ -425,7 +501,7 @@ public class SpotifyObjectRepository {
      * @return Set of a users' SpotifySavedTrack objects, may be empty.
      */
     public Set<SpotifySavedTrack> getRemovedSavedTracks(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var query = SpotifySavedTrackRepository.findRemovedByUser(em, user);
             return new HashSet<>(query.getResultList());
         }
@@ -437,12 +513,80 @@ public class SpotifyObjectRepository {
      * @return Set of a users' SpotifySavedAlbum objects, may be empty.
      */
     public Set<SpotifySavedAlbum> getRemovedSavedAlbums(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var query = SpotifySavedAlbumRepository.findRemovedByUser(em, user);
             return new HashSet<>(query.getResultList());
         }
     }
 
+    /**
+     * Get a users' saved songs whose track matches filter, evaluated in a single query on the stored markets.
+     * @param user The SpotifyUser account to get SpotifySavedTrack objects from.
+     * @param filter Predicate on the available markets of the track.
+     * @return List of a users' matching SpotifySavedTrack objects, may be empty.
+     */
+    public List<SpotifySavedTrack> getSavedTracks(@NonNull SpotifyUser user, @NonNull MarketFilter filter) {
+        try (var em = createEntityManager()) {
+            return AvailableMarketsRepository.findSavedTracks(em, user, filter);
+        }
+    }
+
+    /**
+     * Get a users' saved albums whose album matches filter, evaluated in a single query on the stored markets.
+     * @param user The SpotifyUser account to get SpotifySavedAlbum objects from.
+     * @param filter Predicate on the available markets of the album.
+     * @return List of a users' matching SpotifySavedAlbum objects, may be empty.
+     */
+    public List<SpotifySavedAlbum> getSavedAlbums(@NonNull SpotifyUser user, @NonNull MarketFilter filter) {
+        try (var em = createEntityManager()) {
+            return AvailableMarketsRepository.findSavedAlbums(em, user, filter);
+        }
+    }
+
+    /**
+     * Get count of a users' saved tracks in the database whose track matches filter.
+     * @param user The Spotify User account to get the count of.
+     * @param filter Predicate on the available markets of the track.
+     */
+    public long countSavedTracks(@NonNull SpotifyUser user, @NonNull MarketFilter filter) {
+        try (var em = createEntityManager()) {
+            return AvailableMarketsRepository.countSavedTracks(em, user, filter);
+        }
+    }
+
+    /**
+     * Get count of a users' saved albums in the database whose album matches filter.
+     * @param user The Spotify User account to get the count of.
+     * @param filter Predicate on the available markets of the album.
+     */
+    public long countSavedAlbums(@NonNull SpotifyUser user, @NonNull MarketFilter filter) {
+        try (var em = createEntityManager()) {
+            return AvailableMarketsRepository.countSavedAlbums(em, user, filter);
+        }
+    }
+
+    /**
+     * Get count of a users' saved tracks per market the track is available in, in a single query.
+     * @param user The Spotify User account to get the counts of.
+     * @return Map of market to count, markets without any saved track available are absent.
+     */
+    public Map<CountryCode, Long> countSavedTracksByMarket(@NonNull SpotifyUser user) {
+        try (var em = createEntityManager()) {
+            return AvailableMarketsRepository.countSavedTracksByMarket(em, user);
+        }
+    }
+
+    /**
+     * Get count of a users' saved albums per market the album is available in, in a single query.
+     * @param user The Spotify User account to get the counts of.
+     * @return Map of market to count, markets without any saved album available are absent.
+     */
+    public Map<CountryCode, Long> countSavedAlbumsByMarket(@NonNull SpotifyUser user) {
+        try (var em = createEntityManager()) {
+            return AvailableMarketsRepository.countSavedAlbumsByMarket(em, user);
+        }
+    }
+
     /**
      * Marks a track as removed from a users' saved songs if it is currently a user's saved song. It is not actually
      * removed from the database, rather it is marked as removed (as well as when this is being done) and won't show up
@@ -452,12 +596,7 @@ public class SpotifyObjectRepository {
      * @return a SpotifySavedTrack with updated fields if track is one of the users' saved songs, else returns empty.
      */
     public Optional<SpotifySavedTrack> removeSavedTrack(@NonNull SpotifyTrack track, @NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            var removedTrack = SpotifySavedTrackRepository.removeTrackFromLikedSongs(em, track, user);
-            em.getTransaction().commit();
-            return removedTrack;
-        }
+        return inTransaction(em -> SpotifySavedTrackRepository.removeTrackFromLikedSongs(em, track, user));
     }
 
     /**
@@ -469,12 +608,29 @@ public class SpotifyObjectRepository {
      * @return a SpotifySavedAlbum with updated fields if album is one of the users' saved albums, else returns empty.
      */
     public Optional<SpotifySavedAlbum> removeSavedAlbum(@NonNull SpotifyAlbum album, @NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            var removedAlbum = SpotifySavedAlbumRepository.removeAlbumFromSavedAlbums(em, album, user);
-            em.getTransaction().commit();
-            return removedAlbum;
-        }
+        return inTransaction(em -> SpotifySavedAlbumRepository.removeAlbumFromSavedAlbums(em, album, user));
+    }
+
+    /**
+     * Marks every saved song of user that is not in present as removed, in a single transaction with bulk updates
+     * instead of one transaction per removed song.
+     * @param present The SpotifySavedTrack objects that are currently in the users' Liked Songs on Spotify.
+     * @param user    The SpotifyUser account to remove tracks for.
+     * @return count of SpotifySavedTrack objects that have been marked as removed.
+     */
+    public int removeSavedTracksExcept(@NonNull Collection<SpotifySavedTrack> present, @NonNull SpotifyUser user) {
+        return inTransaction(em -> SpotifySavedTrackRepository.markRemovedExcept(em, present, user));
+    }
+
+    /**
+     * Marks every saved album of user that is not in present as removed, in a single transaction with bulk updates
+     * instead of one transaction per removed album.
+     * @param present The SpotifySavedAlbum objects that are currently in the users' saved albums on Spotify.
+     * @param user    The SpotifyUser account to remove albums for.
+     * @return count of SpotifySavedAlbum objects that have been marked as removed.
+     */
+    public int removeSavedAlbumsExcept(@NonNull Collection<SpotifySavedAlbum> present, @NonNull SpotifyUser user) {
+        return inTransaction(em -> SpotifySavedAlbumRepository.markRemovedExcept(em, present, user));
     }
 
     /**
@@ -482,7 +638,7 @@ public class SpotifyObjectRepository {
      * @return Set of Spotify IDs of a users' SpotifySavedTrack objects, may be empty.
      */
     public Set<String> getSavedTrackIds(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var query = SpotifySavedTrackRepository.findTrackIdsByUser(em, user);
             return new HashSet<>(query.getResultList());
         }
@@ -493,7 +649,7 @@ public class SpotifyObjectRepository {
      * @return Set of Spotify IDs of a users' SpotifySavedAlbum objects, may be empty.
      */
     public Set<String> getSavedAlbumIds(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var query = SpotifySavedAlbumRepository.findAlbumIdsByUser(em, user);
             return new HashSet<>(query.getResultList());
         }
@@ -504,7 +660,7 @@ public class SpotifyObjectRepository {
      * @return Set of Spotify IDs of the playlists a user is following, may be empty.
      */
     public Set<String> getFollowedPlaylistIds(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var query = SpotifyPlaylistRepository.findPlaylistIdsByFollowingUser(em, user);
             return new HashSet<>(query.getResultList());
         }
@@ -515,7 +671,7 @@ public class SpotifyObjectRepository {
      * @return Set of Spotify IDs of the artists a user is following, may be empty.
      */
     public Set<String> getFollowedArtistIds(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             var query = SpotifyArtistRepository.findArtistIdsByFollowingUser(em, user);
             return new HashSet<>(query.getResultList());
         }
@@ -523,7 +679,7 @@ public class SpotifyObjectRepository {
 
     /** Get set of playlists a user is following. */
     public Set<SpotifyPlaylist> getFollowedPlaylists(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             em.getTransaction().begin();
             return SpotifyUserRepository.getFollowedPlaylists(em, user);
         }
@@ -531,25 +687,25 @@ public class SpotifyObjectRepository {
 
     /** Add playlists a user is following. */
     public void followPlaylists(@NonNull List<SpotifyPlaylist> playlists, @NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            SpotifyUserRepository.followPlaylists(em, playlists, user);
-            em.getTransaction().commit();
-        }
+        runInTransaction(em -> SpotifyUserRepository.followPlaylists(em, playlists, user));
     }
 
     /** Remove playlists a user is following. */
     public void unfollowPlaylists(@NonNull List<SpotifyPlaylist> playlists, @NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            SpotifyUserRepository.unfollowPlaylists(em, playlists, user);
-            em.getTransaction().commit();
-        }
+        runInTransaction(em -> SpotifyUserRepository.unfollowPlaylists(em, playlists, user));
+    }
+
+    /**
+     * Make playlists the exact set of playlists a user is following.
+     * @return playlists the user no longer follows.
+     */
+    public Set<SpotifyPlaylist> syncFollowedPlaylists(@NonNull List<SpotifyPlaylist> playlists, @NonNull SpotifyUser user) {
+        return inTransaction(em -> SpotifyUserRepository.syncFollowedPlaylists(em, playlists, user));
     }
 
     /** Get set of artists a user is following. */
     public Set<SpotifyArtist> getFollowedArtists(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             em.getTransaction().begin();
             return SpotifyUserRepository.getFollowedArtists(em, user);
         }
@@ -557,32 +713,32 @@ public class SpotifyObjectRepository {
 
     /** Add artists a user is following. */
     public void followArtists(@NonNull List<SpotifyArtist> artists, @NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            SpotifyUserRepository.followArtists(em, artists, user);
-            em.getTransaction().commit();
-        }
+        runInTransaction(em -> SpotifyUserRepository.followArtists(em, artists, user));
     }
 
     /** Remove artists a user is following. */
     public void unfollowArtists(@NonNull List<SpotifyArtist> artists, @NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            SpotifyUserRepository.unfollowArtists(em, artists, user);
-            em.getTransaction().commit();
-        }
+        runInTransaction(em -> SpotifyUserRepository.unfollowArtists(em, artists, user));
+    }
+
+    /**
+     * Make artists the exact set of artists a user is following.
+     * @return artists the user no longer follows.
+     */
+    public Set<SpotifyArtist> syncFollowedArtists(@NonNull List<SpotifyArtist> artists, @NonNull SpotifyUser user) {
+        return inTransaction(em -> SpotifyUserRepository.syncFollowedArtists(em, artists, user));
     }
 
     /** Get playlists owned by a user. */
     public Set<SpotifyPlaylist> getOwnedPlaylists(@NonNull SpotifyUser user) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             return SpotifyUserRepository.getOwnedPlaylists(em, user);
         }
     }
 
     /** Retrieve all SpotifyPlaylist objects from the database. */
     public List<SpotifyPlaylist> findAllPlaylists() {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             return SpotifyPlaylistRepository.findAll(em);
         }
     }
@@ -592,7 +748,7 @@ public class SpotifyObjectRepository {
      * @return List of SpotifyPlaylistItem objects.
      */
     public List<SpotifyPlaylistItem> getPlaylistItems(@NonNull SpotifyPlaylist playlist) {
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             return SpotifyPlaylistItemRepository.findByPlaylist(em, playlist);
         }
     }
@@ -605,12 +761,7 @@ public class SpotifyObjectRepository {
      * AbstractModelObject.
      */
     public SpotifyGenre persist(@NonNull String genreName) {
-        try (var em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            var persistedGenre = SpotifyGenreRepository.persist(em, genreName);
-            em.getTransaction().commit();
-            return persistedGenre;
-        }
+        return inTransaction(em -> SpotifyGenreRepository.persist(em, genreName));
     }
 
     /**
@@ -631,16 +782,16 @@ public class SpotifyObjectRepository {
      */
     public SpotifyID persist(@NonNull SpotifyID newID) {
         if (newID.getId().isBlank()) throw new IllegalArgumentException("ID value in SpotifyID should not be blank.");
-        try (var em = emf.createEntityManager()) {
+        try (var em = createEntityManager()) {
             try {
                 var foundId = em.find(SpotifyID.class, newID.getId());
                 if (foundId == null) throw new NullPointerException();
                 else return foundId;
             } catch (IllegalArgumentException | NullPointerException e) {
-                em.getTransaction().begin();
-                em.persist(newID);
-                em.getTransaction().commit();
-                return newID;
+                return inTransaction(writer -> {
+                    writer.persist(newID);
+                    return newID;
+                });
             }
         }
     }
@@ -769,15 +920,13 @@ public class SpotifyObjectRepository {
      * @return Set of SpotifyGenre objects.
      */
     public Set<SpotifyGenre> persist(@NonNull String[] genreNames) {
-        try (var em = emf.createEntityManager()) {
+        return inTransaction(em -> {
             Set<SpotifyGenre> spotifyGenreSet = new HashSet<>();
-            em.getTransaction().begin();
             for (var genreName : genreNames) {
                 spotifyGenreSet.add(SpotifyGenreRepository.persist(em, genreName));
             }
-            em.getTransaction().commit();
             return spotifyGenreSet;
-        }
+        });
     }
 
     /**
@@ -818,7 +967,7 @@ public class SpotifyObjectRepository {
      * @return List of SpotifySavedTrack objects.
      */
     public List<SpotifySavedTrack> persist(@NonNull SavedTrack[] tracks, @NonNull SpotifyUser user) {
-        return persistAbstractModelsWithIdentifier(tracks, new ArrayList<>(), user, SpotifySavedTrackRepository::persist);
+        return inTransaction(em -> SpotifySavedTrackRepository.persist(em, tracks, user));
     }
 
     /**
@@ -906,13 +1055,109 @@ public class SpotifyObjectRepository {
         return persistAbstractModelsWithIdentifier(apiTracks, new ArrayList<>(), playlist, SpotifyPlaylistItemRepository::persist);
     }
 
+    /**
+     * Make apiTracks the exact, ordered items of playlist, only the items that are inserted, removed or moved are
+     * written. Items stored without a position are renumbered on the first sync.
+     * @param apiTracks Every PlaylistTrack of the playlist in order, generated by the spotify-web-api.
+     * @return count of the items written per kind of change.
+     */
+    public PlaylistItemChanges syncPlaylistItems(@NonNull List<PlaylistTrack> apiTracks,
+                                                 @NonNull SpotifyPlaylist playlist) {
+        return inTransaction(em -> SpotifyPlaylistItemRepository.sync(em, apiTracks, playlist));
+    }
+
+    /** @return amount and total duration of the saved tracks of user, computed without loading them. */
+    public LibraryDuration getLibraryDuration(@NonNull SpotifyUser user) {
+        try (var em = createEntityManager()) {
+            return LibraryStatisticsRepository.duration(em, user);
+        }
+    }
+
+    /** @return amount and total duration of the tracks user saved after from, computed without loading them. */
+    public LibraryDuration getLibraryDurationAddedAfter(@NonNull SpotifyUser user, @NonNull ZonedDateTime from) {
+        try (var em = createEntityManager()) {
+            return LibraryStatisticsRepository.durationAddedAfter(em, user, from);
+        }
+    }
+
+    /** @return the limit artists with the most saved tracks of user, most saved first. */
+    public List<NamedCount> countSavedTracksByArtist(@NonNull SpotifyUser user, final int limit) {
+        try (var em = createEntityManager()) {
+            return LibraryStatisticsRepository.countByArtist(em, user, limit);
+        }
+    }
+
+    /** @return the limit albums with the most saved tracks of user, most saved first. */
+    public List<NamedCount> countSavedTracksByAlbum(@NonNull SpotifyUser user, final int limit) {
+        try (var em = createEntityManager()) {
+            return LibraryStatisticsRepository.countByAlbum(em, user, limit);
+        }
+    }
+
+    /**
+     * Genres are stored per artist, a saved track counts once for every distinct genre of its artists.
+     * @return the limit genres with the most saved tracks of user, most saved first.
+     */
+    public List<NamedCount> countSavedTracksByGenre(@NonNull SpotifyUser user, final int limit) {
+        try (var em = createEntityManager()) {
+            return LibraryStatisticsRepository.countByGenre(em, user, limit);
+        }
+    }
+
+    /** @return amount of saved tracks of user per release year of their album, ascending, unknown years are absent. */
+    public Map<Integer, Long> countSavedTracksByReleaseYear(@NonNull SpotifyUser user) {
+        try (var em = createEntityManager()) {
+            return LibraryStatisticsRepository.countByReleaseYear(em, user);
+        }
+    }
+
+    /** @return amount of saved tracks of user per explicit flag, tracks without a stored flag are absent. */
+    public Map<Boolean, Long> countSavedTracksByExplicit(@NonNull SpotifyUser user) {
+        try (var em = createEntityManager()) {
+            return LibraryStatisticsRepository.countByExplicit(em, user);
+        }
+    }
+
+    /** @return cached totals of the library of user as of the last refresh, empty if never refreshed. */
+    public Optional<LibrarySummary> getLibrarySummary(@NonNull SpotifyUser user) {
+        try (var em = createEntityManager()) {
+            return LibraryStatisticsRepository.findSummary(em, user);
+        }
+    }
+
+    /** Recompute the cached totals of the library of user, should be called once a backup has completed. */
+    public LibrarySummary refreshLibrarySummary(@NonNull SpotifyUser user) {
+        return inTransaction(em -> LibraryStatisticsRepository.refreshSummary(em, user));
+    }
+
+    /**
+     * Get the backup progress journal of user.
+     * @return BackupCheckpoint if a backup of user has been started and not yet completed.
+     */
+    public Optional<BackupCheckpoint> getBackupCheckpoint(@NonNull SpotifyUser user) {
+        try (var em = createEntityManager()) {
+            return BackupCheckpointRepository.find(em, user);
+        }
+    }
+
+    /**
+     * Record that all pages of phase before the given position have been committed for user.
+     * @param pageOffset Offset of the first page still to be requested, 0 if not applicable.
+     * @param pageCursor Cursor to request the first page still to be requested, null if not applicable.
+     */
+    public BackupCheckpoint saveBackupCheckpoint(@NonNull SpotifyUser user, @NonNull BackupPhase phase,
+                                                 final int pageOffset, final String pageCursor) {
+        return inTransaction(em -> BackupCheckpointRepository.save(em, user, phase, pageOffset, pageCursor));
+    }
+
+    /** Remove the backup progress journal of user, should be called once a backup has completed. */
+    public void clearBackupCheckpoint(@NonNull SpotifyUser user) {
+        runInTransaction(em -> BackupCheckpointRepository.delete(em, user));
+    }
+
     /** Deletes all PlaylistItems belonging to specified playlist in the database. */
     public void deletePlaylistItems(@NonNull SpotifyPlaylist playlist) {
-        try (var em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            SpotifyPlaylistItemRepository.deleteByPlaylist(em, playlist);
-            em.getTransaction().commit();
-        }
+        runInTransaction(em -> SpotifyPlaylistItemRepository.deleteByPlaylist(em, playlist));
     }
 
     /**
@@ -923,11 +1168,6 @@ public class SpotifyObjectRepository {
      * @apiNote Method doesn't update SpotifyPlaylistItems associated with the playlist.
      */
     public Optional<SpotifyPlaylist> update(@NonNull Playlist apiPlaylist) {
-        try (var em = emf.createEntityManager()) {
-            em.getTransaction().begin();
-            var updatedPlaylist = SpotifyPlaylistRepository.update(em, apiPlaylist);
-            em.getTransaction().commit();
-            return updatedPlaylist;
-        }
+        return inTransaction(em -> SpotifyPlaylistRepository.update(em, apiPlaylist));
     }
 }
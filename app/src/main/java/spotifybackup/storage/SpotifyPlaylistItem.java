@@ -12,6 +12,8 @@ import java.util.Optional;
 @NoArgsConstructor
 @Entity
 public final class SpotifyPlaylistItem extends SpotifyObject {
+    static final long POSITION_GAP = 1L << 16;
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     private long id;
@@ -32,6 +34,13 @@ public final class SpotifyPlaylistItem extends SpotifyObject {
 
     private ZonedDateTime dateAdded;
 
+    /**
+     * Sort key of the item within its playlist, spaced POSITION_GAP apart so an item can be inserted between two others
+     * without moving them. Null for items stored before playlists were synced by position.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private Long position;
+
     public Optional<SpotifyUser> getAddedBy() {
         return Optional.ofNullable(addedBy);
     }
@@ -39,4 +48,8 @@ public final class SpotifyPlaylistItem extends SpotifyObject {
     public Optional<ZonedDateTime> getDateAdded() {
         return Optional.ofNullable(dateAdded);
     }
+
+    public Optional<Long> getPosition() {
+        return Optional.ofNullable(position);
+    }
 }
@@ -1,7 +1,7 @@
 package spotifybackup.storage;
 
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.criteria.CriteriaDelete;
+import jakarta.persistence.criteria.JoinType;
 import lombok.NonNull;
 import org.hibernate.query.criteria.CriteriaDefinition;
 import se.michaelthelin.spotify.enums.ModelObjectType;
@@ -9,12 +9,14 @@ import se.michaelthelin.spotify.model_objects.specification.PlaylistTrack;
 import se.michaelthelin.spotify.model_objects.specification.Track;
 import spotifybackup.storage.exception.ConstructorUsageException;
 
+import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
+import static spotifybackup.storage.SpotifyObject.BULK_CHUNK_SIZE;
 import static spotifybackup.storage.SpotifyObject.ensureTransactionActive;
+import static spotifybackup.storage.SpotifyPlaylistItem.POSITION_GAP;
 
 class SpotifyPlaylistItemRepository {
     /** @apiNote Should not be used, exists to prevent implicit public constructor. */
@@ -22,10 +24,30 @@ class SpotifyPlaylistItemRepository {
         throw new ConstructorUsageException();
     }
 
+    /** @return items of playlist in playlist order, items stored without a position come last. */
     static List<SpotifyPlaylistItem> findByPlaylist(EntityManager em, SpotifyPlaylist playlist) {
         var query = new CriteriaDefinition<>(em, SpotifyPlaylistItem.class) {};
         var root = query.from(SpotifyPlaylistItem.class);
-        query.where(query.equal(root.get(SpotifyPlaylistItem_.playlist), playlist));
+        query.where(query.equal(root.get(SpotifyPlaylistItem_.playlist), playlist))
+                .orderBy(query.asc(root.get(SpotifyPlaylistItem_.position), false),
+                        query.asc(root.get(SpotifyPlaylistItem_.id)));
+        return em.createQuery(query).getResultList();
+    }
+
+    /** Columns of a stored item the diff needs, loading the items themselves would load every track and album too. */
+    private static List<StoredItem> findStoredItems(EntityManager em, SpotifyPlaylist playlist) {
+        var query = new CriteriaDefinition<>(em, StoredItem.class) {};
+        var root = query.from(SpotifyPlaylistItem.class);
+        var addedBy = root.join(SpotifyPlaylistItem_.addedBy, JoinType.LEFT);
+        query.select(query.construct(StoredItem.class,
+                        root.get(SpotifyPlaylistItem_.id),
+                        root.get(SpotifyPlaylistItem_.track).get(SpotifyTrack_.spotifyID).asString(),
+                        addedBy.get(SpotifyUser_.spotifyUserID),
+                        root.get(SpotifyPlaylistItem_.dateAdded),
+                        root.get(SpotifyPlaylistItem_.position)))
+                .where(query.equal(root.get(SpotifyPlaylistItem_.playlist), playlist))
+                .orderBy(query.asc(root.get(SpotifyPlaylistItem_.position), false),
+                        query.asc(root.get(SpotifyPlaylistItem_.id)));
         return em.createQuery(query).getResultList();
     }
 
@@ -93,7 +115,7 @@ class SpotifyPlaylistItemRepository {
         if (playlistItemList.size() == 1) {
             return playlistItemList.getFirst();
         } else if (!playlistItemList.isEmpty()) {
-            throw new IllegalArgumentException("Duplicate playlist item handling not implemented yet.");
+            throw new IllegalArgumentException("Duplicate playlist items can only be stored with sync().");
         } else {
             if (apiPlaylistItem.getTrack().getType() != ModelObjectType.TRACK) throw new IllegalArgumentException(
                     apiPlaylistItem.getTrack().getType() + " storage not implemented yet."
@@ -111,6 +133,162 @@ class SpotifyPlaylistItemRepository {
         }
     }
 
+    /**
+     * Make apiPlaylistItems the exact, ordered items of playlist. The stored items are diffed against apiPlaylistItems
+     * with SequenceDiff, only items that are inserted, removed or whose position changes are written. Stored items
+     * outside the common subsequence are reused for an equal item elsewhere in the playlist, which turns a moved item
+     * into a single position update.
+     * @param apiPlaylistItems Every PlaylistTrack of the playlist in order, generated by the spotify-web-api.
+     * @param playlist         SpotifyPlaylist to which the items belong.
+     */
+    static PlaylistItemChanges sync(EntityManager em, @NonNull List<PlaylistTrack> apiPlaylistItems,
+                                    @NonNull SpotifyPlaylist playlist) {
+        ensureTransactionActive.accept(em);
+        for (var apiPlaylistItem : apiPlaylistItems) {
+            if (apiPlaylistItem.getTrack().getType() != ModelObjectType.TRACK) throw new IllegalArgumentException(
+                    apiPlaylistItem.getTrack().getType() + " storage not implemented yet."
+            );
+        }
+        final var stored = findStoredItems(em, playlist);
+        final var keys = apiPlaylistItems.stream().map(ItemKey::of).toList();
+        final var matches = SequenceDiff.match(stored.stream().map(StoredItem::key).toList(), keys);
+        final var positions = positions(stored, matches);
+        final var isMatched = new boolean[stored.size()];
+        for (int match : matches) if (match != -1) isMatched[match] = true;
+        final Map<ItemKey, Deque<StoredItem>> unmatched = new HashMap<>();
+        for (int i = 0; i < stored.size(); i++) {
+            if (isMatched[i]) continue;
+            unmatched.computeIfAbsent(stored.get(i).key(), k -> new ArrayDeque<>()).add(stored.get(i));
+        }
+        final List<Integer> inserted = new ArrayList<>();
+        final Map<Long, Long> moved = new LinkedHashMap<>();
+        for (int j = 0; j < matches.length; j++) {
+            final var item = matches[j] != -1 ? stored.get(matches[j]) :
+                    unmatched.getOrDefault(keys.get(j), new ArrayDeque<>()).poll();
+            if (item == null) {
+                inserted.add(j);
+            } else if (!Objects.equals(item.position(), positions[j])) {
+                moved.put(item.id(), positions[j]);
+            }
+        }
+        updatePositions(em, moved);
+        final var removedIds = unmatched.values().stream().flatMap(Collection::stream).map(StoredItem::id).toList();
+        deleteByIds(em, removedIds);
+        insert(em, apiPlaylistItems, inserted, positions, playlist);
+        return new PlaylistItemChanges(inserted.size(), removedIds.size(), moved.size());
+    }
+
+    /**
+     * Positions for the items of the synced playlist, matched items keep their stored position and the items between
+     * them are spread evenly over the gap. Every item is renumbered if a gap is too small, or if a stored item has no
+     * position yet.
+     */
+    private static long[] positions(List<StoredItem> stored, int[] matches) {
+        final var positions = new long[matches.length];
+        if (stored.stream().anyMatch(item -> item.position() == null)) return renumber(positions);
+        long previous = 0;
+        int runStart = 0;
+        for (int j = 0; j <= matches.length; j++) {
+            if (j < matches.length && matches[j] == -1) continue;
+            final int runLength = j - runStart;
+            final long next = j < matches.length ?
+                    stored.get(matches[j]).position() : previous + (runLength + 1) * POSITION_GAP;
+            final long step = (next - previous) / (runLength + 1);
+            if (step == 0) return renumber(positions);
+            for (int i = 0; i < runLength; i++) positions[runStart + i] = previous + step * (i + 1);
+            if (j < matches.length) positions[j] = next;
+            previous = next;
+            runStart = j + 1;
+        }
+        return positions;
+    }
+
+    private static long[] renumber(long[] positions) {
+        for (int j = 0; j < positions.length; j++) positions[j] = (j + 1) * POSITION_GAP;
+        return positions;
+    }
+
+    /**
+     * Set the position of the items by id, a single UPDATE with a CASE on the id per BULK_CHUNK_SIZE items, so a
+     * reordered playlist costs a few statements however many items moved.
+     */
+    private static void updatePositions(EntityManager em, Map<Long, Long> positions) {
+        final var ids = List.copyOf(positions.keySet());
+        var cb = em.getCriteriaBuilder();
+        for (int i = 0; i < ids.size(); i += BULK_CHUNK_SIZE) {
+            final var chunk = ids.subList(i, Math.min(i + BULK_CHUNK_SIZE, ids.size()));
+            var update = cb.createCriteriaUpdate(SpotifyPlaylistItem.class);
+            var root = update.from(SpotifyPlaylistItem.class);
+            var position = cb.<Long, Long>selectCase(root.get(SpotifyPlaylistItem_.id));
+            for (var id : chunk) position = position.when(id, positions.get(id));
+            update.set(root.get(SpotifyPlaylistItem_.position),
+                            position.otherwise(root.get(SpotifyPlaylistItem_.position)))
+                    .where(root.get(SpotifyPlaylistItem_.id).in(chunk));
+            em.createQuery(update).executeUpdate();
+        }
+    }
+
+    private static void deleteByIds(EntityManager em, List<Long> ids) {
+        var cb = em.getCriteriaBuilder();
+        for (int i = 0; i < ids.size(); i += BULK_CHUNK_SIZE) {
+            var delete = cb.createCriteriaDelete(SpotifyPlaylistItem.class);
+            var root = delete.from(SpotifyPlaylistItem.class);
+            delete.where(root.get(SpotifyPlaylistItem_.id)
+                    .in(ids.subList(i, Math.min(i + BULK_CHUNK_SIZE, ids.size()))));
+            em.createQuery(delete).executeUpdate();
+        }
+    }
+
+    /** Persist the items at the indexes in inserted, their tracks are looked up BULK_CHUNK_SIZE at a time. */
+    private static void insert(EntityManager em, List<PlaylistTrack> apiPlaylistItems, List<Integer> inserted,
+                               long[] positions, SpotifyPlaylist playlist) {
+        final var trackIds = inserted.stream().map(j -> apiPlaylistItems.get(j).getTrack().getId()).distinct().toList();
+        final Map<String, SpotifyTrack> tracks = new HashMap<>();
+        for (int i = 0; i < trackIds.size(); i += BULK_CHUNK_SIZE) {
+            tracks.putAll(SpotifyTrackRepository.findAll(em,
+                    trackIds.subList(i, Math.min(i + BULK_CHUNK_SIZE, trackIds.size()))));
+        }
+        final Map<String, SpotifyUser> users = new HashMap<>();
+        for (int j : inserted) {
+            final var apiPlaylistItem = apiPlaylistItems.get(j);
+            final var apiTrack = (Track) apiPlaylistItem.getTrack();
+            var track = tracks.get(apiTrack.getId());
+            if (track == null || track.getIsSimplified()) {
+                track = SpotifyTrackRepository.persist(em, apiTrack);
+                tracks.put(apiTrack.getId(), track);
+            }
+            final var addedById = ItemKey.addedById(apiPlaylistItem);
+            em.persist(SpotifyPlaylistItem.builder()
+                    .track(track)
+                    .playlist(playlist)
+                    .addedBy(addedById == null ? null : users.computeIfAbsent(addedById,
+                            id -> SpotifyUserRepository.persist(em, apiPlaylistItem.getAddedBy())))
+                    .dateAdded(apiPlaylistItem.getAddedAt() == null ? null :
+                            ZonedDateTime.ofInstant(apiPlaylistItem.getAddedAt().toInstant(), ZoneOffset.UTC))
+                    .position(positions[j])
+                    .build());
+        }
+    }
+
+    /** Identity of an item within its playlist, the same track added twice is two items with equal keys. */
+    record ItemKey(String trackId, String addedBy, Instant dateAdded) {
+        static ItemKey of(PlaylistTrack apiPlaylistItem) {
+            return new ItemKey(apiPlaylistItem.getTrack().getId(), addedById(apiPlaylistItem),
+                    apiPlaylistItem.getAddedAt() == null ? null : apiPlaylistItem.getAddedAt().toInstant());
+        }
+
+        static String addedById(PlaylistTrack apiPlaylistItem) {
+            final var addedBy = apiPlaylistItem.getAddedBy();
+            return addedBy == null || addedBy.getId() == null || addedBy.getId().isBlank() ? null : addedBy.getId();
+        }
+    }
+
+    record StoredItem(long id, ItemKey key, Long position) {
+        StoredItem(long id, String trackId, String addedBy, ZonedDateTime dateAdded, Long position) {
+            this(id, new ItemKey(trackId, addedBy, dateAdded == null ? null : dateAdded.toInstant()), position);
+        }
+    }
+
     static void deleteByPlaylist(EntityManager em, SpotifyPlaylist playlist) {
         ensureTransactionActive.accept(em);
         var cb = em.getCriteriaBuilder();
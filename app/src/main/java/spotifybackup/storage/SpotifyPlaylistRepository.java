@@ -8,8 +8,7 @@ import se.michaelthelin.spotify.model_objects.specification.Playlist;
 import se.michaelthelin.spotify.model_objects.specification.PlaylistSimplified;
 import spotifybackup.storage.exception.ConstructorUsageException;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
@@ -45,6 +44,25 @@ class SpotifyPlaylistRepository {
         return em.createQuery(query).getResultList();
     }
 
+    /**
+     * Find all SpotifyPlaylists matching a collection of Spotify ID string values using a single query.
+     * @param ids Strings containing Spotify IDs.
+     * @return Map of Spotify ID string value to SpotifyPlaylist, ids without a matching SpotifyPlaylist are not in the map.
+     */
+    static Map<String, SpotifyPlaylist> findAll(EntityManager em, @NonNull Collection<String> ids) {
+        final Map<String, SpotifyPlaylist> playlists = new HashMap<>();
+        if (ids.isEmpty()) return playlists;
+        var query = new CriteriaDefinition<>(em, SpotifyPlaylist.class) {};
+        var root = query.from(SpotifyPlaylist.class);
+        query.where(root.get(SpotifyPlaylist_.spotifyID).asString().in(ids));
+        final var cache = SpotifyIDCache.of(em);
+        for (var playlist : em.createQuery(query).getResultList()) {
+            playlists.put(playlist.getSpotifyID().getId(), playlist);
+            cache.put(playlist.getSpotifyID().getId(), SpotifyPlaylist.class, playlist.getId());
+        }
+        return playlists;
+    }
+
     static TypedQuery<String> findPlaylistIdsByFollowingUser(EntityManager em, @NonNull SpotifyUser user) {
         var query = new CriteriaDefinition<>(em, String.class) {};
         var root = query.from(SpotifyPlaylist.class);
@@ -87,11 +105,17 @@ class SpotifyPlaylistRepository {
      * @return SpotifyPlaylist if id matches the spotify_id field in the table and not blank.
      */
     static Optional<SpotifyPlaylist> find(EntityManager em, @NonNull String id) {
-        if (id.isBlank() || em.find(SpotifyID.class, id) == null) return Optional.empty();
+        if (id.isBlank()) return Optional.empty();
+        final var cache = SpotifyIDCache.of(em);
+        final var cached = cache.find(em, SpotifyPlaylist.class, id);
+        if (cached.isPresent()) return cached;
+        else if (em.find(SpotifyID.class, id) == null) return Optional.empty();
         var query = new CriteriaDefinition<>(em, SpotifyPlaylist.class) {};
         var root = query.from(SpotifyPlaylist.class);
         query.where(query.equal(root.get(SpotifyPlaylist_.spotifyID).asString(), id));
-        return getSingleResultOptionally(em, query);
+        final var playlist = getSingleResultOptionally(em, query);
+        playlist.ifPresent(found -> cache.put(id, SpotifyPlaylist.class, found.getId()));
+        return playlist;
     }
 
     /**
@@ -116,6 +140,8 @@ class SpotifyPlaylistRepository {
                     .snapshotId(apiPlaylist.getSnapshotId())
                     .build();
             entityManager.persist(newPlaylist);
+            SpotifyIDCache.of(entityManager).put(newPlaylist.getSpotifyID().getId(), SpotifyPlaylist.class,
+                    newPlaylist.getId());
             return newPlaylist;
         }
     }
@@ -151,6 +177,8 @@ class SpotifyPlaylistRepository {
                     .snapshotId(apiPlaylist.getSnapshotId())
                     .build();
             entityManager.persist(newPlaylist);
+            SpotifyIDCache.of(entityManager).put(newPlaylist.getSpotifyID().getId(), SpotifyPlaylist.class,
+                    newPlaylist.getId());
             setNotSimpleFields.apply(entityManager).accept(apiPlaylist, newPlaylist);
             entityManager.persist(newPlaylist);
             return newPlaylist;
@@ -8,9 +8,12 @@ import se.michaelthelin.spotify.model_objects.specification.SavedAlbum;
 import spotifybackup.storage.exception.ConstructorUsageException;
 
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static java.time.ZoneOffset.UTC;
+import static spotifybackup.storage.SpotifyObject.BULK_CHUNK_SIZE;
 import static spotifybackup.storage.SpotifyObject.ensureTransactionActive;
 import static spotifybackup.storage.SpotifyObject.getSingleResultOptionally;
 
@@ -80,6 +83,38 @@ class SpotifySavedAlbumRepository {
         return spotifySavedAlbum;
     }
 
+    /**
+     * Marks every saved album of user that is not in present as removed, without loading them. The ids of the saved
+     * albums are selected with a single query and the absent ones are updated in bulk, BULK_CHUNK_SIZE at a time.
+     * @return count of SpotifySavedAlbum objects marked as removed.
+     */
+    static int markRemovedExcept(EntityManager em, @NonNull Collection<SpotifySavedAlbum> present,
+                                 @NonNull SpotifyUser user) {
+        ensureTransactionActive.accept(em);
+        final var presentIds = present.stream().map(SpotifySavedAlbum::getId).collect(Collectors.toSet());
+        var select = new CriteriaDefinition<>(em, Long.class) {};
+        var root = select.from(SpotifySavedAlbum.class);
+        final var removedIds = em.createQuery(select
+                        .select(root.get(SpotifySavedAlbum_.id))
+                        .where(select.equal(root.get(SpotifySavedAlbum_.user), user),
+                                select.isFalse(root.get(SpotifySavedAlbum_.isRemoved))))
+                .getResultStream()
+                .filter(id -> !presentIds.contains(id))
+                .toList();
+        final var dateRemoved = ZonedDateTime.now(UTC);
+        var cb = em.getCriteriaBuilder();
+        for (int i = 0; i < removedIds.size(); i += BULK_CHUNK_SIZE) {
+            var update = cb.createCriteriaUpdate(SpotifySavedAlbum.class);
+            var updateRoot = update.from(SpotifySavedAlbum.class);
+            update.set(updateRoot.get(SpotifySavedAlbum_.isRemoved), true)
+                    .set(updateRoot.get(SpotifySavedAlbum_.dateRemoved), dateRemoved)
+                    .where(updateRoot.get(SpotifySavedAlbum_.id)
+                            .in(removedIds.subList(i, Math.min(i + BULK_CHUNK_SIZE, removedIds.size()))));
+            em.createQuery(update).executeUpdate();
+        }
+        return removedIds.size();
+    }
+
     static Optional<SpotifySavedAlbum> find(EntityManager em, @NonNull SpotifyAlbum album, @NonNull SpotifyUser user) {
         var query = new CriteriaDefinition<>(em, SpotifySavedAlbum.class) {};
         var root = query.from(SpotifySavedAlbum.class);
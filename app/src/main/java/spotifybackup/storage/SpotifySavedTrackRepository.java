@@ -8,9 +8,11 @@ import se.michaelthelin.spotify.model_objects.specification.SavedTrack;
 import spotifybackup.storage.exception.ConstructorUsageException;
 
 import java.time.ZonedDateTime;
-import java.util.Optional;
+import java.util.*;
+import java.util.stream.Collectors;
 
 import static java.time.ZoneOffset.UTC;
+import static spotifybackup.storage.SpotifyObject.BULK_CHUNK_SIZE;
 import static spotifybackup.storage.SpotifyObject.ensureTransactionActive;
 import static spotifybackup.storage.SpotifyObject.getSingleResultOptionally;
 
@@ -88,6 +90,38 @@ class SpotifySavedTrackRepository {
         return optionalSavedTrack;
     }
 
+    /**
+     * Marks every saved track of user that is not in present as removed, without loading them. The ids of the saved
+     * tracks are selected with a single query and the absent ones are updated in bulk, BULK_CHUNK_SIZE at a time.
+     * @return count of SpotifySavedTrack objects marked as removed.
+     */
+    static int markRemovedExcept(EntityManager em, @NonNull Collection<SpotifySavedTrack> present,
+                                 @NonNull SpotifyUser user) {
+        ensureTransactionActive.accept(em);
+        final var presentIds = present.stream().map(SpotifySavedTrack::getId).collect(Collectors.toSet());
+        var select = new CriteriaDefinition<>(em, Long.class) {};
+        var root = select.from(SpotifySavedTrack.class);
+        final var removedIds = em.createQuery(select
+                        .select(root.get(SpotifySavedTrack_.id))
+                        .where(select.equal(root.get(SpotifySavedTrack_.user), user),
+                                select.isFalse(root.get(SpotifySavedTrack_.isRemoved))))
+                .getResultStream()
+                .filter(id -> !presentIds.contains(id))
+                .toList();
+        final var dateRemoved = ZonedDateTime.now(UTC);
+        var cb = em.getCriteriaBuilder();
+        for (int i = 0; i < removedIds.size(); i += BULK_CHUNK_SIZE) {
+            var update = cb.createCriteriaUpdate(SpotifySavedTrack.class);
+            var updateRoot = update.from(SpotifySavedTrack.class);
+            update.set(updateRoot.get(SpotifySavedTrack_.isRemoved), true)
+                    .set(updateRoot.get(SpotifySavedTrack_.dateRemoved), dateRemoved)
+                    .where(updateRoot.get(SpotifySavedTrack_.id)
+                            .in(removedIds.subList(i, Math.min(i + BULK_CHUNK_SIZE, removedIds.size()))));
+            em.createQuery(update).executeUpdate();
+        }
+        return removedIds.size();
+    }
+
     static Optional<SpotifySavedTrack> find(EntityManager em, @NonNull SpotifyTrack track, @NonNull SpotifyUser user) {
         var query = new CriteriaDefinition<>(em, SpotifySavedTrack.class) {};
         var root = query.from(SpotifySavedTrack.class);
@@ -96,6 +130,61 @@ class SpotifySavedTrackRepository {
         return getSingleResultOptionally(em, query);
     }
 
+    static Map<Long, SpotifySavedTrack> findAll(EntityManager em, @NonNull Collection<SpotifyTrack> tracks,
+                                                @NonNull SpotifyUser user) {
+        final Map<Long, SpotifySavedTrack> savedTracks = new HashMap<>();
+        if (tracks.isEmpty()) return savedTracks;
+        var query = new CriteriaDefinition<>(em, SpotifySavedTrack.class) {};
+        var root = query.from(SpotifySavedTrack.class);
+        query.where(query.equal(root.get(SpotifySavedTrack_.user), user),
+                root.get(SpotifySavedTrack_.track).get(SpotifyTrack_.id)
+                        .in(tracks.stream().map(SpotifyTrack::getId).toList()));
+        for (var savedTrack : em.createQuery(query).getResultList()) {
+            savedTracks.put(savedTrack.getTrack().getId(), savedTrack);
+        }
+        return savedTracks;
+    }
+
+    /**
+     * Persists a page of SavedTrack objects, the tracks and the existing saved tracks of user are each looked up with a
+     * single query so that only tracks that are new or still simplified go through the per-track persist path.
+     * @return List of SpotifySavedTrack objects in the same order as apiTracks.
+     */
+    static List<SpotifySavedTrack> persist(EntityManager em, @NonNull SavedTrack[] apiTracks,
+                                           @NonNull SpotifyUser user) {
+        ensureTransactionActive.accept(em);
+        final var tracks = SpotifyTrackRepository.findAll(em,
+                Arrays.stream(apiTracks).map(apiTrack -> apiTrack.getTrack().getId()).distinct().toList());
+        for (var apiTrack : apiTracks) {
+            final var track = tracks.get(apiTrack.getTrack().getId());
+            if (track == null || track.getIsSimplified()) {
+                tracks.put(apiTrack.getTrack().getId(), SpotifyTrackRepository.persist(em, apiTrack.getTrack()));
+            }
+        }
+        final var savedTracks = findAll(em, tracks.values(), user);
+        final List<SpotifySavedTrack> persistedTracks = new ArrayList<>(apiTracks.length);
+        for (var apiTrack : apiTracks) {
+            final var track = tracks.get(apiTrack.getTrack().getId());
+            var savedTrack = savedTracks.get(track.getId());
+            if (savedTrack == null) {
+                savedTrack = SpotifySavedTrack.builder()
+                        .track(track)
+                        .user(user)
+                        .dateAdded(apiTrack.getAddedAt().toInstant().atZone(UTC))
+                        .build();
+                em.persist(savedTrack);
+                savedTracks.put(track.getId(), savedTrack);
+            } else if (savedTrack.getIsRemoved()) {
+                // this only occurs if a track is re-added to liked songs
+                savedTrack.setIsRemoved(false);
+                savedTrack.setDateRemoved(null);
+                savedTrack.setDateAdded(apiTrack.getAddedAt().toInstant().atZone(UTC));
+            }
+            persistedTracks.add(savedTrack);
+        }
+        return persistedTracks;
+    }
+
     static SpotifySavedTrack persist(EntityManager em, @NonNull SavedTrack apiTrack, @NonNull SpotifyUser user) {
         ensureTransactionActive.accept(em);
         var track = SpotifyTrackRepository.persist(em, apiTrack.getTrack());
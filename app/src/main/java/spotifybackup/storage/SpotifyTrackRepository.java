@@ -7,7 +7,10 @@ import se.michaelthelin.spotify.model_objects.specification.Track;
 import se.michaelthelin.spotify.model_objects.specification.TrackSimplified;
 import spotifybackup.storage.exception.ConstructorUsageException;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
@@ -65,11 +68,36 @@ class SpotifyTrackRepository {
      * @return SpotifyTrack if id matches the spotify_id field in the table and not blank.
      */
     static Optional<SpotifyTrack> find(EntityManager em, @NonNull String id) {
-        if (id.isBlank() || em.find(SpotifyID.class, id) == null) return Optional.empty();
+        if (id.isBlank()) return Optional.empty();
+        final var cache = SpotifyIDCache.of(em);
+        final var cached = cache.find(em, SpotifyTrack.class, id);
+        if (cached.isPresent()) return cached;
+        else if (em.find(SpotifyID.class, id) == null) return Optional.empty();
         var query = new CriteriaDefinition<>(em, SpotifyTrack.class) {};
         var root = query.from(SpotifyTrack.class);
         query.where(query.equal(root.get(SpotifyTrack_.spotifyID).asString(), id));
-        return getSingleResultOptionally(em, query);
+        final var track = getSingleResultOptionally(em, query);
+        track.ifPresent(found -> cache.put(id, SpotifyTrack.class, found.getId()));
+        return track;
+    }
+
+    /**
+     * Find all SpotifyTracks matching a collection of Spotify ID string values using a single query.
+     * @param ids Strings containing Spotify IDs.
+     * @return Map of Spotify ID string value to SpotifyTrack, ids without a matching SpotifyTrack are not in the map.
+     */
+    static Map<String, SpotifyTrack> findAll(EntityManager em, @NonNull Collection<String> ids) {
+        final Map<String, SpotifyTrack> tracks = new HashMap<>();
+        if (ids.isEmpty()) return tracks;
+        var query = new CriteriaDefinition<>(em, SpotifyTrack.class) {};
+        var root = query.from(SpotifyTrack.class);
+        query.where(root.get(SpotifyTrack_.spotifyID).asString().in(ids));
+        final var cache = SpotifyIDCache.of(em);
+        for (var track : em.createQuery(query).getResultList()) {
+            tracks.put(track.getSpotifyID().getId(), track);
+            cache.put(track.getSpotifyID().getId(), SpotifyTrack.class, track.getId());
+        }
+        return tracks;
     }
 
     /**
@@ -100,6 +128,8 @@ class SpotifyTrackRepository {
                 newTrack.addArtist(SpotifyArtistRepository.persist(entityManager, simplifiedApiArtist));
             }
             entityManager.persist(newTrack);
+            SpotifyIDCache.of(entityManager).put(newTrack.getSpotifyID().getId(), SpotifyTrack.class,
+                    newTrack.getId());
             return newTrack;
         }
     }
@@ -119,7 +149,7 @@ class SpotifyTrackRepository {
                 final var simpleTrack = optionalTrack.get();
                 simpleTrack.setIsSimplified(false);
                 setNotSimpleFields.apply(entityManager).accept(apiTrack, simpleTrack);
-                if (simpleTrack.getAvailableMarkets().getCodes().isEmpty()) {
+                if (simpleTrack.getAvailableMarkets().isEmpty()) {
                     simpleTrack.getAvailableMarkets().addCodes(apiTrack.getAvailableMarkets());
                 }
                 entityManager.persist(simpleTrack);
@@ -142,6 +172,8 @@ class SpotifyTrackRepository {
             }
             setNotSimpleFields.apply(entityManager).accept(apiTrack, newTrack);
             entityManager.persist(newTrack);
+            SpotifyIDCache.of(entityManager).put(newTrack.getSpotifyID().getId(), SpotifyTrack.class,
+                    newTrack.getId());
             return newTrack;
 
         }
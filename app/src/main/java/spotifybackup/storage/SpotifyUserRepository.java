@@ -34,21 +34,38 @@ class SpotifyUserRepository {
     static void followPlaylists(EntityManager em, List<SpotifyPlaylist> playlists, SpotifyUser user) {
         ensureTransactionActive.accept(em);
         SpotifyUser attachedUser = find(em, user.getSpotifyUserID()).orElseThrow();
-        List<SpotifyPlaylist> attachedPlaylists = new ArrayList<>();
-        for (var playlist : playlists)
-            attachedPlaylists.add(SpotifyPlaylistRepository.find(em, playlist.getSpotifyID()).orElseThrow());
-        attachedUser.addFollowedPlaylists(new HashSet<>(attachedPlaylists));
-        em.persist(attachedUser);
+        final var followed = attachedUser.getFollowedPlaylists();
+        attachedUser.addFollowedPlaylists(attachPlaylists(em, playlists).stream()
+                .filter(p -> !followed.contains(p))
+                .collect(Collectors.toSet()));
     }
 
     static void unfollowPlaylists(EntityManager em, List<SpotifyPlaylist> playlists, SpotifyUser user) {
         ensureTransactionActive.accept(em);
         SpotifyUser attachedUser = find(em, user.getSpotifyUserID()).orElseThrow();
-        List<SpotifyPlaylist> attachedPlaylists = new ArrayList<>();
-        for (var playlist : playlists)
-            attachedPlaylists.add(SpotifyPlaylistRepository.find(em, playlist.getSpotifyID()).orElseThrow());
-        attachedUser.removeFollowedPlaylists(new HashSet<>(attachedPlaylists));
-        em.persist(attachedUser);
+        final var followed = attachedUser.getFollowedPlaylists();
+        attachedUser.removeFollowedPlaylists(attachPlaylists(em, playlists).stream()
+                .filter(followed::contains)
+                .collect(Collectors.toSet()));
+    }
+
+    /**
+     * Make playlists the exact set of playlists user is following, only the rows of the join table that differ are
+     * inserted or deleted.
+     * @return playlists user no longer follows.
+     */
+    static Set<SpotifyPlaylist> syncFollowedPlaylists(EntityManager em, List<SpotifyPlaylist> playlists,
+                                                      SpotifyUser user) {
+        ensureTransactionActive.accept(em);
+        SpotifyUser attachedUser = find(em, user.getSpotifyUserID()).orElseThrow();
+        final var followed = attachedUser.getFollowedPlaylists();
+        final var target = attachPlaylists(em, playlists);
+        final var unfollowed = followed.stream().filter(p -> !target.contains(p)).collect(Collectors.toSet());
+        attachedUser.removeFollowedPlaylists(unfollowed);
+        attachedUser.addFollowedPlaylists(target.stream()
+                .filter(p -> !followed.contains(p))
+                .collect(Collectors.toSet()));
+        return unfollowed;
     }
 
     static Set<SpotifyPlaylist> getFollowedPlaylists(EntityManager em, SpotifyUser user) {
@@ -60,21 +77,37 @@ class SpotifyUserRepository {
     static void followArtists(EntityManager em, List<SpotifyArtist> artists, SpotifyUser user) {
         ensureTransactionActive.accept(em);
         SpotifyUser attachedUser = find(em, user.getSpotifyUserID()).orElseThrow();
-        List<SpotifyArtist> attachedArtists = new ArrayList<>();
-        for (var artist : artists)
-            attachedArtists.add(SpotifyArtistRepository.find(em, artist.getSpotifyID()).orElseThrow());
-        attachedUser.addFollowedArtists(new HashSet<>(attachedArtists));
-        em.persist(attachedUser);
+        final var followed = attachedUser.getFollowedArtists();
+        attachedUser.addFollowedArtists(attachArtists(em, artists).stream()
+                .filter(a -> !followed.contains(a))
+                .collect(Collectors.toSet()));
     }
 
     static void unfollowArtists(EntityManager em, List<SpotifyArtist> artists, SpotifyUser user) {
         ensureTransactionActive.accept(em);
         SpotifyUser attachedUser = find(em, user.getSpotifyUserID()).orElseThrow();
-        List<SpotifyArtist> attachedArtists = new ArrayList<>();
-        for (var artist : artists)
-            attachedArtists.add(SpotifyArtistRepository.find(em, artist.getSpotifyID()).orElseThrow());
-        attachedUser.removeFollowedArtists(new HashSet<>(attachedArtists));
-        em.persist(attachedUser);
+        final var followed = attachedUser.getFollowedArtists();
+        attachedUser.removeFollowedArtists(attachArtists(em, artists).stream()
+                .filter(followed::contains)
+                .collect(Collectors.toSet()));
+    }
+
+    /**
+     * Make artists the exact set of artists user is following, only the rows of the join table that differ are
+     * inserted or deleted.
+     * @return artists user no longer follows.
+     */
+    static Set<SpotifyArtist> syncFollowedArtists(EntityManager em, List<SpotifyArtist> artists, SpotifyUser user) {
+        ensureTransactionActive.accept(em);
+        SpotifyUser attachedUser = find(em, user.getSpotifyUserID()).orElseThrow();
+        final var followed = attachedUser.getFollowedArtists();
+        final var target = attachArtists(em, artists);
+        final var unfollowed = followed.stream().filter(a -> !target.contains(a)).collect(Collectors.toSet());
+        attachedUser.removeFollowedArtists(unfollowed);
+        attachedUser.addFollowedArtists(target.stream()
+                .filter(a -> !followed.contains(a))
+                .collect(Collectors.toSet()));
+        return unfollowed;
     }
 
     static Set<SpotifyArtist> getFollowedArtists(EntityManager em, SpotifyUser user) {
@@ -83,6 +116,22 @@ class SpotifyUserRepository {
         return attachedUser.getFollowedArtists();
     }
 
+    /** @throws NoSuchElementException if any of the playlists is not stored in the database. */
+    private static Set<SpotifyPlaylist> attachPlaylists(EntityManager em, List<SpotifyPlaylist> playlists) {
+        final var ids = playlists.stream().map(p -> p.getSpotifyID().getId()).collect(Collectors.toSet());
+        final var attached = SpotifyPlaylistRepository.findAll(em, ids);
+        if (attached.size() != ids.size()) throw new NoSuchElementException("Not all playlists are stored.");
+        return new HashSet<>(attached.values());
+    }
+
+    /** @throws NoSuchElementException if any of the artists is not stored in the database. */
+    private static Set<SpotifyArtist> attachArtists(EntityManager em, List<SpotifyArtist> artists) {
+        final var ids = artists.stream().map(a -> a.getSpotifyID().getId()).collect(Collectors.toSet());
+        final var attached = SpotifyArtistRepository.findAll(em, ids);
+        if (attached.size() != ids.size()) throw new NoSuchElementException("Not all artists are stored.");
+        return new HashSet<>(attached.values());
+    }
+
     static Set<SpotifyPlaylist> getOwnedPlaylists(EntityManager em, @NonNull SpotifyUser user) {
         var query = new CriteriaDefinition<>(em, SpotifyPlaylist.class) {};
         var root = query.from(SpotifyPlaylist.class);
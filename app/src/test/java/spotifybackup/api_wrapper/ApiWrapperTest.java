@@ -0,0 +1,76 @@
+package spotifybackup.api_wrapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+import spotifybackup.app.Config;
+import spotifybackup.storage.LibraryGenerator;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIfEnvironmentVariable(named = "EnableMiscTests", matches = "true")
+class ApiWrapperTest {
+    private static final Pattern statePattern = Pattern.compile("state=([^&]*)");
+
+    private static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Test
+    void ensure_requests_wait_for_login_after_invalid_refresh_token(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        final var generator = new LibraryGenerator(3, new LibraryGenerator.Scale(1, 0, 0, 0, 0));
+        final var redirectUri = URI.create("http://localhost:" + freePort() + "/callback");
+        try (var standIn = new SpotifyApiStandIn.Builder(generator).rejectRefreshTokens().start();
+             var executor = Executors.newVirtualThreadPerTaskExecutor();
+             var client = HttpClient.newHttpClient()) {
+            final var configFile = tempDir.resolve("config.json");
+            Files.writeString(configFile, """
+                    {
+                      "clientId": "stand-in-client",
+                      "clientSecret": "stand-in-secret",
+                      "redirectURI": "%s",
+                      "apiBaseURI": "%s",
+                      "users": [{
+                        "spotifyId": "%s",
+                        "displayName": "Stale display name",
+                        "refreshToken": "revoked-refresh-token"
+                      }]
+                    }""".formatted(redirectUri, standIn.getBaseUri(), generator.user().getId()));
+            final var config = Config.loadFromFile(configFile.toFile());
+            final var account = config.getUsers()[0];
+            final var loginPage = new CompletableFuture<URI>();
+            final var apiWrapper = new ApiWrapper(account, config, 1, null, loginPage::complete);
+
+            // Act
+            final var user = CompletableFuture.supplyAsync(() -> apiWrapper.getCurrentUser().orElseThrow(), executor);
+            Thread.sleep(200);
+            final boolean requestedBeforeLogin = user.isDone();
+            final var state = statePattern.matcher(loginPage.get(1, TimeUnit.SECONDS).getRawQuery()).results()
+                    .findFirst().orElseThrow();
+            client.send(HttpRequest.newBuilder(URI.create(redirectUri + "?code=stand-in-code&state=" +
+                    state.group(1))).build(), HttpResponse.BodyHandlers.discarding());
+
+            // Assert
+            assertFalse(requestedBeforeLogin, "Requests should wait at the token gate until the user logged in.");
+            assertEquals(generator.user().getId(), user.get(10, TimeUnit.SECONDS).getId());
+            // the login stores the profile in the config after the gate opened, wait for it before cleaning up
+            while (!Files.readString(configFile).contains(generator.user().getDisplayName())) Thread.sleep(10);
+        }
+    }
+}
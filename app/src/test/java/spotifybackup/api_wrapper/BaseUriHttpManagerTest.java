@@ -0,0 +1,30 @@
+package spotifybackup.api_wrapper;
+
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@EnabledIfEnvironmentVariable(named = "EnableMiscTests", matches = "true")
+class BaseUriHttpManagerTest {
+    @ParameterizedTest
+    @CsvSource(delimiter = ';', textBlock = """
+            https://api.spotify.com:443/v1/me; http://127.0.0.1:9/v1/me
+            https://accounts.spotify.com:443/api/token; http://127.0.0.1:9/api/token
+            https://api.spotify.com:443/v1/tracks?ids=a%2Cb,c; http://127.0.0.1:9/v1/tracks?ids=a%2Cb,c
+            https://a.b/v1/playlists/x?fields=tracks(total); http://127.0.0.1:9/v1/playlists/x?fields=tracks(total)
+            """)
+    void ensure_requests_are_sent_to_base_uri(final String requestUri, final String expected) {
+        // Arrange
+        final var httpManager = new BaseUriHttpManager(URI.create("http://127.0.0.1:9"));
+
+        // Act
+        final var rewritten = httpManager.rewrite(URI.create(requestUri));
+
+        // Assert
+        assertEquals(URI.create(expected), rewritten);
+    }
+}
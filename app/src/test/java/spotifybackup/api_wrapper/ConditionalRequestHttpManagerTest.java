@@ -0,0 +1,187 @@
+package spotifybackup.api_wrapper;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.core5.http.Header;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+import se.michaelthelin.spotify.SpotifyHttpManager;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIfEnvironmentVariable(named = "EnableMiscTests", matches = "true")
+class ConditionalRequestHttpManagerTest {
+    private final Map<String, String> bodies = new ConcurrentHashMap<>();
+    private final AtomicInteger notModified = new AtomicInteger();
+    @TempDir
+    Path cacheDir;
+    private HttpServer server;
+    private ConditionalRequestHttpManager httpManager;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            final var path = exchange.getRequestURI().getPath();
+            if (path.equals("/limited")) {
+                exchange.getResponseHeaders().set("Retry-After", "3");
+                respond(exchange, 429,
+                        "{\"error\":{\"status\":429,\"message\":\"API rate limit exceeded\"}}");
+                return;
+            }
+            if (path.equals("/gone")) {
+                respond(exchange, 410, "{\"error\":{\"status\":410,\"message\":\"Gone\"}}");
+                return;
+            }
+            if (path.equals("/unconditional") && exchange.getRequestHeaders().getFirst("Cache-Control") == null) {
+                // answered like a cache in between that holds a response the client doesn't have
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            final var body = bodies.get(path);
+            final var etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                respond(exchange, 200, body);
+            }
+        });
+        server.start();
+        httpManager = new ConditionalRequestHttpManager(cacheDir.toFile(), new SpotifyHttpManager.Builder().build(),
+                Duration.ofSeconds(5), Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, final int status, String body) throws IOException {
+        final var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path);
+    }
+
+    @Test
+    void ensure_only_committed_responses_are_revalidated() throws Exception {
+        // Arrange
+        bodies.put("/page", "{\"items\":[1]}");
+
+        // Act
+        final var first = httpManager.get(uri("/page"), new Header[0]);
+        final var uncommitted = httpManager.get(uri("/page"), new Header[0]);
+        final boolean uncommittedNotModified = httpManager.takeNotModified();
+        httpManager.commit();
+        final var committed = httpManager.get(uri("/page"), new Header[0]);
+        final boolean committedNotModified = httpManager.takeNotModified();
+
+        // Assert
+        assertEquals(first, uncommitted);
+        assertFalse(uncommittedNotModified);
+        assertEquals(first, committed);
+        assertTrue(committedNotModified);
+        assertFalse(httpManager.takeNotModified(), "Flag should be cleared once taken.");
+        assertEquals(1, notModified.get());
+    }
+
+    @Test
+    void ensure_changed_response_replaces_stored_one() throws Exception {
+        // Arrange
+        bodies.put("/page", "{\"items\":[1]}");
+        httpManager.get(uri("/page"), new Header[0]);
+        httpManager.commit();
+        bodies.put("/page", "{\"items\":[1,2]}");
+
+        // Act
+        final var changed = httpManager.get(uri("/page"), new Header[0]);
+        final boolean changedNotModified = httpManager.takeNotModified();
+        httpManager.commit();
+        final var revalidated = httpManager.get(uri("/page"), new Header[0]);
+
+        // Assert
+        assertEquals("{\"items\":[1,2]}", changed);
+        assertFalse(changedNotModified);
+        assertEquals("{\"items\":[1,2]}", revalidated);
+        assertTrue(httpManager.takeNotModified());
+    }
+
+    @Test
+    void ensure_commit_removes_responses_not_requested_since_last_commit() throws Exception {
+        // Arrange
+        bodies.put("/a", "{\"a\":1}");
+        bodies.put("/b", "{\"b\":1}");
+        httpManager.get(uri("/a"), new Header[0]);
+        httpManager.commit();
+
+        // Act
+        httpManager.get(uri("/b"), new Header[0]);
+        httpManager.commit();
+
+        // Assert
+        try (var files = Files.list(cacheDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void ensure_rate_limit_is_thrown_like_spotify_http_manager() {
+        // Act
+        final var exception = assertThrows(TooManyRequestsException.class,
+                () -> httpManager.get(uri("/limited"), new Header[0]));
+
+        // Assert
+        assertEquals(3, exception.getRetryAfter());
+        assertEquals("API rate limit exceeded", exception.getMessage());
+    }
+
+    @Test
+    void ensure_unmapped_error_status_throws() {
+        // Act
+        final var exception = assertThrows(SpotifyWebApiException.class,
+                () -> httpManager.get(uri("/gone"), new Header[0]));
+
+        // Assert
+        assertEquals("Gone", exception.getMessage());
+    }
+
+    @Test
+    void ensure_not_modified_without_stored_response_is_requested_again() throws Exception {
+        // Arrange
+        bodies.put("/unconditional", "{\"items\":[1]}");
+
+        // Act
+        final var body = httpManager.get(uri("/unconditional"), new Header[0]);
+
+        // Assert
+        assertEquals("{\"items\":[1]}", body);
+        assertFalse(httpManager.takeNotModified());
+    }
+}
@@ -0,0 +1,60 @@
+package spotifybackup.api_wrapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@EnabledIfEnvironmentVariable(named = "EnableMiscTests", matches = "true")
+class LatencyHistogramTest {
+    private static long nanos(final long ms) {
+        return Duration.ofMillis(ms).toNanos();
+    }
+
+    @Test
+    void ensure_latencies_are_counted_in_bucket_with_inclusive_upper_bound() {
+        // Arrange
+        final var histogram = new LatencyHistogram();
+
+        // Act
+        histogram.record(nanos(1));
+        histogram.record(nanos(5));
+        histogram.record(nanos(5) + 1);
+        histogram.record(nanos(60_000));
+        final var snapshot = histogram.snapshot();
+
+        // Assert
+        final var expected = new long[LatencyHistogram.BUCKET_BOUNDS_MS.length + 1];
+        expected[0] = 2;
+        expected[1] = 1;
+        expected[expected.length - 1] = 1;
+        assertArrayEquals(expected, snapshot.counts());
+        assertEquals(4, snapshot.count());
+        assertEquals(Duration.ofMillis(60_011).plusNanos(1), snapshot.sum());
+        assertEquals(5, snapshot.quantileUpperBoundMs(0.5));
+        assertEquals(10, snapshot.quantileUpperBoundMs(0.75));
+        assertEquals(-1, snapshot.quantileUpperBoundMs(1));
+    }
+
+    @Test
+    void ensure_snapshot_difference_only_contains_later_latencies() {
+        // Arrange
+        final var histogram = new LatencyHistogram();
+        histogram.record(nanos(3));
+        final var earlier = histogram.snapshot();
+        histogram.record(nanos(200));
+        histogram.record(nanos(300));
+
+        // Act
+        final var difference = histogram.snapshot().minus(earlier);
+
+        // Assert
+        assertEquals(2, difference.count());
+        assertEquals(Duration.ofMillis(500), difference.sum());
+        assertEquals(250, difference.quantileUpperBoundMs(0.5));
+        assertEquals(500, difference.quantileUpperBoundMs(0.95));
+    }
+}
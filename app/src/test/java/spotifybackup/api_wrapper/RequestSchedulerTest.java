@@ -0,0 +1,114 @@
+package spotifybackup.api_wrapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIfEnvironmentVariable(named = "EnableMiscTests", matches = "true")
+class RequestSchedulerTest {
+    @Test
+    void ensure_concurrency_limit_is_respected() throws Exception {
+        // Arrange
+        final int concurrency = 3;
+        final var scheduler = new RequestScheduler(concurrency, 1000);
+        final var inFlight = new AtomicInteger(0);
+        final var maxInFlight = new AtomicInteger(0);
+        final List<Future<Integer>> results = new ArrayList<>();
+
+        // Act
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 20; i++) {
+                final int value = i;
+                results.add(executor.submit(() -> scheduler.execute(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    inFlight.decrementAndGet();
+                    return value;
+                })));
+            }
+        }
+
+        // Assert
+        for (int i = 0; i < results.size(); i++) assertEquals(i, results.get(i).get());
+        assertTrue(maxInFlight.get() <= concurrency);
+        assertTrue(maxInFlight.get() > 1, "Requests should be able to run concurrently.");
+    }
+
+    @Test
+    void ensure_too_many_requests_lowers_rate_and_pauses() throws Exception {
+        // Arrange
+        final var scheduler = new RequestScheduler(2, 8);
+
+        // Act
+        assertThrows(TooManyRequestsException.class, () -> scheduler.execute(() -> {
+            throw new TooManyRequestsException("Too many requests", 1);
+        }));
+        final long start = System.nanoTime();
+        scheduler.execute(() -> 0);
+        final long waited = System.nanoTime() - start;
+
+        // Assert
+        assertEquals(4, scheduler.getRate(), 0.1);
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(900), "Request should wait for Retry-After.");
+    }
+
+    @Test
+    void ensure_closed_token_gate_blocks_requests_until_opened() throws Exception {
+        // Arrange
+        final var scheduler = new RequestScheduler(2, 1000);
+        scheduler.closeTokenGate();
+
+        // Act
+        final var request = CompletableFuture.supplyAsync(() -> {
+            try {
+                return scheduler.execute(() -> "done");
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+        final boolean doneWhileClosed = request.isDone();
+        CompletableFuture.runAsync(scheduler::openTokenGate).get(); // gate can be opened from another thread
+
+        // Assert
+        assertFalse(doneWhileClosed);
+        assertEquals("done", request.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void ensure_opening_open_token_gate_does_nothing() throws Exception {
+        // Arrange
+        final var scheduler = new RequestScheduler(2, 1000);
+        scheduler.closeTokenGate();
+        scheduler.openTokenGate();
+
+        // Act
+        assertDoesNotThrow(scheduler::openTokenGate);
+        scheduler.closeTokenGate();
+        final var request = CompletableFuture.supplyAsync(() -> {
+            try {
+                return scheduler.execute(() -> "done");
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+        final boolean doneWhileClosed = request.isDone();
+        scheduler.openTokenGate();
+
+        // Assert
+        assertFalse(doneWhileClosed, "Gate should close again after being opened twice.");
+        assertEquals("done", request.get(1, TimeUnit.SECONDS));
+    }
+}
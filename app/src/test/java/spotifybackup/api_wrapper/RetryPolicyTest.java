@@ -0,0 +1,68 @@
+package spotifybackup.api_wrapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import se.michaelthelin.spotify.exceptions.detailed.BadGatewayException;
+import se.michaelthelin.spotify.exceptions.detailed.NotFoundException;
+import se.michaelthelin.spotify.exceptions.detailed.ServiceUnavailableException;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIfEnvironmentVariable(named = "EnableMiscTests", matches = "true")
+class RetryPolicyTest {
+    private final RetryPolicy retryPolicy = new RetryPolicy(new RequestScheduler(1, 1000), 4, 1, 5);
+
+    @Test
+    void ensure_transient_failures_are_retried_and_counted() throws Exception {
+        // Arrange
+        final var attempts = new AtomicInteger(0);
+
+        // Act
+        final var result = retryPolicy.execute(() -> "GetEndpointRequest", () -> switch (attempts.incrementAndGet()) {
+            case 1 -> throw new ServiceUnavailableException("Service unavailable");
+            case 2 -> throw new IOException("Connection reset");
+            case 3 -> throw new BadGatewayException("Bad gateway");
+            default -> "ok";
+        });
+
+        // Assert
+        assertEquals("ok", result);
+        assertEquals(4, attempts.get());
+        assertEquals(3L, retryPolicy.getRetryCounts().get("GetEndpointRequest"));
+    }
+
+    @Test
+    void ensure_last_error_is_thrown_after_max_attempts() {
+        // Arrange
+        final var attempts = new AtomicInteger(0);
+
+        // Act
+        assertThrows(ServiceUnavailableException.class, () -> retryPolicy.execute(() -> "GetFailingRequest", () -> {
+            attempts.incrementAndGet();
+            throw new ServiceUnavailableException("Service unavailable");
+        }));
+
+        // Assert
+        assertEquals(4, attempts.get());
+        assertEquals(3L, retryPolicy.getRetryCounts().get("GetFailingRequest"));
+    }
+
+    @Test
+    void ensure_client_errors_are_not_retried() {
+        // Arrange
+        final var attempts = new AtomicInteger(0);
+
+        // Act
+        assertThrows(NotFoundException.class, () -> retryPolicy.execute(() -> "GetMissingRequest", () -> {
+            attempts.incrementAndGet();
+            throw new NotFoundException("Not found");
+        }));
+
+        // Assert
+        assertEquals(1, attempts.get());
+        assertFalse(retryPolicy.getRetryCounts().containsKey("GetMissingRequest"));
+    }
+}
@@ -0,0 +1,349 @@
+package spotifybackup.api_wrapper;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.NonNull;
+import se.michaelthelin.spotify.model_objects.specification.*;
+import spotifybackup.storage.LibraryGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for the Spotify Web API and accounts service on an embedded HttpServer, serving the library of a
+ * LibraryGenerator. A Config with its apiBaseURI set to {@link #getBaseUri()} makes ApiWrapper, and with it a complete
+ * backup, run against the stand-in instead of Spotify, so that backup throughput can be measured offline and
+ * repeatably. Every response can be delayed, every n-th request can be answered with HTTP 429, pages can be made
+ * smaller than requested, refresh tokens can be rejected and Liked Songs can be removed between backups.
+ */
+public class SpotifyApiStandIn implements AutoCloseable {
+    /** Largest page the Spotify Web API serves, larger limits are rejected. */
+    public static final int MAX_PAGE_SIZE = 50;
+    private static final int DEFAULT_LIMIT = 20;
+    private static final Pattern playlistPath = Pattern.compile("/v1/playlists/(?<id>[^/]+)(?<tracks>/tracks)?");
+    private final LibraryGenerator generator;
+    private final Duration latency;
+    private final int rateLimitEvery;
+    private final int retryAfterSeconds;
+    private final int pageSize;
+    private final boolean rejectRefreshTokens;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final String accessToken = UUID.randomUUID().toString();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final Queue<String> requestPaths = new ConcurrentLinkedQueue<>();
+    private final Queue<String> rateLimitedPaths = new ConcurrentLinkedQueue<>();
+    private volatile List<SavedTrack> likedSongs;
+    private final List<SavedAlbum> likedAlbums;
+    private final List<PlaylistSimplified> playlists;
+    private final List<Artist> followedArtists;
+    private final Map<String, Artist> artists = new HashMap<>();
+    private final Map<String, Album> albums = new HashMap<>();
+    private final Map<String, Track> tracks = new HashMap<>();
+    private final Map<String, Integer> playlistIndices = new HashMap<>();
+
+    private SpotifyApiStandIn(Builder builder) throws IOException {
+        generator = builder.generator;
+        latency = builder.latency;
+        rateLimitEvery = builder.rateLimitEvery;
+        retryAfterSeconds = builder.retryAfterSeconds;
+        pageSize = builder.pageSize;
+        rejectRefreshTokens = builder.rejectRefreshTokens;
+        likedSongs = List.of(generator.likedSongs());
+        likedAlbums = List.of(generator.likedAlbums());
+        playlists = List.of(generator.playlists());
+        followedArtists = List.of(generator.followedArtists());
+        for (var artist : generator.artists()) artists.put(artist.getId(), artist);
+        for (var album : generator.albums()) albums.put(album.getId(), album);
+        for (var track : generator.tracks()) tracks.put(track.getId(), track);
+        for (int i = 0; i < playlists.size(); i++) playlistIndices.put(playlists.get(i).getId(), i);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    private static Map<String, String> query(URI uri) {
+        final Map<String, String> parameters = new HashMap<>();
+        if (uri.getRawQuery() == null) return parameters;
+        for (var parameter : uri.getRawQuery().split("&")) {
+            final var keyValue = parameter.split("=", 2);
+            parameters.put(URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8),
+                    keyValue.length > 1 ? URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8) : "");
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, final int status, JsonElement json) throws IOException {
+        final var body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    /** Answer with the ETag of the body like Spotify does, or with HTTP 304 if the client already has that body. */
+    private void respondConditionally(HttpExchange exchange, JsonElement json) throws IOException {
+        final var etag = "\"" + Integer.toHexString(json.toString().hashCode()) + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModifiedCount.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+        } else {
+            respond(exchange, 200, json);
+        }
+    }
+
+    /** @return URI that the scheme, host and port of requests to Spotify are replaced with. */
+    public URI getBaseUri() {
+        final var address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort());
+    }
+
+    /** @return amount of requests received, including those answered with HTTP 429. */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /** @return amount of requests received whose path starts with pathPrefix, including rate limited ones. */
+    public long getRequestCount(@NonNull String pathPrefix) {
+        return requestPaths.stream().filter(path -> path.startsWith(pathPrefix)).count();
+    }
+
+    /** @return amount of requests answered with HTTP 304. */
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    /** @return amount of requests answered with HTTP 429. */
+    public long getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    /** @return amount of requests answered with HTTP 429 whose path starts with pathPrefix. */
+    public long getRateLimitedCount(@NonNull String pathPrefix) {
+        return rateLimitedPaths.stream().filter(path -> path.startsWith(pathPrefix)).count();
+    }
+
+    /** Remove a track from the Liked Songs that are served, like the user unliking it. */
+    public void removeLikedSong(@NonNull String trackId) {
+        likedSongs = likedSongs.stream().filter(savedTrack -> !savedTrack.getTrack().getId().equals(trackId)).toList();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            final long request = requestCount.incrementAndGet();
+            requestPaths.add(exchange.getRequestURI().getPath());
+            if (!latency.isZero()) Thread.sleep(latency);
+            if (rateLimitEvery > 0 && request % rateLimitEvery == 0) {
+                rateLimitedCount.incrementAndGet();
+                rateLimitedPaths.add(exchange.getRequestURI().getPath());
+                exchange.getResponseHeaders().set("Retry-After", Integer.toString(retryAfterSeconds));
+                respond(exchange, 429, SpotifyJson.error(429, "API rate limit exceeded"));
+            } else {
+                respond(exchange, exchange.getRequestURI());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void respond(HttpExchange exchange, URI uri) throws IOException {
+        final var path = uri.getPath();
+        try {
+            if (exchange.getRequestMethod().equals("POST") && path.equals("/api/token")) {
+                final var body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                if (rejectRefreshTokens && body.contains("grant_type=refresh_token")) {
+                    respond(exchange, 400, invalidGrant());
+                } else {
+                    respond(exchange, 200, token());
+                }
+            } else if (!("Bearer " + accessToken).equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                respond(exchange, 401, SpotifyJson.error(401, "Invalid access token"));
+            } else if (exchange.getRequestMethod().equals("GET")) {
+                final var response = get(path, query(uri));
+                if (response.isPresent()) respondConditionally(exchange, response.get());
+                else respond(exchange, 404, SpotifyJson.error(404, "Non existing id"));
+            } else {
+                respond(exchange, 405, SpotifyJson.error(405, "Method not allowed"));
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, SpotifyJson.error(400, e.getMessage()));
+        }
+    }
+
+    private JsonObject token() {
+        final var json = new JsonObject();
+        json.addProperty("access_token", accessToken);
+        json.addProperty("token_type", "Bearer");
+        json.addProperty("scope", "user-read-private user-library-read user-follow-read playlist-read-private " +
+                "playlist-read-collaborative");
+        json.addProperty("expires_in", 3600);
+        json.addProperty("refresh_token", "stand-in-refresh-token");
+        return json;
+    }
+
+    /** @return error of the accounts service for a revoked or unknown refresh token. */
+    private static JsonObject invalidGrant() {
+        final var json = new JsonObject();
+        json.addProperty("error", "invalid_grant");
+        json.addProperty("error_description", "Invalid refresh token");
+        return json;
+    }
+
+    private Optional<JsonElement> get(final String path, Map<String, String> query) {
+        return switch (path) {
+            case "/v1/me" -> Optional.of(SpotifyJson.user(generator.user()));
+            case "/v1/me/tracks" -> Optional.of(page(path, query, likedSongs,
+                    SpotifyJson::savedTrack));
+            case "/v1/me/albums" -> Optional.of(page(path, query, likedAlbums,
+                    SpotifyJson::savedAlbum));
+            case "/v1/me/playlists" -> Optional.of(page(path, query, playlists,
+                    SpotifyJson::playlist));
+            case "/v1/me/following" -> Optional.of(followedArtists(path, query));
+            case "/v1/albums" -> Optional.of(several("albums", query, albums, SpotifyJson::album));
+            case "/v1/artists" -> Optional.of(several("artists", query, artists, SpotifyJson::artist));
+            case "/v1/tracks" -> Optional.of(several("tracks", query, tracks, SpotifyJson::track));
+            default -> playlist(path, query);
+        };
+    }
+
+    private Optional<JsonElement> playlist(final String path, Map<String, String> query) {
+        final var matcher = playlistPath.matcher(path);
+        if (!matcher.matches() || !playlistIndices.containsKey(matcher.group("id"))) return Optional.empty();
+        final int index = playlistIndices.get(matcher.group("id"));
+        final var items = generator.playlistItems(index);
+        if (matcher.group("tracks") != null) {
+            return Optional.of(page(path, query, items, SpotifyJson::playlistTrack));
+        } else {
+            return Optional.of(SpotifyJson.playlistWithoutTracks(playlists.get(index), items.size()));
+        }
+    }
+
+    /** @return requested limit, capped at the page size of the stand-in. */
+    private int limit(Map<String, String> query) {
+        final int limit = Integer.parseInt(query.getOrDefault("limit", Integer.toString(DEFAULT_LIMIT)));
+        if (limit < 1 || limit > MAX_PAGE_SIZE) throw new IllegalArgumentException("Invalid limit");
+        return Math.min(limit, pageSize);
+    }
+
+    private <T> JsonObject page(final String path, Map<String, String> query, List<T> items,
+                                Function<T, JsonElement> toJson) {
+        final int limit = limit(query);
+        final int offset = Integer.parseInt(query.getOrDefault("offset", "0"));
+        final int from = Math.min(offset, items.size());
+        final int to = Math.min(offset + limit, items.size());
+        final String next = to < items.size() ? getBaseUri() + path + "?offset=" + to + "&limit=" + limit : null;
+        return SpotifyJson.paging(items.subList(from, to), toJson, limit, offset, items.size(), next);
+    }
+
+    private JsonObject followedArtists(final String path, Map<String, String> query) {
+        if (!"artist".equalsIgnoreCase(query.get("type"))) throw new IllegalArgumentException("Invalid type");
+        final int limit = limit(query);
+        int from = 0;
+        if (query.containsKey("after")) {
+            while (from < followedArtists.size() && !followedArtists.get(from).getId().equals(query.get("after"))) {
+                from++;
+            }
+            from++;
+        }
+        from = Math.min(from, followedArtists.size());
+        final int to = Math.min(from + limit, followedArtists.size());
+        final var page = followedArtists.subList(from, to);
+        final String after = to < followedArtists.size() ? page.getLast().getId() : null;
+        final String next = after == null ? null :
+                getBaseUri() + path + "?type=artist&after=" + after + "&limit=" + limit;
+        final var json = new JsonObject();
+        json.add("artists", SpotifyJson.pagingCursorbased(page, SpotifyJson::artist, limit, followedArtists.size(),
+                next, after));
+        return json;
+    }
+
+    /** @return object with name holding the objects of the requested ids in order, null for unknown ids. */
+    private <T> JsonObject several(final String name, Map<String, String> query, Map<String, T> objects,
+                                   Function<T, JsonElement> toJson) {
+        final var ids = query.getOrDefault("ids", "");
+        if (ids.isBlank()) throw new IllegalArgumentException("Missing ids");
+        final var json = new JsonObject();
+        json.add(name, SpotifyJson.array(Arrays.stream(ids.split(",")).map(objects::get).toList(), toJson));
+        return json;
+    }
+
+    public static class Builder {
+        private final LibraryGenerator generator;
+        private Duration latency = Duration.ZERO;
+        private int rateLimitEvery = 0;
+        private int retryAfterSeconds = 1;
+        private int pageSize = MAX_PAGE_SIZE;
+        private boolean rejectRefreshTokens = false;
+
+        /** @param generator Library that is served. */
+        public Builder(@NonNull LibraryGenerator generator) {
+            this.generator = generator;
+        }
+
+        /** @param latency Delay before every response. */
+        public Builder latency(@NonNull Duration latency) {
+            if (latency.isNegative()) throw new IllegalArgumentException("Latency can not be negative.");
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * @param every             Every n-th request is answered with HTTP 429, 0 disables rate limiting.
+         * @param retryAfterSeconds Value of the Retry-After header of the HTTP 429 responses.
+         */
+        public Builder rateLimit(final int every, final int retryAfterSeconds) {
+            if (every < 0 || retryAfterSeconds < 0)
+                throw new IllegalArgumentException("Rate limit can not be negative.");
+            this.rateLimitEvery = every;
+            this.retryAfterSeconds = retryAfterSeconds;
+            return this;
+        }
+
+        /** @param pageSize Most items served in a page, pages are smaller than requested if this is smaller. */
+        public Builder pageSize(final int pageSize) {
+            if (pageSize < 1 || pageSize > MAX_PAGE_SIZE)
+                throw new IllegalArgumentException("Page size should be between 1 and " + MAX_PAGE_SIZE + ".");
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /** Answer every token refresh with HTTP 400 Invalid refresh token, only authorization codes are accepted. */
+        public Builder rejectRefreshTokens() {
+            this.rejectRefreshTokens = true;
+            return this;
+        }
+
+        /** @return stand-in listening on a free loopback port. */
+        public SpotifyApiStandIn start() throws IOException {
+            return new SpotifyApiStandIn(this);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package spotifybackup.api_wrapper;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.neovisionaries.i18n.CountryCode;
+import se.michaelthelin.spotify.model_objects.specification.*;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Writes spotify-web-api model objects as the JSON the Spotify Web API responds with, the inverse of the JsonUtil
+ * classes of spotify-web-api. Only the fields that LibraryGenerator fills in are written, absent fields are omitted.
+ */
+class SpotifyJson {
+    private SpotifyJson() {}
+
+    static <T> JsonObject paging(List<T> items, Function<T, JsonElement> toJson, final int limit, final int offset,
+                                 final int total, final String next) {
+        final var json = new JsonObject();
+        json.add("items", array(items, toJson));
+        json.addProperty("limit", limit);
+        json.addProperty("offset", offset);
+        json.addProperty("total", total);
+        json.addProperty("next", next);
+        return json;
+    }
+
+    /** @param after Cursor of the next page, null on the last page. */
+    static <T> JsonObject pagingCursorbased(List<T> items, Function<T, JsonElement> toJson, final int limit,
+                                            final int total, final String next, final String after) {
+        final var json = new JsonObject();
+        json.add("items", array(items, toJson));
+        json.addProperty("limit", limit);
+        json.addProperty("total", total);
+        json.addProperty("next", next);
+        final var cursors = new JsonObject();
+        cursors.addProperty("after", after);
+        json.add("cursors", cursors);
+        return json;
+    }
+
+    static <T> JsonArray array(List<T> items, Function<T, JsonElement> toJson) {
+        final var array = new JsonArray(items.size());
+        for (var item : items) array.add(item == null ? JsonNull.INSTANCE : toJson.apply(item));
+        return array;
+    }
+
+    static JsonObject error(final int status, final String message) {
+        final var error = new JsonObject();
+        error.addProperty("status", status);
+        error.addProperty("message", message);
+        final var json = new JsonObject();
+        json.add("error", error);
+        return json;
+    }
+
+    static JsonObject user(User user) {
+        final var json = new JsonObject();
+        json.addProperty("id", user.getId());
+        json.addProperty("display_name", user.getDisplayName());
+        if (user.getCountry() != null) json.addProperty("country", user.getCountry().getAlpha2());
+        if (user.getProduct() != null) json.addProperty("product", user.getProduct().getType());
+        if (user.getImages() != null) json.add("images", array(List.of(user.getImages()), SpotifyJson::image));
+        json.addProperty("type", user.getType().getType());
+        return json;
+    }
+
+    static JsonObject image(Image image) {
+        final var json = new JsonObject();
+        json.addProperty("url", image.getUrl());
+        json.addProperty("height", image.getHeight());
+        json.addProperty("width", image.getWidth());
+        return json;
+    }
+
+    static JsonObject artist(Artist artist) {
+        final var json = new JsonObject();
+        json.addProperty("id", artist.getId());
+        json.addProperty("name", artist.getName());
+        json.add("genres", strings(artist.getGenres()));
+        json.add("images", array(List.of(artist.getImages()), SpotifyJson::image));
+        json.addProperty("popularity", artist.getPopularity());
+        json.addProperty("type", artist.getType().getType());
+        return json;
+    }
+
+    static JsonObject artist(ArtistSimplified artist) {
+        final var json = new JsonObject();
+        json.addProperty("id", artist.getId());
+        json.addProperty("name", artist.getName());
+        json.addProperty("type", artist.getType().getType());
+        return json;
+    }
+
+    static JsonObject album(AlbumSimplified album) {
+        final var json = new JsonObject();
+        json.addProperty("id", album.getId());
+        json.addProperty("name", album.getName());
+        json.addProperty("album_type", album.getAlbumType().getType());
+        json.add("artists", array(List.of(album.getArtists()), SpotifyJson::artist));
+        json.add("available_markets", markets(album.getAvailableMarkets()));
+        json.addProperty("release_date", album.getReleaseDate());
+        json.addProperty("release_date_precision", album.getReleaseDatePrecision().getPrecision());
+        json.add("images", array(List.of(album.getImages()), SpotifyJson::image));
+        json.addProperty("type", album.getType().getType());
+        return json;
+    }
+
+    static JsonObject album(Album album) {
+        final var json = new JsonObject();
+        json.addProperty("id", album.getId());
+        json.addProperty("name", album.getName());
+        json.addProperty("album_type", album.getAlbumType().getType());
+        json.add("artists", array(List.of(album.getArtists()), SpotifyJson::artist));
+        json.add("available_markets", markets(album.getAvailableMarkets()));
+        json.addProperty("release_date", album.getReleaseDate());
+        json.addProperty("release_date_precision", album.getReleaseDatePrecision().getPrecision());
+        json.add("images", array(List.of(album.getImages()), SpotifyJson::image));
+        json.add("genres", strings(album.getGenres()));
+        json.add("external_ids", externalIds(album.getExternalIds()));
+        final var tracks = album.getTracks();
+        json.add("tracks", paging(List.of(tracks.getItems()), SpotifyJson::track, tracks.getLimit(),
+                tracks.getOffset(), tracks.getTotal(), null));
+        json.addProperty("type", album.getType().getType());
+        return json;
+    }
+
+    static JsonObject track(Track track) {
+        final var json = new JsonObject();
+        json.addProperty("id", track.getId());
+        json.addProperty("name", track.getName());
+        json.add("album", album(track.getAlbum()));
+        json.add("artists", array(List.of(track.getArtists()), SpotifyJson::artist));
+        json.add("available_markets", markets(track.getAvailableMarkets()));
+        json.addProperty("disc_number", track.getDiscNumber());
+        json.addProperty("track_number", track.getTrackNumber());
+        json.addProperty("duration_ms", track.getDurationMs());
+        json.addProperty("explicit", track.getIsExplicit());
+        json.add("external_ids", externalIds(track.getExternalIds()));
+        json.addProperty("popularity", track.getPopularity());
+        json.addProperty("is_local", false);
+        json.addProperty("type", track.getType().getType());
+        return json;
+    }
+
+    static JsonObject track(TrackSimplified track) {
+        final var json = new JsonObject();
+        json.addProperty("id", track.getId());
+        json.addProperty("name", track.getName());
+        json.add("artists", array(List.of(track.getArtists()), SpotifyJson::artist));
+        json.add("available_markets", markets(track.getAvailableMarkets()));
+        json.addProperty("disc_number", track.getDiscNumber());
+        json.addProperty("track_number", track.getTrackNumber());
+        json.addProperty("duration_ms", track.getDurationMs());
+        json.addProperty("explicit", track.getIsExplicit());
+        json.addProperty("type", track.getType().getType());
+        return json;
+    }
+
+    static JsonObject savedTrack(SavedTrack savedTrack) {
+        final var json = new JsonObject();
+        json.addProperty("added_at", date(savedTrack.getAddedAt()));
+        json.add("track", track(savedTrack.getTrack()));
+        return json;
+    }
+
+    static JsonObject savedAlbum(SavedAlbum savedAlbum) {
+        final var json = new JsonObject();
+        json.addProperty("added_at", date(savedAlbum.getAddedAt()));
+        json.add("album", album(savedAlbum.getAlbum()));
+        return json;
+    }
+
+    static JsonObject playlist(PlaylistSimplified playlist) {
+        final var json = new JsonObject();
+        json.addProperty("id", playlist.getId());
+        json.addProperty("name", playlist.getName());
+        json.add("owner", user(playlist.getOwner()));
+        json.addProperty("collaborative", playlist.getIsCollaborative());
+        json.addProperty("public", playlist.getIsPublicAccess());
+        json.addProperty("snapshot_id", playlist.getSnapshotId());
+        final var tracks = new JsonObject();
+        tracks.addProperty("total", playlist.getTracks().getTotal());
+        json.add("tracks", tracks);
+        json.addProperty("type", playlist.getType().getType());
+        return json;
+    }
+
+    /** @return playlist as requested with the fields of ApiWrapper.getPlaylistWithoutTracks(). */
+    static JsonObject playlistWithoutTracks(PlaylistSimplified playlist, final int total) {
+        final var json = playlist(playlist);
+        json.addProperty("description", "");
+        final var followers = new JsonObject();
+        followers.addProperty("total", 0);
+        json.add("followers", followers);
+        json.getAsJsonObject("tracks").addProperty("total", total);
+        return json;
+    }
+
+    static JsonObject playlistTrack(PlaylistTrack playlistTrack) {
+        final var json = new JsonObject();
+        json.addProperty("added_at", date(playlistTrack.getAddedAt()));
+        json.add("added_by", user(playlistTrack.getAddedBy()));
+        json.addProperty("is_local", playlistTrack.getIsLocal());
+        json.add("track", track((Track) playlistTrack.getTrack()));
+        return json;
+    }
+
+    private static String date(Date date) {
+        return date.toInstant().toString();
+    }
+
+    private static JsonArray strings(String[] strings) {
+        final var array = new JsonArray(strings.length);
+        for (var string : strings) array.add(string);
+        return array;
+    }
+
+    private static JsonArray markets(CountryCode[] markets) {
+        final var array = new JsonArray(markets.length);
+        for (var market : markets) array.add(market.getAlpha2());
+        return array;
+    }
+
+    private static JsonObject externalIds(ExternalId externalIds) {
+        final var json = new JsonObject();
+        externalIds.getExternalIds().forEach(json::addProperty);
+        return json;
+    }
+}
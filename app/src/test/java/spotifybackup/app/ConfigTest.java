@@ -15,6 +15,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -209,6 +210,14 @@ class ConfigTest {
               ]
             }
             """,
+            """
+            {
+              "clientId": "sdf77e",
+              "redirectURI": "http://localhost:1234",
+              "apiBaseURI": "",
+              "users": []
+            }
+            """,
     })
     void ensure_blank_or_missing_fields_are_rejected(final String configContents) throws IOException{
         // Arrange
@@ -402,4 +411,52 @@ class ConfigTest {
         final String newConfig = Files.readString(configFile.toPath());
         assertEquals(finalConfigContents, newConfig);
     }
+
+    @Test
+    void ensure_update_writes_config_once_with_cached_access_token() throws IOException {
+        // Arrange
+        final String initialConfigContents = """
+                {
+                  "clientId": "abcdefg",
+                  "redirectURI": "http://localhost:1234",
+                  "users": [
+                    {
+                      "spotifyId": "user1",
+                      "displayName": "User 1",
+                      "refreshToken": "q1w2e3r4t5"
+                    }
+                  ]
+                }
+                """;
+        final var expiresAt = Instant.ofEpochSecond(1_900_000_000L);
+        Files.writeString(configFile.toPath(), initialConfigContents);
+        final var config = Config.loadFromFile(configFile);
+        final var user = config.getUsers()[0];
+
+        // Act
+        final String duringUpdate;
+        {
+            final String[] contents = new String[1];
+            user.update(() -> {
+                user.setRefreshToken("z9x8c7");
+                user.setAccessToken("access-1", expiresAt);
+                try {
+                    contents[0] = Files.readString(configFile.toPath());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            duringUpdate = contents[0];
+        }
+        final var reloaded = Config.loadFromFile(configFile).getUsers()[0];
+
+        // Assert
+        assertEquals(initialConfigContents, duringUpdate, "Config should only be written once update is done.");
+        assertEquals("z9x8c7", reloaded.getRefreshToken().orElseThrow());
+        assertEquals("access-1", reloaded.getAccessToken().orElseThrow());
+        assertEquals(expiresAt, reloaded.getAccessTokenExpiresAt().orElseThrow());
+        try (var files = Files.list(configFile.toPath().getParent())) {
+            assertEquals(List.of(configFile.toPath()), files.toList(), "No temporary files should be left behind.");
+        }
+    }
 }
@@ -0,0 +1,94 @@
+package spotifybackup.app;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIfEnvironmentVariable(named = "EnableMiscTests", matches = "true")
+class DaemonTest {
+    private static final String TOKEN = "secret";
+
+    @Test
+    void ensure_commands_are_performed_until_stopped() throws Exception {
+        // Arrange
+        final var backups = new AtomicInteger();
+        final var daemon = new Daemon(backups::incrementAndGet, Duration.ofHours(1), 0, TOKEN);
+        final var running = CompletableFuture.runAsync(() -> {
+            try {
+                daemon.run();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        // Act
+        final var backupReply = Daemon.send(Daemon.Command.BACKUP, daemon.getPort(), TOKEN);
+        final var statusReply = Daemon.send(Daemon.Command.STATUS, daemon.getPort(), TOKEN);
+        final var stopReply = Daemon.send(Daemon.Command.STOP, daemon.getPort(), TOKEN);
+        running.get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(2, backups.get(), "Scheduled backup on start and the requested backup should be performed.");
+        assertTrue(backupReply.startsWith("last backup succeeded"));
+        assertTrue(statusReply.contains("next backup in"));
+        assertFalse(stopReply.isBlank());
+        assertThrows(IOException.class, () -> Daemon.send(Daemon.Command.STATUS, daemon.getPort(), TOKEN));
+    }
+
+    @Test
+    void ensure_failed_backup_does_not_stop_schedule() throws Exception {
+        // Arrange
+        final var backups = new AtomicInteger();
+        final var daemon = new Daemon(() -> {
+            backups.incrementAndGet();
+            throw new IllegalStateException("network down");
+        }, Duration.ofMillis(10), 0, TOKEN);
+        final var running = CompletableFuture.runAsync(() -> {
+            try {
+                daemon.run();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        // Act
+        while (backups.get() < 3) Thread.sleep(10);
+        final var statusReply = Daemon.send(Daemon.Command.STATUS, daemon.getPort(), TOKEN);
+        Daemon.send(Daemon.Command.STOP, daemon.getPort(), TOKEN);
+        running.get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertTrue(statusReply.contains("failed") && statusReply.contains("network down"));
+    }
+
+    @Test
+    void ensure_command_with_wrong_token_is_rejected() throws Exception {
+        // Arrange
+        final var backups = new AtomicInteger();
+        final var daemon = new Daemon(backups::incrementAndGet, Duration.ofHours(1), 0, TOKEN);
+        final var running = CompletableFuture.runAsync(() -> {
+            try {
+                daemon.run();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        // Act
+        final var rejectedReply = Daemon.send(Daemon.Command.STOP, daemon.getPort(), "guess");
+        final var statusReply = Daemon.send(Daemon.Command.STATUS, daemon.getPort(), TOKEN);
+        Daemon.send(Daemon.Command.STOP, daemon.getPort(), TOKEN);
+        running.get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertTrue(rejectedReply.startsWith("Rejected"));
+        assertTrue(statusReply.contains("next backup in"), "Daemon should keep running after a rejected command.");
+    }
+}
@@ -0,0 +1,104 @@
+package spotifybackup.app;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import se.michaelthelin.spotify.model_objects.specification.Paging;
+import spotifybackup.api_wrapper.ApiWrapper.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIfEnvironmentVariable(named = "EnableMiscTests", matches = "true")
+class OffsetPageFetcherTest {
+    private static final int LIMIT = 10;
+
+    /** @return page at offset of a listing holding the integers from 0 up to total. */
+    private static Response<Paging<Integer>> page(final int offset, final int total) {
+        final int to = Math.min(offset + LIMIT, total);
+        return new Response<>(new Paging.Builder<Integer>()
+                .setItems(IntStream.range(offset, to).boxed().toArray(Integer[]::new))
+                .setLimit(LIMIT)
+                .setOffset(offset)
+                .setTotal(total)
+                .setNext(to < total ? "offset=" + to : null)
+                .build(), false);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void ensure_pages_are_handed_over_in_offset_order() {
+        // Arrange
+        final int total = 95;
+        final List<Integer> received = new ArrayList<>();
+
+        // Act
+        OffsetPageFetcher.fetch((limit, offset) -> {
+            // later pages complete first
+            sleep((total - offset) * 2L);
+            return page(offset, total);
+        }, LIMIT, 0, 4, items -> false, page -> received.addAll(List.of(page.value())));
+
+        // Assert
+        assertEquals(IntStream.range(0, total).boxed().toList(), received);
+    }
+
+    @Test
+    void ensure_no_pages_are_requested_after_last_page() {
+        // Arrange
+        final var requested = new ConcurrentLinkedQueue<Integer>();
+        final List<Integer> received = new ArrayList<>();
+
+        // Act
+        OffsetPageFetcher.fetch((limit, offset) -> {
+            requested.add(offset);
+            return page(offset, 100);
+        }, LIMIT, 0, 1, items -> items[0] == 20, page -> received.addAll(List.of(page.value())));
+
+        // Assert
+        assertEquals(List.of(0, 10, 20), List.copyOf(requested));
+        assertEquals(IntStream.range(0, 30).boxed().toList(), received);
+    }
+
+    @Test
+    void ensure_failing_page_is_rethrown_and_pages_in_flight_are_interrupted() throws InterruptedException {
+        // Arrange
+        final var interrupted = new CountDownLatch(2);
+        final List<Integer> received = new ArrayList<>();
+
+        // Act
+        final var exception = assertThrows(IllegalStateException.class, () ->
+                OffsetPageFetcher.fetch((limit, offset) -> switch (offset) {
+                    case 0 -> page(offset, 100);
+                    case 10 -> {
+                        sleep(50);
+                        throw new IllegalStateException("page failed");
+                    }
+                    default -> {
+                        try {
+                            Thread.sleep(10_000);
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                        }
+                        yield page(offset, 100);
+                    }
+                }, LIMIT, 0, 3, items -> false, page -> received.addAll(List.of(page.value()))));
+
+        // Assert
+        assertEquals("page failed", exception.getMessage());
+        assertEquals(IntStream.range(0, 10).boxed().toList(), received);
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS), "Requests still in flight should be interrupted.");
+    }
+}
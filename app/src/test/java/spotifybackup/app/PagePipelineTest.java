@@ -0,0 +1,80 @@
+package spotifybackup.app;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIfEnvironmentVariable(named = "EnableMiscTests", matches = "true")
+class PagePipelineTest {
+    @Test
+    void ensure_pages_are_consumed_in_order() {
+        // Arrange
+        final List<Integer> consumed = new ArrayList<>();
+
+        // Act
+        final long pageCount = PagePipeline.<Integer[]>run(2, sink -> {
+            for (int i = 0; i < 100; i++) sink.accept(new Integer[]{i * 2, i * 2 + 1});
+        }, items -> consumed.addAll(List.of(items)));
+
+        // Assert
+        assertEquals(100, pageCount);
+        assertEquals(200, consumed.size());
+        for (int i = 0; i < consumed.size(); i++) assertEquals(i, consumed.get(i));
+    }
+
+    @Test
+    void ensure_producer_failure_is_rethrown_after_earlier_pages() {
+        // Arrange
+        final List<Integer> consumed = new ArrayList<>();
+
+        // Act
+        final var exception = assertThrows(IllegalStateException.class, () -> PagePipeline.<Integer[]>run(4, sink -> {
+            sink.accept(new Integer[]{1});
+            sink.accept(new Integer[]{2});
+            throw new IllegalStateException("request failed");
+        }, items -> consumed.addAll(List.of(items))));
+
+        // Assert
+        assertEquals("request failed", exception.getMessage());
+        assertEquals(List.of(1, 2), consumed);
+    }
+
+    @Test
+    void ensure_producer_error_is_rethrown() {
+        // Act
+        final var error = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(AssertionError.class,
+                () -> PagePipeline.<Integer[]>run(4, sink -> {
+                    sink.accept(new Integer[]{1});
+                    throw new AssertionError("producer broke");
+                }, items -> {})));
+
+        // Assert
+        assertEquals("producer broke", error.getMessage());
+    }
+
+    @Test
+    void ensure_consumer_failure_stops_producer() throws InterruptedException {
+        // Arrange
+        final var produced = new AtomicInteger(0);
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> PagePipeline.<Integer[]>run(1, sink -> {
+            for (int i = 0; i < 1000; i++) {
+                sink.accept(new Integer[]{i});
+                produced.incrementAndGet();
+            }
+        }, items -> {
+            if (items[0] == 3) throw new IllegalStateException("persist failed");
+        }));
+        Thread.sleep(100);
+
+        // Assert
+        assertTrue(produced.get() < 1000, "Producer should stop once the consumer has failed.");
+    }
+}
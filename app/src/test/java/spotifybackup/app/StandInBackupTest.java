@@ -0,0 +1,134 @@
+package spotifybackup.app;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+import se.michaelthelin.spotify.model_objects.specification.Artist;
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import spotifybackup.api_wrapper.SpotifyApiStandIn;
+import spotifybackup.cmd.exception.MalformedInputException;
+import spotifybackup.cmd.exception.MissingArgumentException;
+import spotifybackup.storage.BackupPhase;
+import spotifybackup.storage.LibraryGenerator;
+import spotifybackup.storage.SpotifyObjectRepository;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs a complete backup through CLI against a SpotifyApiStandIn, the same setup can be scaled up to measure
+ * end-to-end backup throughput without the Spotify Web API.
+ */
+@EnabledIfEnvironmentVariable(named = "EnableMiscTests", matches = "true")
+class StandInBackupTest {
+    /** Stored as simplified artist but unknown to the stand-in, like an artist removed from Spotify. */
+    private static final String REMOVED_ARTIST_ID = "0000000000RemovedArtst";
+
+    /** @return amount of requests for a page of Liked Songs that weren't rate limited. */
+    private static long answeredLikedSongsRequests(SpotifyApiStandIn standIn) {
+        return standIn.getRequestCount("/v1/me/tracks") - standIn.getRateLimitedCount("/v1/me/tracks");
+    }
+
+    @Test
+    void ensure_backup_against_stand_in_stores_generated_library(@TempDir Path tempDir)
+            throws IOException, InterruptedException, MissingArgumentException, MalformedInputException {
+        // Arrange
+        final var generator = new LibraryGenerator(13, new LibraryGenerator.Scale(120, 3, 30, 60, 10));
+        final var configFile = tempDir.resolve("config.json").toFile();
+        final var dbFile = tempDir.resolve("backup.mv.db").toFile();
+        final var metricsFile = tempDir.resolve("metrics.prom").toFile();
+        try (var standIn = new SpotifyApiStandIn.Builder(generator)
+                .latency(Duration.ofMillis(5))
+                .rateLimit(15, 1)
+                .start()) {
+            final var config = Config.createNewForTesting(configFile);
+            config.setClientId("stand-in-client");
+            config.setClientSecret("stand-in-secret");
+            config.setRedirectURI(URI.create("http://localhost:8888/callback"));
+            config.setApiBaseURI(standIn.getBaseUri());
+            final var account = config.addEmptyUser();
+            account.setSpotifyId(generator.user().getId());
+            account.setDisplayName(generator.user().getDisplayName());
+            account.setRefreshToken("stand-in-refresh-token");
+            App.argParser.parseArguments(new String[]{"-c", configFile.toString(), "-d", dbFile.toString(), "-b",
+                    "--metrics-output", metricsFile.toString()});
+
+            // Act
+            final long start = System.nanoTime();
+            new CLI();
+            final long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("Stand-in backup of %s took %d ms for %d requests, %d rate limited%n",
+                    generator.getScale(), elapsedMs, standIn.getRequestCount(), standIn.getRateLimitedCount());
+
+            // Assert
+            final var repo = SpotifyObjectRepository.factory(dbFile);
+            final var user = repo.getAccountHolders().getFirst();
+            assertEquals(generator.getScale().likedSongs(), repo.countSavedTracks(user));
+            assertEquals(generator.getScale().likedAlbums(), repo.countSavedAlbums(user));
+            assertEquals(Arrays.stream(generator.followedArtists()).map(Artist::getId).collect(Collectors.toSet()),
+                    repo.getFollowedArtistIds(user));
+            assertEquals(generator.getScale().playlists(), repo.getFollowedPlaylistIds(user).size());
+            assertTrue(repo.getSimplifiedAlbumsSpotifyIDs().isEmpty(), "Every album should have been hydrated.");
+            assertTrue(repo.getSimplifiedArtistsSpotifyIDs().isEmpty(), "Every artist should have been hydrated.");
+            assertTrue(repo.getSimplifiedTracksSpotifyIDs().isEmpty(), "Every track should have been hydrated.");
+            assertTrue(standIn.getRateLimitedCount() > 0, "Rate limited requests should have been retried.");
+            final var metrics = Files.readString(metricsFile.toPath());
+            for (var phase : BackupPhase.values()) {
+                assertTrue(metrics.contains("spotifybackup_phase_duration_seconds{account=\"" +
+                        generator.user().getId() + "\",phase=\"" + phase + "\"}"), phase.toString());
+            }
+            assertTrue(metrics.contains("spotifybackup_api_request_duration_seconds_count{account=\"" +
+                    generator.user().getId() + "\",phase=\"LIKED_SONGS\",endpoint=\"GetUsersSavedTracksRequest\"}"),
+                    "Requests should have been reported per endpoint.");
+
+            // Act
+            final long playlistRequests = standIn.getRequestCount("/v1/playlists/");
+            final long tokenRequests = standIn.getRequestCount("/api/token");
+            final long profileRequests = standIn.getRequestCount("/v1/me") - standIn.getRequestCount("/v1/me/");
+            final long likedSongsRequests = answeredLikedSongsRequests(standIn);
+            repo.persist(new ArtistSimplified.Builder().setId(REMOVED_ARTIST_ID).setName("Removed artist").build());
+            new CLI();
+
+            // Assert
+            assertTrue(playlistRequests >= 2L * generator.getScale().playlists(),
+                    "Every new playlist should have been requested with its items.");
+            assertEquals(playlistRequests, standIn.getRequestCount("/v1/playlists/"),
+                    "Unchanged playlists should not be requested again.");
+            assertTrue(standIn.getNotModifiedCount() > 0, "Cached responses should have been revalidated.");
+            assertEquals(generator.getScale().likedAlbums(), repo.countSavedAlbums(user));
+            assertEquals(Arrays.stream(generator.followedArtists()).map(Artist::getId).collect(Collectors.toSet()),
+                    repo.getFollowedArtistIds(user));
+            assertTrue(tokenRequests > 0, "First run should refresh the access token.");
+            assertEquals(tokenRequests, standIn.getRequestCount("/api/token"),
+                    "Access token cached in the config should be reused.");
+            assertEquals(profileRequests, standIn.getRequestCount("/v1/me") - standIn.getRequestCount("/v1/me/"),
+                    "Stored account holder should be reused instead of requesting the profile.");
+            assertEquals(List.of(REMOVED_ARTIST_ID), repo.getSimplifiedArtistsSpotifyIDs(),
+                    "Artist unknown to Spotify should be skipped without failing the other artists.");
+            assertEquals(3, likedSongsRequests, "First run should request every page of Liked Songs.");
+            assertEquals(likedSongsRequests + 1, answeredLikedSongsRequests(standIn),
+                    "Paging should stop at the first page reaching the newest stored Liked Song.");
+
+            // Act
+            final var unlikedTrackId = generator.likedSongs()[70].getTrack().getId();
+            standIn.removeLikedSong(unlikedTrackId);
+            new CLI();
+
+            // Assert
+            assertEquals(generator.getScale().likedSongs() - 1, repo.countSavedTracks(user));
+            assertEquals(Set.of(unlikedTrackId), repo.getRemovedSavedTracks(user).stream()
+                    .map(savedTrack -> savedTrack.getTrack().getSpotifyID().getId()).collect(Collectors.toSet()),
+                    "Differing amount of Liked Songs should fall back to a full sync that marks removed songs.");
+        }
+    }
+}
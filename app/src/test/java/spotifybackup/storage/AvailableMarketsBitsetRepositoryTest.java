@@ -0,0 +1,142 @@
+package spotifybackup.storage;
+
+import com.neovisionaries.i18n.CountryCode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIfEnvironmentVariable(named = "EnableStorageTests", matches = "true")
+class AvailableMarketsBitsetRepositoryTest {
+    private static final long ORDINAL = CountryCode.NL.ordinal();
+
+    /** Connects to the same in-process database as repositories opened on dbPath. */
+    private static Connection connect(File dbPath) throws SQLException {
+        final var path = dbPath.getAbsolutePath();
+        return DriverManager.getConnection("jdbc:h2:" + path.substring(0, path.length() - 6) + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    private static String query(Connection connection, String sql) throws SQLException {
+        try (var statement = connection.createStatement(); var result = statement.executeQuery(sql)) {
+            return result.next() ? result.getString(1) : null;
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static void open(File dbPath) {
+        SpotifyObjectRepository.factory(dbPath).getAccountHolders();
+    }
+
+    @Test
+    void ensure_fingerprint_is_stored_when_database_is_created(@TempDir Path tempDir) throws SQLException {
+        // Arrange
+        final var dbPath = tempDir.resolve("markets.mv.db").toFile();
+
+        // Act
+        open(dbPath);
+
+        // Assert
+        try (var connection = connect(dbPath)) {
+            assertEquals(AvailableMarketsBitsetRepository.fingerprint(), query(connection,
+                    "SELECT entry_value FROM database_metadata WHERE name = '" +
+                            AvailableMarketsBitsetRepository.FINGERPRINT_NAME + "'"));
+            assertEquals(Integer.toString(CountryCode.values().length - 1),
+                    query(connection, "SELECT COUNT(*) FROM available_markets_bitset"));
+        }
+    }
+
+    @Test
+    void ensure_rows_are_only_verified_when_fingerprint_changes(@TempDir Path tempDir) throws SQLException {
+        // Arrange
+        final var dbPath = tempDir.resolve("markets.mv.db").toFile();
+        open(dbPath);
+        try (var connection = connect(dbPath)) {
+            execute(connection, "UPDATE available_markets_bitset SET country = 'Tampered' WHERE ordinal = " + ORDINAL);
+
+            // Act
+            open(dbPath);
+            final var unchanged = query(connection,
+                    "SELECT country FROM available_markets_bitset WHERE ordinal = " + ORDINAL);
+            execute(connection, "UPDATE database_metadata SET entry_value = 'stale'");
+            open(dbPath);
+
+            // Assert
+            assertEquals("Tampered", unchanged);
+            assertEquals(CountryCode.NL.getName(),
+                    query(connection, "SELECT country FROM available_markets_bitset WHERE ordinal = " + ORDINAL));
+            assertEquals(AvailableMarketsBitsetRepository.fingerprint(),
+                    query(connection, "SELECT entry_value FROM database_metadata"));
+        }
+    }
+
+    @Test
+    void ensure_row_of_other_country_throws(@TempDir Path tempDir) throws SQLException {
+        // Arrange
+        final var dbPath = tempDir.resolve("markets.mv.db").toFile();
+        open(dbPath);
+        try (var connection = connect(dbPath)) {
+            execute(connection, "UPDATE available_markets_bitset SET alpha2 = 'ZZ' WHERE ordinal = " + ORDINAL);
+            execute(connection, "UPDATE database_metadata SET entry_value = 'stale'");
+        }
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> open(dbPath));
+    }
+
+    @Test
+    void ensure_missing_table_is_added_when_validation_fails(@TempDir Path tempDir) throws SQLException {
+        // Arrange
+        final var dbPath = tempDir.resolve("markets.mv.db").toFile();
+        open(dbPath);
+        try (var connection = connect(dbPath)) {
+            execute(connection, "DROP TABLE library_summary");
+
+            // Act
+            open(dbPath);
+
+            // Assert
+            assertEquals("0", query(connection, "SELECT COUNT(*) FROM library_summary"));
+        }
+    }
+
+    @Test
+    void ensure_unreadable_database_is_not_updated(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        final var dbPath = tempDir.resolve("corrupt.mv.db").toFile();
+        final byte[] content = "not a database".repeat(100).getBytes();
+        Files.write(dbPath.toPath(), content);
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> open(dbPath));
+        assertArrayEquals(content, Files.readAllBytes(dbPath.toPath()));
+    }
+
+    @Test
+    void ensure_enabling_statistics_does_not_open_database(@TempDir Path tempDir) {
+        // Arrange
+        final var dbPath = tempDir.resolve("statistics.mv.db").toFile();
+        final var repo = SpotifyObjectRepository.factory(dbPath);
+
+        // Act
+        repo.setStatisticsEnabled(true);
+        final boolean openedBeforeUse = dbPath.exists();
+        repo.getAccountHolders();
+
+        // Assert
+        assertFalse(openedBeforeUse);
+        assertTrue(repo.getStatistics().queries() > 0);
+    }
+}
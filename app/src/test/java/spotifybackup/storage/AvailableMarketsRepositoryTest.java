@@ -0,0 +1,118 @@
+package spotifybackup.storage;
+
+import com.neovisionaries.i18n.CountryCode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIfEnvironmentVariable(named = "EnableStorageTests", matches = "true")
+class AvailableMarketsRepositoryTest {
+    private static final List<MarketFilter> FILTERS = List.of(
+            MarketFilter.availableIn(CountryCode.NL),
+            MarketFilter.availableIn(CountryCode.values()[CountryCode.values().length - 1]),
+            MarketFilter.availableInAny(CountryCode.NL, CountryCode.JP, CountryCode.ZW),
+            MarketFilter.availableInAll(CountryCode.NL, CountryCode.US, CountryCode.JP),
+            MarketFilter.unavailableIn(CountryCode.NL),
+            MarketFilter.unavailableIn(CountryCode.US, CountryCode.BR));
+    private static SpotifyObjectRepository spotifyObjectRepository;
+    private static SpotifyUser user;
+
+    @BeforeAll
+    static void setup() {
+        spotifyObjectRepository = SpotifyObjectRepository.testFactory(false);
+        final var generator = new LibraryGenerator(15, new LibraryGenerator.Scale(400, 1, 1, 1, 60));
+        user = spotifyObjectRepository.persist(generator.user());
+        spotifyObjectRepository.persist(generator.likedSongs(), user);
+        spotifyObjectRepository.persist(generator.likedAlbums(), user, ImageSelection.ALL);
+        final var removed = spotifyObjectRepository.getSavedTracks(user).iterator().next();
+        spotifyObjectRepository.removeSavedTrack(removed.getTrack(), user);
+    }
+
+    private static <T> Set<Long> ids(List<T> objects, Function<T, Long> id) {
+        return objects.stream().map(id).collect(Collectors.toSet());
+    }
+
+    private static Map<CountryCode, Long> countByMarket(List<AvailableMarkets> markets) {
+        final var counts = new EnumMap<CountryCode, Long>(CountryCode.class);
+        for (var available : markets) for (var code : available.getCodes()) counts.merge(code, 1L, Long::sum);
+        return counts;
+    }
+
+    @Test
+    void ensure_saved_tracks_are_filtered_by_market() {
+        // Arrange
+        final var savedTracks = spotifyObjectRepository.getSavedTracks(user);
+
+        for (var filter : FILTERS) {
+            // Act
+            final var found = spotifyObjectRepository.getSavedTracks(user, filter);
+            final var count = spotifyObjectRepository.countSavedTracks(user, filter);
+
+            // Assert
+            final var expected = savedTracks.stream()
+                    .filter(savedTrack -> filter.test(savedTrack.getTrack().getAvailableMarkets()))
+                    .map(SpotifySavedTrack::getId).collect(Collectors.toSet());
+            assertEquals(expected, ids(found, SpotifySavedTrack::getId), filter.toString());
+            assertEquals(expected.size(), count, filter.toString());
+        }
+    }
+
+    @Test
+    void ensure_saved_albums_are_filtered_by_market() {
+        // Arrange
+        final var savedAlbums = spotifyObjectRepository.getSavedAlbums(user);
+
+        for (var filter : FILTERS) {
+            // Act
+            final var found = spotifyObjectRepository.getSavedAlbums(user, filter);
+            final var count = spotifyObjectRepository.countSavedAlbums(user, filter);
+
+            // Assert
+            final var expected = savedAlbums.stream()
+                    .filter(savedAlbum -> filter.test(savedAlbum.getAlbum().getAvailableMarkets()))
+                    .map(SpotifySavedAlbum::getId).collect(Collectors.toSet());
+            assertEquals(expected, ids(found, SpotifySavedAlbum::getId), filter.toString());
+            assertEquals(expected.size(), count, filter.toString());
+        }
+    }
+
+    @Test
+    void ensure_filters_are_not_trivial() {
+        // Act
+        final long total = spotifyObjectRepository.countSavedTracks(user);
+        final long inNl = spotifyObjectRepository.countSavedTracks(user, MarketFilter.availableIn(CountryCode.NL));
+        final long notInNl = spotifyObjectRepository.countSavedTracks(user, MarketFilter.unavailableIn(CountryCode.NL));
+
+        // Assert
+        assertTrue(inNl > 0 && notInNl > 0, "Generated library should have tracks both in and outside NL.");
+        assertEquals(total, inNl + notInNl);
+        assertThrows(IllegalArgumentException.class, MarketFilter::availableInAny);
+    }
+
+    @Test
+    void ensure_counts_by_market_match_decoded_markets() {
+        // Arrange
+        final var trackMarkets = spotifyObjectRepository.getSavedTracks(user).stream()
+                .map(savedTrack -> savedTrack.getTrack().getAvailableMarkets()).toList();
+        final var albumMarkets = spotifyObjectRepository.getSavedAlbums(user).stream()
+                .map(savedAlbum -> savedAlbum.getAlbum().getAvailableMarkets()).toList();
+
+        // Act
+        final var trackCounts = spotifyObjectRepository.countSavedTracksByMarket(user);
+        final var albumCounts = spotifyObjectRepository.countSavedAlbumsByMarket(user);
+
+        // Assert
+        assertFalse(trackCounts.isEmpty());
+        assertEquals(countByMarket(trackMarkets), trackCounts);
+        assertEquals(countByMarket(albumMarkets), albumCounts);
+    }
+}
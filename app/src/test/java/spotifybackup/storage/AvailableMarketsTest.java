@@ -0,0 +1,84 @@
+package spotifybackup.storage;
+
+import com.neovisionaries.i18n.CountryCode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIfEnvironmentVariable(named = "EnableStorageTests", matches = "true")
+class AvailableMarketsTest {
+    private static final CountryCode[] CODES = {CountryCode.values()[0], CountryCode.NL, CountryCode.US,
+            CountryCode.values()[CountryCode.values().length - 1]};
+
+    /** Layout of the stored bytes before AvailableMarkets was a bitset: ordinal i is bit i % 8 of byte i / 8. */
+    private static byte[] storedBytes(CountryCode... codes) {
+        final var bytes = new byte[(CountryCode.values().length / 8) + 1];
+        for (var code : codes) bytes[code.ordinal() / 8] |= (byte) (0x1 << (code.ordinal() % 8));
+        return bytes;
+    }
+
+    @Test
+    void ensure_stored_bytes_keep_bit_layout() {
+        // Arrange
+        final var markets = new AvailableMarkets(CODES);
+
+        // Act
+        final var bytes = markets.toBytes();
+        final var read = AvailableMarkets.fromBytes(storedBytes(CODES));
+
+        // Assert
+        assertArrayEquals(storedBytes(CODES), bytes);
+        assertEquals(markets, read);
+        assertEquals(Set.of(CODES), read.getCodes());
+    }
+
+    @Test
+    void ensure_every_market_survives_conversion() {
+        // Arrange
+        final var markets = new AvailableMarkets(CountryCode.values());
+
+        // Act
+        final var read = AvailableMarkets.fromBytes(markets.toBytes());
+
+        // Assert
+        assertEquals(CountryCode.values().length, read.size());
+        assertEquals(EnumSet.allOf(CountryCode.class), read.getCodes());
+        assertEquals(markets, read);
+    }
+
+    @Test
+    void ensure_equal_markets_are_equal_regardless_of_order() {
+        // Arrange
+        final var markets = new AvailableMarkets(new CountryCode[]{CountryCode.US, CountryCode.NL});
+        final var reversed = new AvailableMarkets(Set.of(CountryCode.NL, CountryCode.US));
+        final var other = new AvailableMarkets(new CountryCode[]{CountryCode.US});
+
+        // Act & Assert
+        assertEquals(markets, reversed);
+        assertEquals(markets.hashCode(), reversed.hashCode());
+        assertNotEquals(markets, other);
+        assertTrue(markets.contains(CountryCode.NL));
+        assertFalse(other.contains(CountryCode.NL));
+    }
+
+    @Test
+    void ensure_union_and_intersection_are_computed() {
+        // Arrange
+        final var first = new AvailableMarkets(new CountryCode[]{CountryCode.US, CountryCode.NL});
+        final var second = new AvailableMarkets(new CountryCode[]{CountryCode.NL, CountryCode.ZW});
+
+        // Act
+        final var union = first.union(second);
+        final var intersection = first.intersect(second);
+
+        // Assert
+        assertEquals(Set.of(CountryCode.US, CountryCode.NL, CountryCode.ZW), union.getCodes());
+        assertEquals(Set.of(CountryCode.NL), intersection.getCodes());
+        assertEquals(2, first.size());
+        assertTrue(first.intersect(new AvailableMarkets()).isEmpty());
+    }
+}
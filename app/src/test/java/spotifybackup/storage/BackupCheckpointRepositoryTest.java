@@ -0,0 +1,70 @@
+package spotifybackup.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import se.michaelthelin.spotify.model_objects.specification.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIfEnvironmentVariable(named = "EnableStorageTests", matches = "true")
+class BackupCheckpointRepositoryTest {
+    static final String userDir = "src/test/java/spotifybackup/storage/spotify_api_get/user/";
+    private SpotifyObjectRepository spotifyObjectRepository;
+    private SpotifyUser user;
+
+    @BeforeEach
+    void setup() throws IOException {
+        spotifyObjectRepository = SpotifyObjectRepository.testFactory(false);
+        user = spotifyObjectRepository.persist(new User.JsonUtil().createModelObject(
+                new String(Files.readAllBytes(Path.of(userDir + "user.json")))));
+    }
+
+    @Test
+    void ensure_checkpoint_can_be_saved() {
+        // Arrange
+        assertTrue(spotifyObjectRepository.getBackupCheckpoint(user).isEmpty());
+
+        // Act
+        spotifyObjectRepository.saveBackupCheckpoint(user, BackupPhase.LIKED_SONGS, 150, null);
+
+        // Assert
+        final var checkpoint = spotifyObjectRepository.getBackupCheckpoint(user).orElseThrow();
+        assertEquals(BackupPhase.LIKED_SONGS, checkpoint.getPhase());
+        assertEquals(150, checkpoint.getPageOffset());
+        assertTrue(checkpoint.getPageCursor().isEmpty());
+    }
+
+    @Test
+    void ensure_checkpoint_is_updated_in_place() {
+        // Arrange
+        final var first = spotifyObjectRepository.saveBackupCheckpoint(user, BackupPhase.LIKED_SONGS, 50, null);
+
+        // Act
+        final var second = spotifyObjectRepository.saveBackupCheckpoint(user, BackupPhase.FOLLOWED_ARTISTS, 0,
+                "0TnOYISbd1XYRBk9myaseg");
+
+        // Assert
+        assertEquals(first.getId(), second.getId());
+        final var checkpoint = spotifyObjectRepository.getBackupCheckpoint(user).orElseThrow();
+        assertEquals(BackupPhase.FOLLOWED_ARTISTS, checkpoint.getPhase());
+        assertEquals("0TnOYISbd1XYRBk9myaseg", checkpoint.getPageCursor().orElseThrow());
+        assertFalse(checkpoint.getDateUpdated().isBefore(first.getDateUpdated()));
+    }
+
+    @Test
+    void ensure_checkpoint_can_be_cleared() {
+        // Arrange
+        spotifyObjectRepository.saveBackupCheckpoint(user, BackupPhase.DETAILED_INFO, 0, null);
+
+        // Act
+        spotifyObjectRepository.clearBackupCheckpoint(user);
+
+        // Assert
+        assertTrue(spotifyObjectRepository.getBackupCheckpoint(user).isEmpty());
+    }
+}
@@ -0,0 +1,351 @@
+package spotifybackup.storage;
+
+import com.neovisionaries.i18n.CountryCode;
+import se.michaelthelin.spotify.enums.AlbumType;
+import se.michaelthelin.spotify.enums.ModelObjectType;
+import se.michaelthelin.spotify.enums.ProductType;
+import se.michaelthelin.spotify.enums.ReleaseDatePrecision;
+import se.michaelthelin.spotify.model_objects.miscellaneous.PlaylistTracksInformation;
+import se.michaelthelin.spotify.model_objects.specification.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Deterministic generator of a synthetic Spotify library made of spotify-web-api model objects, for scale and soak
+ * testing. The same seed and Scale always generate the same library. Tracks are drawn from a shared pool of albums and
+ * artists with a skewed distribution, so that like in a real library a few artists and albums account for many tracks.
+ */
+public class LibraryGenerator {
+    private static final char[] BASE62 =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final CountryCode[] MARKETS = {CountryCode.AR, CountryCode.AT, CountryCode.AU, CountryCode.BE,
+            CountryCode.BR, CountryCode.CA, CountryCode.CH, CountryCode.DE, CountryCode.DK, CountryCode.ES,
+            CountryCode.FI, CountryCode.FR, CountryCode.GB, CountryCode.IE, CountryCode.IT, CountryCode.JP,
+            CountryCode.MX, CountryCode.NL, CountryCode.NO, CountryCode.NZ, CountryCode.PL, CountryCode.SE,
+            CountryCode.US};
+    private static final int GENRE_COUNT = 200;
+    private static final int OWNER_COUNT = 50;
+    private static final Instant NEWEST_ADDED_AT = Instant.parse("2024-01-01T00:00:00Z");
+    private final long seed;
+    private final Scale scale;
+    private final Set<String> usedIds = new HashSet<>();
+    private final User user;
+    private final User[] owners;
+    private final Artist[] artists;
+    private final Album[] albums;
+    private final Track[] tracks;
+    private final SavedTrack[] likedSongs;
+    private final Artist[] followedArtists;
+    private final SavedAlbum[] likedAlbums;
+    private final PlaylistSimplified[] playlists;
+
+    /**
+     * @param seed  Seed of the random generator, the same seed and scale always generate the same library.
+     * @param scale Size of the library.
+     */
+    public LibraryGenerator(final long seed, Scale scale) {
+        this.seed = seed;
+        this.scale = scale;
+        final var random = new Random(seed);
+        user = generateUser(random, "synthetic_account");
+        owners = new User[OWNER_COUNT];
+        for (int i = 0; i < owners.length; i++) owners[i] = generateUser(random, "synthetic_owner_" + i);
+
+        artists = new Artist[Math.max(scale.followedArtists, scale.likedSongs / 5) + 1];
+        for (int i = 0; i < artists.length; i++) artists[i] = generateArtist(random, i);
+
+        albums = new Album[Math.max(scale.likedAlbums, scale.likedSongs / 6) + 1];
+        final List<Track> trackPool = new ArrayList<>();
+        for (int i = 0; i < albums.length; i++) albums[i] = generateAlbum(random, i, trackPool);
+        tracks = trackPool.toArray(Track[]::new);
+
+        final var likedTrackIndices = sample(random, tracks.length, scale.likedSongs);
+        likedSongs = new SavedTrack[likedTrackIndices.length];
+        var addedAt = NEWEST_ADDED_AT;
+        for (int i = 0; i < likedSongs.length; i++) {
+            likedSongs[i] = new SavedTrack.Builder()
+                    .setAddedAt(Date.from(addedAt))
+                    .setTrack(tracks[likedTrackIndices[i]])
+                    .build();
+            addedAt = addedAt.minus(Duration.ofSeconds(1 + random.nextInt(86_400)));
+        }
+
+        followedArtists = Arrays.stream(sample(random, artists.length, scale.followedArtists))
+                .mapToObj(i -> artists[i]).toArray(Artist[]::new);
+        final var likedAlbumIndices = sample(random, albums.length, scale.likedAlbums);
+        likedAlbums = new SavedAlbum[likedAlbumIndices.length];
+        for (int i = 0; i < likedAlbums.length; i++) {
+            likedAlbums[i] = new SavedAlbum.Builder()
+                    .setAddedAt(Date.from(NEWEST_ADDED_AT.minus(Duration.ofDays(i))))
+                    .setAlbum(albums[likedAlbumIndices[i]])
+                    .build();
+        }
+
+        playlists = new PlaylistSimplified[scale.playlists];
+        for (int i = 0; i < playlists.length; i++) {
+            playlists[i] = new PlaylistSimplified.Builder()
+                    .setId(generateId(random))
+                    .setName("Synthetic playlist " + i)
+                    .setOwner(random.nextInt(4) == 0 ? owners[skewed(random, owners.length)] : user)
+                    .setCollaborative(random.nextInt(20) == 0)
+                    .setPublicAccess(random.nextBoolean())
+                    .setSnapshotId(generateId(random) + generateId(random))
+                    .setTracks(new PlaylistTracksInformation.Builder().setTotal(scale.playlistSize).build())
+                    .setType(ModelObjectType.PLAYLIST)
+                    .build();
+        }
+    }
+
+    /** @return Random int in [0, bound), low values are much more likely than high values. */
+    private static int skewed(Random random, final int bound) {
+        return (int) (bound * Math.pow(random.nextDouble(), 3));
+    }
+
+    /** @return count distinct random ints in [0, bound), or all of them in random order if count exceeds bound. */
+    private static int[] sample(Random random, final int bound, final int count) {
+        final List<Integer> indices = new ArrayList<>(bound);
+        for (int i = 0; i < bound; i++) indices.add(i);
+        Collections.shuffle(indices, random);
+        return indices.stream().limit(count).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static Image generateImage(final String id) {
+        return new Image.Builder()
+                .setUrl("https://i.scdn.co/image/synthetic" + id)
+                .setHeight(640)
+                .setWidth(640)
+                .build();
+    }
+
+    private static ArtistSimplified simplify(Artist artist) {
+        return new ArtistSimplified.Builder()
+                .setId(artist.getId())
+                .setName(artist.getName())
+                .setType(ModelObjectType.ARTIST)
+                .build();
+    }
+
+    /** @return unique random Spotify ID of 22 base62 characters. */
+    private String generateId(Random random) {
+        final var id = new char[22];
+        String generated;
+        do {
+            for (int i = 0; i < id.length; i++) id[i] = BASE62[random.nextInt(BASE62.length)];
+            generated = new String(id);
+        } while (!usedIds.add(generated));
+        return generated;
+    }
+
+    private User generateUser(Random random, final String id) {
+        return new User.Builder()
+                .setId(id)
+                .setDisplayName(id.replace('_', ' '))
+                .setCountry(MARKETS[random.nextInt(MARKETS.length)])
+                .setProduct(ProductType.PREMIUM)
+                .setImages()
+                .setType(ModelObjectType.USER)
+                .build();
+    }
+
+    private Artist generateArtist(Random random, final int index) {
+        final var id = generateId(random);
+        final var genres = new String[random.nextInt(4)];
+        for (int i = 0; i < genres.length; i++) genres[i] = "synthetic genre " + skewed(random, GENRE_COUNT);
+        return new Artist.Builder()
+                .setId(id)
+                .setName("Synthetic artist " + index)
+                .setGenres(Arrays.stream(genres).distinct().toArray(String[]::new))
+                .setImages(generateImage(id))
+                .setPopularity(random.nextInt(101))
+                .setType(ModelObjectType.ARTIST)
+                .build();
+    }
+
+    /** Generate an album and add its tracks to trackPool. */
+    private Album generateAlbum(Random random, final int index, List<Track> trackPool) {
+        final var id = generateId(random);
+        final var albumArtists = new LinkedHashSet<ArtistSimplified>();
+        albumArtists.add(simplify(artists[skewed(random, artists.length)]));
+        if (random.nextInt(5) == 0) albumArtists.add(simplify(artists[skewed(random, artists.length)]));
+        final var albumArtistArray = albumArtists.toArray(ArtistSimplified[]::new);
+        final var markets = random.nextInt(5) == 0 ?
+                Arrays.stream(sample(random, MARKETS.length, 1 + random.nextInt(MARKETS.length)))
+                        .mapToObj(i -> MARKETS[i]).toArray(CountryCode[]::new) :
+                MARKETS.clone();
+        final int trackCount = random.nextInt(6) == 0 ? 1 : 4 + random.nextInt(13);
+        final var albumType = trackCount == 1 ? AlbumType.SINGLE : AlbumType.ALBUM;
+        final var releaseDate = LocalDate.of(1960, 1, 1).plusDays(random.nextInt(64 * 365)).toString();
+        final var simplifiedAlbum = new AlbumSimplified.Builder()
+                .setId(id)
+                .setName("Synthetic album " + index)
+                .setAlbumType(albumType)
+                .setArtists(albumArtistArray)
+                .setAvailableMarkets(markets)
+                .setReleaseDate(releaseDate)
+                .setReleaseDatePrecision(ReleaseDatePrecision.DAY)
+                .setImages(generateImage(id))
+                .setType(ModelObjectType.ALBUM)
+                .build();
+        final var albumTracks = new TrackSimplified[trackCount];
+        for (int i = 0; i < trackCount; i++) {
+            final var track = new Track.Builder()
+                    .setId(generateId(random))
+                    .setName("Synthetic track " + index + "-" + (i + 1))
+                    .setAlbum(simplifiedAlbum)
+                    .setArtists(random.nextInt(4) == 0 ?
+                            new ArtistSimplified[]{albumArtistArray[0],
+                                    simplify(artists[skewed(random, artists.length)])} :
+                            albumArtistArray)
+                    .setAvailableMarkets(markets)
+                    .setDiscNumber(1)
+                    .setTrackNumber(i + 1)
+                    .setDurationMs(90_000 + random.nextInt(300_000))
+                    .setExplicit(random.nextInt(8) == 0)
+                    .setExternalIds(new ExternalId.Builder()
+                            .setExternalIds(Map.of("isrc", String.format("QZSYN%07d", trackPool.size())))
+                            .build())
+                    .setPopularity(random.nextInt(101))
+                    .setType(ModelObjectType.TRACK)
+                    .build();
+            trackPool.add(track);
+            albumTracks[i] = new TrackSimplified.Builder()
+                    .setId(track.getId())
+                    .setName(track.getName())
+                    .setArtists(track.getArtists())
+                    .setAvailableMarkets(markets)
+                    .setDiscNumber(track.getDiscNumber())
+                    .setTrackNumber(track.getTrackNumber())
+                    .setDurationMs(track.getDurationMs())
+                    .setExplicit(track.getIsExplicit())
+                    .setType(ModelObjectType.TRACK)
+                    .build();
+        }
+        return new Album.Builder()
+                .setId(id)
+                .setName(simplifiedAlbum.getName())
+                .setAlbumType(albumType)
+                .setArtists(albumArtistArray)
+                .setAvailableMarkets(markets)
+                .setReleaseDate(releaseDate)
+                .setReleaseDatePrecision(ReleaseDatePrecision.DAY)
+                .setImages(simplifiedAlbum.getImages())
+                .setGenres()
+                .setExternalIds(new ExternalId.Builder()
+                        .setExternalIds(Map.of("upc", String.format("%012d", index)))
+                        .build())
+                .setTracks(new Paging.Builder<TrackSimplified>()
+                        .setItems(albumTracks)
+                        .setOffset(0)
+                        .setLimit(albumTracks.length)
+                        .setTotal(albumTracks.length)
+                        .build())
+                .setType(ModelObjectType.ALBUM)
+                .build();
+    }
+
+    public Scale getScale() {
+        return scale;
+    }
+
+    /** @return User whose library is generated. */
+    public User user() {
+        return user;
+    }
+
+    /** @return all Liked Songs, newest first like the API returns them. */
+    public SavedTrack[] likedSongs() {
+        return likedSongs.clone();
+    }
+
+    /** @return page of the Liked Songs as returned by the API, newest first. */
+    public Paging<SavedTrack> likedSongs(final int limit, final int offset) {
+        final int from = Math.min(offset, likedSongs.length);
+        final int to = Math.min(offset + limit, likedSongs.length);
+        return new Paging.Builder<SavedTrack>()
+                .setItems(Arrays.copyOfRange(likedSongs, from, to))
+                .setLimit(limit)
+                .setOffset(offset)
+                .setTotal(likedSongs.length)
+                .setNext(to < likedSongs.length ? "https://api.spotify.com/v1/me/tracks?offset=" + to : null)
+                .build();
+    }
+
+    public Artist[] followedArtists() {
+        return followedArtists.clone();
+    }
+
+    public SavedAlbum[] likedAlbums() {
+        return likedAlbums.clone();
+    }
+
+    public PlaylistSimplified[] playlists() {
+        return playlists.clone();
+    }
+
+    /** @return every generated artist, followed or not. */
+    public Artist[] artists() {
+        return artists.clone();
+    }
+
+    /** @return every generated album, liked or not. */
+    public Album[] albums() {
+        return albums.clone();
+    }
+
+    /** @return every generated track, liked or not. */
+    public Track[] tracks() {
+        return tracks.clone();
+    }
+
+    /**
+     * Items of a playlist, generated on request so that the items of all playlists are not held in memory at once.
+     * Most items are Liked Songs, the rest are drawn from all generated tracks, no track is added twice.
+     * @param playlistIndex Index of the playlist in {@link #playlists()}.
+     */
+    public List<PlaylistTrack> playlistItems(final int playlistIndex) {
+        final var random = new Random(seed * 31 + playlistIndex);
+        final var playlist = playlists[playlistIndex];
+        final List<PlaylistTrack> items = new ArrayList<>(scale.playlistSize);
+        final Set<String> itemTrackIds = new HashSet<>();
+        var addedAt = NEWEST_ADDED_AT.minus(Duration.ofDays(playlistIndex));
+        while (items.size() < Math.min(scale.playlistSize, tracks.length)) {
+            final var addedBy = playlist.getIsCollaborative() ? owners[random.nextInt(owners.length)] :
+                    playlist.getOwner();
+            final var track = random.nextInt(10) < 7 && likedSongs.length > 0 ?
+                    likedSongs[random.nextInt(likedSongs.length)].getTrack() :
+                    tracks[random.nextInt(tracks.length)];
+            if (!itemTrackIds.add(track.getId())) continue;
+            items.add(new PlaylistTrack.Builder()
+                    .setAddedAt(Date.from(addedAt))
+                    .setAddedBy(addedBy)
+                    .setIsLocal(false)
+                    .setTrack(track)
+                    .build());
+            addedAt = addedAt.minus(Duration.ofMinutes(1 + random.nextInt(10_000)));
+        }
+        return items;
+    }
+
+    /**
+     * Size of a generated library.
+     * @param likedSongs      Amount of Liked Songs.
+     * @param playlists       Amount of followed playlists.
+     * @param playlistSize    Amount of items in every playlist.
+     * @param followedArtists Amount of followed artists.
+     * @param likedAlbums     Amount of liked albums.
+     */
+    public record Scale(int likedSongs, int playlists, int playlistSize, int followedArtists, int likedAlbums) {
+        public static final Scale SMALL = new Scale(500, 20, 50, 100, 50);
+        /** Size of the largest libraries that are backed up. */
+        public static final Scale LARGE = new Scale(30_000, 800, 100, 5_000, 1_000);
+
+        public Scale {
+            if (likedSongs < 0 || playlists < 0 || playlistSize < 0 || followedArtists < 0 || likedAlbums < 0) {
+                throw new IllegalArgumentException("Scale can not be negative.");
+            }
+        }
+    }
+}
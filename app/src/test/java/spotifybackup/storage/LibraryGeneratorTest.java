@@ -0,0 +1,94 @@
+package spotifybackup.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import se.michaelthelin.spotify.model_objects.specification.Artist;
+import se.michaelthelin.spotify.model_objects.specification.PlaylistTrack;
+import se.michaelthelin.spotify.model_objects.specification.SavedTrack;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIfEnvironmentVariable(named = "EnableStorageTests", matches = "true")
+class LibraryGeneratorTest {
+    private static final int PAGE_LIMIT = 50;
+
+    private static List<String> trackIds(SavedTrack[] savedTracks) {
+        return Arrays.stream(savedTracks).map(t -> t.getTrack().getId()).toList();
+    }
+
+    @Test
+    void ensure_same_seed_generates_same_library() {
+        // Arrange
+        final var first = new LibraryGenerator(42, LibraryGenerator.Scale.SMALL);
+        final var second = new LibraryGenerator(42, LibraryGenerator.Scale.SMALL);
+        final var other = new LibraryGenerator(43, LibraryGenerator.Scale.SMALL);
+
+        // Act
+        final var firstIds = trackIds(first.likedSongs());
+        final var secondIds = trackIds(second.likedSongs());
+        final var otherIds = trackIds(other.likedSongs());
+
+        // Assert
+        assertEquals(LibraryGenerator.Scale.SMALL.likedSongs(), firstIds.size());
+        assertEquals(firstIds, secondIds);
+        assertNotEquals(firstIds, otherIds);
+        assertEquals(first.playlistItems(3).stream().map(i -> i.getTrack().getId()).toList(),
+                second.playlistItems(3).stream().map(i -> i.getTrack().getId()).toList());
+    }
+
+    @Test
+    void ensure_liked_songs_are_paged_newest_first_and_share_artists() {
+        // Arrange
+        final var generator = new LibraryGenerator(7, LibraryGenerator.Scale.SMALL);
+
+        // Act
+        final var firstPage = generator.likedSongs(PAGE_LIMIT, 0);
+        final var lastPage = generator.likedSongs(PAGE_LIMIT, generator.getScale().likedSongs() - 10);
+        final var artistIds = Arrays.stream(generator.likedSongs())
+                .map(t -> t.getTrack().getArtists()[0].getId())
+                .collect(Collectors.toSet());
+
+        // Assert
+        assertEquals(PAGE_LIMIT, firstPage.getItems().length);
+        assertNotNull(firstPage.getNext());
+        assertEquals(10, lastPage.getItems().length);
+        assertNull(lastPage.getNext());
+        for (int i = 1; i < firstPage.getItems().length; i++) {
+            assertTrue(firstPage.getItems()[i - 1].getAddedAt().after(firstPage.getItems()[i].getAddedAt()));
+        }
+        assertTrue(artistIds.size() < generator.getScale().likedSongs() / 2,
+                "Liked Songs should overlap in artists.");
+    }
+
+    @Test
+    void ensure_generated_library_can_be_persisted() {
+        // Arrange
+        final var repo = SpotifyObjectRepository.testFactory(false);
+        final var generator = new LibraryGenerator(1, LibraryGenerator.Scale.SMALL);
+        final var scale = generator.getScale();
+        final var user = repo.persist(generator.user());
+
+        // Act
+        for (int offset = 0; offset < scale.likedSongs(); offset += PAGE_LIMIT) {
+            repo.persist(generator.likedSongs(PAGE_LIMIT, offset).getItems(), user);
+        }
+        repo.followArtists(repo.persist(generator.followedArtists()), user);
+        repo.persist(generator.likedAlbums(), user, ImageSelection.ONLY_LARGEST);
+        final var playlists = repo.persist(generator.playlists());
+        repo.followPlaylists(playlists, user);
+        final List<PlaylistTrack> items = generator.playlistItems(0);
+        repo.persist(items, playlists.getFirst());
+
+        // Assert
+        assertEquals(scale.likedSongs(), repo.countSavedTracks(user));
+        assertEquals(Arrays.stream(generator.followedArtists()).map(Artist::getId).collect(Collectors.toSet()),
+                repo.getFollowedArtistIds(user));
+        assertEquals(scale.likedAlbums(), repo.countSavedAlbums(user));
+        assertEquals(scale.playlists(), repo.getFollowedPlaylistIds(user).size());
+        assertEquals(scale.playlistSize(), repo.getPlaylistItems(playlists.getFirst()).size());
+    }
+}
@@ -0,0 +1,86 @@
+package spotifybackup.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import se.michaelthelin.spotify.model_objects.specification.Artist;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Backs up a generated library of the size of the largest real libraries into a file backed database, twice, to find
+ * problems that only show at that scale. The time taken by every phase is printed. Takes well over half an hour, most
+ * of it spent on playlist items, so only enabled through its own environment variable.
+ */
+@EnabledIfEnvironmentVariable(named = "EnableSoakTests", matches = "true")
+class LibrarySoakTest {
+    private static final int PAGE_LIMIT = 50;
+
+    /** Run action and print how long it took. */
+    private static void timed(final String phase, Runnable action) {
+        final long start = System.nanoTime();
+        action.run();
+        System.out.printf("  %s: %d ms%n", phase, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void backup(SpotifyObjectRepository repo, LibraryGenerator generator, SpotifyUser user) {
+        final var scale = generator.getScale();
+        timed("Liked Songs", () -> {
+            for (int offset = 0; offset < scale.likedSongs(); offset += PAGE_LIMIT) {
+                repo.persist(generator.likedSongs(PAGE_LIMIT, offset).getItems(), user);
+            }
+        });
+        timed("followed artists", () -> {
+            final var followedArtists = generator.followedArtists();
+            for (int offset = 0; offset < followedArtists.length; offset += PAGE_LIMIT) {
+                final var page = Arrays.copyOfRange(followedArtists, offset,
+                        Math.min(offset + PAGE_LIMIT, followedArtists.length));
+                repo.followArtists(repo.persist(page, ImageSelection.ONLY_LARGEST), user);
+            }
+        });
+        timed("liked albums", () -> {
+            final var likedAlbums = generator.likedAlbums();
+            for (int offset = 0; offset < likedAlbums.length; offset += PAGE_LIMIT) {
+                repo.persist(Arrays.copyOfRange(likedAlbums, offset, Math.min(offset + PAGE_LIMIT, likedAlbums.length)),
+                        user, ImageSelection.ONLY_LARGEST);
+            }
+        });
+        timed("playlists", () -> {
+            final var playlists = repo.persist(generator.playlists());
+            repo.followPlaylists(playlists, user);
+            for (int i = 0; i < playlists.size(); i++) {
+                repo.syncPlaylistItems(generator.playlistItems(i), playlists.get(i));
+            }
+        });
+    }
+
+    @Test
+    void ensure_large_library_can_be_backed_up_repeatedly() throws IOException {
+        // Arrange
+        final var dir = Files.createDirectories(Path.of("build", "soak"));
+        final var dbFile = dir.resolve("soak.mv.db");
+        Files.deleteIfExists(dbFile);
+        final var repo = SpotifyObjectRepository.factory(dbFile.toFile());
+        final var generator = new LibraryGenerator(2024, LibraryGenerator.Scale.LARGE);
+        final var scale = generator.getScale();
+        final var user = repo.persist(generator.user());
+
+        // Act
+        System.out.println("Soak backup of " + scale + ", first run:");
+        backup(repo, generator, user);
+        System.out.println("Repeated run:");
+        backup(repo, generator, user);
+
+        // Assert
+        assertEquals(scale.likedSongs(), repo.countSavedTracks(user));
+        assertEquals(scale.likedAlbums(), repo.countSavedAlbums(user));
+        assertEquals(Arrays.stream(generator.followedArtists()).map(Artist::getId).collect(Collectors.toSet()),
+                repo.getFollowedArtistIds(user));
+        assertEquals(scale.playlists(), repo.getFollowedPlaylistIds(user).size());
+    }
+}
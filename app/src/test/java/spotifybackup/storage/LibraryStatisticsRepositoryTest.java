@@ -0,0 +1,128 @@
+package spotifybackup.storage;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import se.michaelthelin.spotify.model_objects.specification.Artist;
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.SavedTrack;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIfEnvironmentVariable(named = "EnableStorageTests", matches = "true")
+class LibraryStatisticsRepositoryTest {
+    private static SpotifyObjectRepository spotifyObjectRepository;
+    private static LibraryGenerator generator;
+    private static SpotifyUser user;
+    private static List<SavedTrack> savedTracks;
+
+    @BeforeAll
+    static void setup() {
+        spotifyObjectRepository = SpotifyObjectRepository.testFactory(false);
+        generator = new LibraryGenerator(21, new LibraryGenerator.Scale(300, 1, 1, 1, 1));
+        user = spotifyObjectRepository.persist(generator.user());
+        spotifyObjectRepository.persist(generator.likedSongs(), user);
+        spotifyObjectRepository.persist(generator.artists(), ImageSelection.NONE);
+        final var removed = generator.likedSongs()[0];
+        spotifyObjectRepository.removeSavedTrack(
+                (SpotifyTrack) spotifyObjectRepository.find(removed.getTrack().getId()).orElseThrow(), user);
+        savedTracks = Arrays.asList(generator.likedSongs()).subList(1, generator.likedSongs().length);
+    }
+
+    private static List<NamedCount> expectedCounts(Function<Track, Stream<String>> names) {
+        return savedTracks.stream().flatMap(savedTrack -> names.apply(savedTrack.getTrack()).distinct())
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+                .entrySet().stream().map(entry -> new NamedCount(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparingLong(NamedCount::count).reversed().thenComparing(NamedCount::name))
+                .toList();
+    }
+
+    @Test
+    void ensure_duration_is_summed_over_saved_tracks() {
+        // Arrange
+        final long expected = savedTracks.stream().mapToLong(savedTrack -> savedTrack.getTrack().getDurationMs()).sum();
+        final var from = savedTracks.stream().map(savedTrack -> savedTrack.getAddedAt().toInstant())
+                .max(Comparator.naturalOrder()).orElseThrow().minus(Duration.ofDays(30)).atZone(ZoneOffset.UTC);
+        final var addedAfter = savedTracks.stream()
+                .filter(savedTrack -> savedTrack.getAddedAt().toInstant().isAfter(from.toInstant())).toList();
+
+        // Act
+        final var duration = spotifyObjectRepository.getLibraryDuration(user);
+        final var newDuration = spotifyObjectRepository.getLibraryDurationAddedAfter(user, from);
+
+        // Assert
+        assertEquals(new LibraryDuration(savedTracks.size(), expected), duration);
+        assertFalse(addedAfter.isEmpty());
+        assertEquals(new LibraryDuration(addedAfter.size(), addedAfter.stream()
+                .mapToLong(savedTrack -> savedTrack.getTrack().getDurationMs()).sum()), newDuration);
+    }
+
+    @Test
+    void ensure_saved_tracks_are_counted_per_artist_album_and_genre() {
+        // Arrange
+        final Map<String, Artist> artists = Arrays.stream(generator.artists())
+                .collect(Collectors.toMap(Artist::getId, Function.identity()));
+        final var expectedArtists = expectedCounts(track -> Arrays.stream(track.getArtists())
+                .map(ArtistSimplified::getName));
+        final var expectedAlbums = expectedCounts(track -> Stream.of(track.getAlbum().getName()));
+        final var expectedGenres = expectedCounts(track -> Arrays.stream(track.getArtists())
+                .flatMap(artist -> Arrays.stream(artists.get(artist.getId()).getGenres())));
+
+        // Act
+        final var byArtist = spotifyObjectRepository.countSavedTracksByArtist(user, Integer.MAX_VALUE);
+        final var byAlbum = spotifyObjectRepository.countSavedTracksByAlbum(user, Integer.MAX_VALUE);
+        final var byGenre = spotifyObjectRepository.countSavedTracksByGenre(user, Integer.MAX_VALUE);
+        final var topArtists = spotifyObjectRepository.countSavedTracksByArtist(user, 3);
+
+        // Assert
+        assertEquals(expectedArtists, byArtist);
+        assertEquals(expectedAlbums, byAlbum);
+        assertFalse(expectedGenres.isEmpty());
+        assertEquals(expectedGenres, byGenre);
+        assertEquals(expectedArtists.subList(0, 3), topArtists);
+    }
+
+    @Test
+    void ensure_saved_tracks_are_counted_per_release_year_and_explicit_flag() {
+        // Arrange
+        final Map<Integer, Long> expectedYears = savedTracks.stream().collect(Collectors.groupingBy(
+                savedTrack -> Integer.parseInt(savedTrack.getTrack().getAlbum().getReleaseDate().substring(0, 4)),
+                TreeMap::new, Collectors.counting()));
+        final Map<Boolean, Long> expectedExplicit = savedTracks.stream().collect(Collectors.groupingBy(
+                savedTrack -> savedTrack.getTrack().getIsExplicit(), Collectors.counting()));
+
+        // Act
+        final var byYear = spotifyObjectRepository.countSavedTracksByReleaseYear(user);
+        final var byExplicit = spotifyObjectRepository.countSavedTracksByExplicit(user);
+
+        // Assert
+        assertEquals(expectedYears, byYear);
+        assertEquals(List.copyOf(expectedYears.keySet()), List.copyOf(byYear.keySet()));
+        assertEquals(expectedExplicit, byExplicit);
+    }
+
+    @Test
+    void ensure_library_summary_is_cached_until_refreshed() {
+        // Arrange
+        assertTrue(spotifyObjectRepository.getLibrarySummary(user).isEmpty());
+
+        // Act
+        final var refreshed = spotifyObjectRepository.refreshLibrarySummary(user);
+        final var cached = spotifyObjectRepository.getLibrarySummary(user).orElseThrow();
+
+        // Assert
+        assertEquals(spotifyObjectRepository.getLibraryDuration(user), cached.getLibraryDuration());
+        assertEquals(spotifyObjectRepository.countSavedTracksByExplicit(user).getOrDefault(true, 0L),
+                cached.getExplicitTracks());
+        assertEquals(spotifyObjectRepository.countSavedAlbums(user), cached.getSavedAlbums());
+        assertEquals(refreshed.getId(), spotifyObjectRepository.refreshLibrarySummary(user).getId());
+    }
+}
@@ -0,0 +1,71 @@
+package spotifybackup.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledIfEnvironmentVariable(named = "EnableStorageTests", matches = "true")
+class SequenceDiffTest {
+    private static int lcsLength(List<Integer> a, List<Integer> b) {
+        final var lengths = new int[a.size() + 1][b.size() + 1];
+        for (int i = 1; i <= a.size(); i++) {
+            for (int j = 1; j <= b.size(); j++) {
+                lengths[i][j] = a.get(i - 1).equals(b.get(j - 1)) ? lengths[i - 1][j - 1] + 1 :
+                        Math.max(lengths[i - 1][j], lengths[i][j - 1]);
+            }
+        }
+        return lengths[a.size()][b.size()];
+    }
+
+    private static List<Integer> randomSequence(Random random, final int length) {
+        return IntStream.range(0, length).mapToObj(i -> random.nextInt(8)).toList();
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3, 4, 5, 6, 7, 8})
+    void ensure_matches_are_a_longest_common_subsequence(long seed) {
+        // Arrange
+        final var random = new Random(seed);
+        final var source = randomSequence(random, random.nextInt(60));
+        final var target = randomSequence(random, random.nextInt(60));
+
+        // Act
+        final var matches = SequenceDiff.match(source, target);
+
+        // Assert
+        int matched = 0, previous = -1;
+        for (int j = 0; j < matches.length; j++) {
+            if (matches[j] == -1) continue;
+            assertTrue(matches[j] > previous, "Matches should be strictly increasing.");
+            assertEquals(source.get(matches[j]), target.get(j));
+            previous = matches[j];
+            matched++;
+        }
+        assertEquals(lcsLength(source, target), matched);
+    }
+
+    @Test
+    void ensure_appended_and_prepended_items_leave_the_rest_matched() {
+        // Arrange
+        final var source = IntStream.range(0, 10_000).boxed().toList();
+        final var target = new ArrayList<>(source);
+        target.addFirst(-1);
+        target.add(10_000);
+
+        // Act
+        final var matches = SequenceDiff.match(source, target);
+
+        // Assert
+        assertEquals(-1, matches[0]);
+        assertEquals(-1, matches[matches.length - 1]);
+        for (int j = 1; j < matches.length - 1; j++) assertEquals(j - 1, matches[j]);
+    }
+}
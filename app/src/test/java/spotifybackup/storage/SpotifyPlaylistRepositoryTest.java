@@ -11,8 +11,11 @@ import se.michaelthelin.spotify.model_objects.specification.PlaylistTrack;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -194,4 +197,87 @@ class SpotifyPlaylistRepositoryTest {
         assertEquals(apiPlaylistV2.getSnapshotId(), newPlaylist.getSnapshotId());
         assertEquals(apiPlaylistV1.getId(), newPlaylist.getSpotifyID().getId());
     }
+
+    private static List<String> trackIds(List<SpotifyPlaylistItem> items) {
+        return items.stream().map(item -> item.getTrack().getSpotifyID().getId()).toList();
+    }
+
+    private static List<String> apiTrackIds(List<PlaylistTrack> apiItems) {
+        return apiItems.stream().map(item -> item.getTrack().getId()).toList();
+    }
+
+    @Test
+    void ensure_playlist_item_sync_only_writes_changed_items() {
+        // Arrange
+        final var generator = new LibraryGenerator(17, new LibraryGenerator.Scale(50, 1, 40, 1, 1));
+        final var playlist = spotifyObjectRepository.persist(generator.playlists()).getFirst();
+        final var apiItems = new ArrayList<>(generator.playlistItems(0));
+        assertEquals(new PlaylistItemChanges(40, 0, 0), spotifyObjectRepository.syncPlaylistItems(apiItems, playlist));
+        final var storedIds = spotifyObjectRepository.getPlaylistItems(playlist).stream()
+                .map(SpotifyPlaylistItem::getId).collect(Collectors.toSet());
+        final var duplicate = apiItems.get(3);
+        apiItems.remove(5);
+        apiItems.add(apiItems.remove(10));
+        apiItems.addFirst(new PlaylistTrack.Builder()
+                .setAddedAt(Date.from(duplicate.getAddedAt().toInstant().plusSeconds(60)))
+                .setAddedBy(duplicate.getAddedBy())
+                .setIsLocal(false)
+                .setTrack(duplicate.getTrack())
+                .build());
+
+        // Act
+        final var changes = spotifyObjectRepository.syncPlaylistItems(apiItems, playlist);
+        final var items = spotifyObjectRepository.getPlaylistItems(playlist);
+
+        // Assert
+        assertEquals(new PlaylistItemChanges(1, 1, 1), changes);
+        assertEquals(apiTrackIds(apiItems), trackIds(items));
+        assertEquals(apiItems.size() - 1, items.stream().filter(item -> storedIds.contains(item.getId())).count());
+        assertTrue(spotifyObjectRepository.syncPlaylistItems(apiItems, playlist).isEmpty());
+    }
+
+    @Test
+    void ensure_playlist_item_sync_keeps_duplicate_items() {
+        // Arrange
+        final var generator = new LibraryGenerator(17, new LibraryGenerator.Scale(50, 1, 10, 1, 1));
+        final var playlist = spotifyObjectRepository.persist(generator.playlists()).getFirst();
+        final var apiItems = new ArrayList<>(generator.playlistItems(0));
+        apiItems.add(apiItems.getFirst());
+        apiItems.add(4, apiItems.getFirst());
+
+        // Act
+        final var changes = spotifyObjectRepository.syncPlaylistItems(apiItems, playlist);
+        final var removedDuplicate = spotifyObjectRepository.syncPlaylistItems(apiItems.subList(0, 11), playlist);
+
+        // Assert
+        assertEquals(new PlaylistItemChanges(12, 0, 0), changes);
+        assertEquals(new PlaylistItemChanges(0, 1, 0), removedDuplicate);
+        assertEquals(apiTrackIds(apiItems.subList(0, 11)), trackIds(spotifyObjectRepository.getPlaylistItems(playlist)));
+    }
+
+    @Test
+    void ensure_playlist_items_without_position_are_renumbered_by_sync() {
+        // Arrange
+        final var generator = new LibraryGenerator(17, new LibraryGenerator.Scale(50, 1, 20, 1, 1));
+        final var playlist = spotifyObjectRepository.persist(generator.playlists()).getFirst();
+        final var apiItems = generator.playlistItems(0);
+        spotifyObjectRepository.persist(apiItems, playlist);
+        assertTrue(spotifyObjectRepository.getPlaylistItems(playlist).stream()
+                .allMatch(item -> item.getPosition().isEmpty()));
+
+        spotifyObjectRepository.setStatisticsEnabled(true);
+        final var before = spotifyObjectRepository.getStatistics();
+
+        // Act
+        final var changes = spotifyObjectRepository.syncPlaylistItems(apiItems.reversed(), playlist);
+        final var queries = spotifyObjectRepository.getStatistics().minus(before).queries();
+        spotifyObjectRepository.setStatisticsEnabled(false);
+        final var items = spotifyObjectRepository.getPlaylistItems(playlist);
+
+        // Assert
+        assertEquals(new PlaylistItemChanges(0, 0, 20), changes);
+        assertTrue(queries < changes.moved(), "Moved items should be updated in bulk, got " + queries + " queries.");
+        assertEquals(apiTrackIds(apiItems.reversed()), trackIds(items));
+        assertTrue(items.stream().allMatch(item -> item.getPosition().isPresent()));
+    }
 }
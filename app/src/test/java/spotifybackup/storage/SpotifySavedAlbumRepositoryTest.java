@@ -13,6 +13,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -203,4 +204,28 @@ class SpotifySavedAlbumRepositoryTest {
         assertEquals(apiSavedAlbum[0].getAlbum().getId(), savedAlbums.getFirst().getAlbum().getSpotifyID().getId());
         assertNotEquals(originallyAdded, newMostRecentlyAdded.getDateAdded());
     }
+
+    @Test
+    @Order(9)
+    void ensure_absent_saved_albums_are_removed_in_bulk() {
+        // Arrange
+        final var user = getUserFromId.apply("testaccount2");
+        final var savedAlbums = spotifyObjectRepository.getSavedAlbums(user).stream()
+                .sorted(Comparator.comparing(SpotifySavedAlbum::getId)).toList();
+        final var present = savedAlbums.subList(0, savedAlbums.size() / 2);
+        final var absentIds = savedAlbums.subList(savedAlbums.size() / 2, savedAlbums.size()).stream()
+                .map(SpotifySavedAlbum::getId).collect(Collectors.toSet());
+
+        // Act
+        final int removed = spotifyObjectRepository.removeSavedAlbumsExcept(present, user);
+        final int removedAgain = spotifyObjectRepository.removeSavedAlbumsExcept(present, user);
+
+        // Assert
+        assertEquals(absentIds.size(), removed);
+        assertEquals(0, removedAgain);
+        assertEquals(present.size(), spotifyObjectRepository.countSavedAlbums(user));
+        final var removedAlbums = spotifyObjectRepository.getRemovedSavedAlbums(user);
+        assertEquals(absentIds, removedAlbums.stream().map(SpotifySavedAlbum::getId).collect(Collectors.toSet()));
+        assertTrue(removedAlbums.stream().allMatch(s -> s.getIsRemoved() && s.getDateRemoved().isPresent()));
+    }
 }
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import se.michaelthelin.spotify.model_objects.specification.SavedAlbum;
 import se.michaelthelin.spotify.model_objects.specification.SavedTrack;
 import se.michaelthelin.spotify.model_objects.specification.Track;
 import se.michaelthelin.spotify.model_objects.specification.User;
@@ -12,7 +13,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -224,4 +227,81 @@ class SpotifySavedTrackRepositoryTest {
         assertEquals(afterHalfwayTracks.size(), tracksAfter.size());
         assertTrue(tracksAfterIds.containsAll(afterHalfwayTrackIds));
     }
+
+    @Test
+    @Order(10)
+    void ensure_repersisting_saved_tracks_page_does_not_duplicate() throws IOException {
+        // Arrange
+        final var user = getUserFromId.apply("testaccount2");
+        final SavedTrack[] apiSavedTracks = new SavedTrack.JsonUtil().createModelObjectArray(
+                new String(Files.readAllBytes(Path.of(libraryDir + "testaccount_saved_tracks.json"))), "items"
+        );
+        final var oldSavedTrackCount = spotifyObjectRepository.countSavedTracks(user);
+        final var oldSavedTrackIds = spotifyObjectRepository.getSavedTracks(user).stream()
+                .map(SpotifySavedTrack::getId).toList();
+
+        // Act
+        final var savedTracks = spotifyObjectRepository.persist(apiSavedTracks, user);
+
+        // Assert
+        assertEquals(oldSavedTrackCount, spotifyObjectRepository.countSavedTracks(user));
+        assertEquals(apiSavedTracks.length, savedTracks.size());
+        for (int i = 0; i < apiSavedTracks.length; i++) {
+            assertEquals(apiSavedTracks[i].getTrack().getId(), savedTracks.get(i).getTrack().getSpotifyID().getId());
+            assertTrue(oldSavedTrackIds.contains(savedTracks.get(i).getId()));
+        }
+    }
+
+    @Test
+    @Order(11)
+    void ensure_concurrent_persists_of_different_users_do_not_conflict() throws Exception {
+        // Arrange
+        spotifyObjectRepository.persist(new User.JsonUtil().createModelObject(
+                new String(Files.readAllBytes(Path.of(userDir + "user3.json")))
+        ));
+        final var user = getUserFromId.apply("testaccount3");
+        final SavedTrack[] apiSavedTracks = new SavedTrack.JsonUtil().createModelObjectArray(
+                new String(Files.readAllBytes(Path.of(libraryDir + "testaccount_saved_tracks.json"))), "items"
+        );
+        final SavedAlbum[] apiSavedAlbums = new SavedAlbum.JsonUtil().createModelObjectArray(
+                new String(Files.readAllBytes(Path.of(libraryDir + "testaccount_saved_albums.json"))), "items"
+        );
+
+        // Act
+        try (var executor = Executors.newFixedThreadPool(2)) {
+            final var tracks = executor.submit(() -> spotifyObjectRepository.persist(apiSavedTracks, user));
+            final var albums = executor.submit(() ->
+                    spotifyObjectRepository.persist(apiSavedAlbums, user, ImageSelection.ALL));
+            tracks.get();
+            albums.get();
+        }
+
+        // Assert
+        assertEquals(apiSavedTracks.length, spotifyObjectRepository.countSavedTracks(user));
+        assertEquals(apiSavedAlbums.length, spotifyObjectRepository.countSavedAlbums(user));
+    }
+
+    @Test
+    @Order(12)
+    void ensure_absent_saved_tracks_are_removed_in_bulk() {
+        // Arrange
+        final var user = getUserFromId.apply("testaccount3");
+        final var savedTracks = spotifyObjectRepository.getSavedTracks(user).stream()
+                .sorted(Comparator.comparing(SpotifySavedTrack::getId)).toList();
+        final var present = savedTracks.subList(0, savedTracks.size() / 2);
+        final var absentIds = savedTracks.subList(savedTracks.size() / 2, savedTracks.size()).stream()
+                .map(SpotifySavedTrack::getId).collect(Collectors.toSet());
+
+        // Act
+        final int removed = spotifyObjectRepository.removeSavedTracksExcept(present, user);
+        final int removedAgain = spotifyObjectRepository.removeSavedTracksExcept(present, user);
+
+        // Assert
+        assertEquals(absentIds.size(), removed);
+        assertEquals(0, removedAgain);
+        assertEquals(present.size(), spotifyObjectRepository.countSavedTracks(user));
+        final var removedTracks = spotifyObjectRepository.getRemovedSavedTracks(user);
+        assertEquals(absentIds, removedTracks.stream().map(SpotifySavedTrack::getId).collect(Collectors.toSet()));
+        assertTrue(removedTracks.stream().allMatch(s -> s.getIsRemoved() && s.getDateRemoved().isPresent()));
+    }
 }
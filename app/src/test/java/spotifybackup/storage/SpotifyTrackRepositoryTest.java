@@ -174,4 +174,27 @@ class SpotifyTrackRepositoryTest {
         // Assert 2
         assertFalse(newSimpleTrackIds.contains(apiTrackSimple.getId()));
     }
+
+    @Test
+    void ensure_repeated_persist_of_track_resolves_to_same_entity() throws IOException {
+        // Arrange
+        final Track apiTrack = new Track.JsonUtil().createModelObject(
+                new String(Files.readAllBytes(Path.of(trackDir + "No_Markets.json")))
+        );
+        final var firstTrack = spotifyObjectRepository.persist(apiTrack);
+        final long trackCount = spotifyObjectRepository.count(SpotifyTrack.class);
+        final long albumCount = spotifyObjectRepository.count(SpotifyAlbum.class);
+
+        // Act
+        final var secondTrack = spotifyObjectRepository.persist(apiTrack);
+        final var foundTrack = spotifyObjectRepository.find(apiTrack.getId()).orElseThrow();
+
+        // Assert
+        assertEquals(firstTrack.getId(), secondTrack.getId());
+        assertEquals(firstTrack.getAlbum().getId(), secondTrack.getAlbum().getId());
+        assertInstanceOf(SpotifyTrack.class, foundTrack);
+        assertEquals(firstTrack.getId(), ((SpotifyTrack) foundTrack).getId());
+        assertEquals(trackCount, spotifyObjectRepository.count(SpotifyTrack.class));
+        assertEquals(albumCount, spotifyObjectRepository.count(SpotifyAlbum.class));
+    }
 }
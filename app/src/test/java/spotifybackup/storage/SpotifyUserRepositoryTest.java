@@ -241,4 +241,40 @@ class SpotifyUserRepositoryTest {
         assertFalse(newFollowedArtistIds.contains(artists.getFirst().getSpotifyID()));
         assertTrue(oldFollowedArtistIds.contains(artists.getFirst().getSpotifyID()));
     }
+
+    @Test
+    void ensure_followed_playlists_can_be_synced() throws IOException {
+        // Arrange
+        final User apiUser = loadFromPath("user.json");
+        final var user = spotifyObjectRepository.persist(apiUser);
+        spotifyObjectRepository.followPlaylists(List.of(playlists.getFirst()), user);
+
+        // Act
+        final var unfollowed = spotifyObjectRepository.syncFollowedPlaylists(List.of(playlists.get(1)), user);
+
+        // Assert
+        assertEquals(1, unfollowed.size());
+        assertEquals(playlists.getFirst().getSpotifyID(), unfollowed.iterator().next().getSpotifyID());
+        assertEquals(Set.of(playlists.get(1).getSpotifyID().getId()),
+                spotifyObjectRepository.getFollowedPlaylistIds(user));
+    }
+
+    @Test
+    void ensure_followed_artists_can_be_synced() throws IOException {
+        // Arrange
+        final User apiUser = loadFromPath("user2.json");
+        final var user = spotifyObjectRepository.persist(apiUser);
+        spotifyObjectRepository.followArtists(artists.subList(0, 2), user);
+
+        // Act
+        final var unfollowed = spotifyObjectRepository.syncFollowedArtists(artists.subList(1, 3), user);
+        final var unchanged = spotifyObjectRepository.syncFollowedArtists(artists.subList(1, 3), user);
+
+        // Assert
+        assertEquals(1, unfollowed.size());
+        assertEquals(artists.getFirst().getSpotifyID(), unfollowed.iterator().next().getSpotifyID());
+        assertTrue(unchanged.isEmpty());
+        assertEquals(artists.subList(1, 3).stream().map(a -> a.getSpotifyID().getId()).collect(Collectors.toSet()),
+                spotifyObjectRepository.getFollowedArtistIds(user));
+    }
 }